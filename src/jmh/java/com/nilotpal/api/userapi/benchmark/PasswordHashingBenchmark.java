@@ -0,0 +1,116 @@
+package com.nilotpal.api.userapi.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import com.nilotpal.api.userapi.model.CreateUserRequest;
+import com.nilotpal.api.userapi.model.User;
+import com.nilotpal.api.userapi.service.PasswordService;
+
+/**
+ * Request-thread occupancy of password hashing. The score is the latency seen by the caller; the
+ * requestThreadCpuMicros secondary result is the CPU the calling (Tomcat) thread itself burns per
+ * call. Hashing inline keeps the caller busy for the whole BCrypt round, handing it to the hashing
+ * pool leaves the caller free while it waits. Compare work factors with -p strength=10,12.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class PasswordHashingBenchmark {
+	private static final String PASSWORD = "correct horse battery staple";
+
+	@State(Scope.Benchmark)
+	public static class HashingState extends UserApiState {
+		@Param({ "10" })
+		public int strength;
+
+		PasswordService passwordService;
+		BCryptPasswordEncoder passwordEncoder;
+
+		@Override
+		protected void started() {
+			passwordService = context.getBean(PasswordService.class);
+			passwordEncoder = context.getBean(BCryptPasswordEncoder.class);
+		}
+
+		@Override
+		protected String[] properties() {
+			String[] properties = super.properties();
+			String[] withStrength = new String[properties.length + 1];
+			System.arraycopy(properties, 0, withStrength, 0, properties.length);
+			withStrength[properties.length] = "user-api.password.bcrypt-strength=" + strength;
+			return withStrength;
+		}
+	}
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class RequestThread {
+		private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		private long cpuNanos;
+		private long calls;
+
+		public double requestThreadCpuMicros;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			cpuNanos = 0L;
+			calls = 0L;
+			requestThreadCpuMicros = 0.0d;
+		}
+
+		long start() {
+			return threads.getCurrentThreadCpuTime();
+		}
+
+		void stop(long start) {
+			cpuNanos += threads.getCurrentThreadCpuTime() - start;
+			requestThreadCpuMicros = cpuNanos / 1000.0d / ++calls;
+		}
+	}
+
+	@Benchmark
+	public String hashOnRequestThread(HashingState state, RequestThread requestThread) {
+		long start = requestThread.start();
+		String hash = state.passwordEncoder.encode(PASSWORD);
+		requestThread.stop(start);
+		return hash;
+	}
+
+	@Benchmark
+	public String hashOnHashingPool(HashingState state, RequestThread requestThread) {
+		long start = requestThread.start();
+		String hash = state.passwordService.hash(PASSWORD).join();
+		requestThread.stop(start);
+		return hash;
+	}
+
+	@Benchmark
+	public User createUser(HashingState state, RequestThread requestThread) {
+		long n = ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
+		long start = requestThread.start();
+		User user = state.userService
+				.createUser(new CreateUserRequest("new" + n + "@bench.com", "New" + n, PASSWORD, "new" + n)).join();
+		requestThread.stop(start);
+		return user;
+	}
+}
@@ -0,0 +1,53 @@
+package com.nilotpal.api.userapi.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nilotpal.api.userapi.benchmark.SaturationBenchmark.Responses;
+
+/**
+ * GET of a user through the servlet/JPA controller (/users) and through the reactive facade
+ * (/reactive/users) of the same application, with 1024 concurrent HTTP clients by default. Run with
+ * -p cacheType=none so every call reaches H2, and -t to change the number of clients.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(1024)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g", "-Xss256k" })
+public class ReactiveReadBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class ReactiveState extends UserApiState {
+		@Param({ "/users", "/reactive/users" })
+		public String path;
+
+		@Override
+		protected String[] properties() {
+			String[] properties = super.properties();
+			String[] withProfile = new String[properties.length + 1];
+			System.arraycopy(properties, 0, withProfile, 0, properties.length);
+			withProfile[properties.length] = "spring.profiles.active=reactive";
+			return withProfile;
+		}
+	}
+
+	@Benchmark
+	public int getUser(ReactiveState state, Responses responses) throws IOException {
+		return SaturationBenchmark.get("http://localhost:" + state.port + state.path + "/" + state.randomSeededId(),
+				responses);
+	}
+}
@@ -0,0 +1,100 @@
+package com.nilotpal.api.userapi.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Load test of GET /users/{id} over HTTP with more concurrent clients than Tomcat threads, with the
+ * repository calls on the request threads (dbExecutor=false) or on the bounded database executor.
+ * Raise the client count with -t to find each mode's saturation point; the served and rejected
+ * secondary results count 200 and 503 responses. Run with -p cacheType=none so every call reaches H2,
+ * and with -p concurrencyLimit=true to also shed requests over the adaptive concurrency limit.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(64)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class SaturationBenchmark {
+	@State(Scope.Benchmark)
+	public static class ServerState extends UserApiState {
+		@Param({ "true", "false" })
+		public boolean dbExecutor;
+
+		@Param({ "16" })
+		public int tomcatThreads;
+
+		@Param({ "false" })
+		public boolean concurrencyLimit;
+
+		@Override
+		protected boolean concurrencyLimited() {
+			return concurrencyLimit;
+		}
+
+		@Override
+		protected String[] properties() {
+			String[] properties = super.properties();
+			String[] withExecutor = new String[properties.length + 2];
+			System.arraycopy(properties, 0, withExecutor, 0, properties.length);
+			withExecutor[properties.length] = "user-api.db-executor.enabled=" + dbExecutor;
+			withExecutor[properties.length + 1] = "server.tomcat.max-threads=" + tomcatThreads;
+			return withExecutor;
+		}
+	}
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Responses {
+		public long served;
+		public long rejected;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			served = 0L;
+			rejected = 0L;
+		}
+	}
+
+	@Benchmark
+	public int getUser(ServerState state, Responses responses) throws IOException {
+		return get("http://localhost:" + state.port + "/users/" + state.randomSeededId(), responses);
+	}
+
+	static int get(String url, Responses responses) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setRequestProperty("Content-Type", "application/json");
+		int status = connection.getResponseCode();
+		try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+			byte[] drain = new byte[8192];
+			while (body != null && body.read(drain) != -1) {
+				// Drained so the keep-alive connection is reused
+			}
+		}
+		if (status == 503) {
+			responses.rejected++;
+		} else {
+			responses.served++;
+		}
+		return status;
+	}
+}
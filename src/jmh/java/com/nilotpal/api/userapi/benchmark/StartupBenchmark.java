@@ -0,0 +1,60 @@
+package com.nilotpal.api.userapi.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.nilotpal.api.userapi.UserApiApplication;
+
+/**
+ * Cold start of the whole application, from SpringApplication.run until it is ready to serve,
+ * with the default settings or the prod profile. Every fork is a fresh JVM that starts the
+ * application once, so the score is what an autoscaled instance pays. Both run on an in-memory
+ * H2 database whose schema Hibernate creates; pass JVM options to compare, e.g.
+ * -jvmArgsAppend "-XX:TieredStopAtLevel=1".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 5, jvmArgsAppend = { "-Xms512m", "-Xmx512m" })
+public class StartupBenchmark {
+	@Param({ "default", "prod" })
+	public String profile;
+
+	private ConfigurableApplicationContext context;
+
+	@Benchmark
+	public void startApplication() {
+		List<String> arguments = new ArrayList<>();
+		arguments.add("--spring.profiles.active=" + profile);
+		arguments.add("--spring.datasource.url=jdbc:h2:mem:startup;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE");
+		arguments.add("--spring.datasource.username=sa");
+		arguments.add("--spring.jpa.hibernate.ddl-auto=create-drop");
+		arguments.add("--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect");
+		arguments.add("--logging.level.root=WARN");
+		arguments.add("--server.port=0");
+		context = new SpringApplicationBuilder(UserApiApplication.class).run(arguments.toArray(new String[0]));
+	}
+
+	@TearDown(Level.Iteration)
+	public void stopApplication() {
+		context.close();
+	}
+}
@@ -0,0 +1,88 @@
+package com.nilotpal.api.userapi.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.nilotpal.api.userapi.UserApiApplication;
+import com.nilotpal.api.userapi.service.UserBatchService;
+import com.nilotpal.api.userapi.service.UserService;
+
+/**
+ * Boots the whole application against an in-memory H2 database seeded with {@code rows} users.
+ * Shared by all threads of a trial.
+ */
+@State(Scope.Benchmark)
+public class UserApiState {
+	@Param({ "10000" })
+	public int rows;
+
+	@Param({ "caffeine" })
+	public String cacheType;
+
+	ConfigurableApplicationContext context;
+	UserService userService;
+	UserBatchService userBatchService;
+	int port;
+
+	@Setup(Level.Trial)
+	public void startApplication() {
+		// Command line arguments, so they take precedence over application.properties
+		context = new SpringApplicationBuilder(UserApiApplication.class)
+				.run(Arrays.stream(properties()).map(property -> "--" + property).toArray(String[]::new));
+		UserDataSeeder.seed(context.getBean(JdbcTemplate.class), rows);
+		userService = context.getBean(UserService.class);
+		userBatchService = context.getBean(UserBatchService.class);
+		port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+		started();
+	}
+
+	/**
+	 * Called once the application is up and seeded, for subclasses that need more beans.
+	 */
+	protected void started() {
+	}
+
+	@TearDown(Level.Trial)
+	public void stopApplication() {
+		context.close();
+	}
+
+	protected String[] properties() {
+		return new String[] {
+				"spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+				"spring.datasource.username=sa",
+				"spring.datasource.initialization-mode=always",
+				"spring.jpa.hibernate.ddl-auto=create-drop",
+				"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+				"spring.jpa.show-sql=false",
+				"spring.jpa.properties.hibernate.format_sql=false",
+				"logging.level.root=WARN",
+				"logging.level.org.hibernate.type=WARN",
+				"spring.cache.type=" + cacheType,
+				// All load comes from one address, far over any per-client rate
+				"user-api.rate-limit.enabled=false",
+				"user-api.concurrency-limit.enabled=" + concurrencyLimited(),
+				"server.port=0" };
+	}
+
+	/**
+	 * Whether requests over the adaptive concurrency limit are shed; off unless a benchmark measures it.
+	 */
+	protected boolean concurrencyLimited() {
+		return false;
+	}
+
+	long randomSeededId() {
+		return UserDataSeeder.FIRST_ID + ThreadLocalRandom.current().nextInt(rows);
+	}
+}
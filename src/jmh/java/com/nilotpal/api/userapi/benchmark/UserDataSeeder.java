@@ -0,0 +1,44 @@
+package com.nilotpal.api.userapi.benchmark;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Bulk loads data.sql-shaped rows, ids FIRST_ID onwards, and moves user_seq past them so users
+ * created by the benchmarks never collide with the seed.
+ */
+final class UserDataSeeder {
+	static final long FIRST_ID = 100_000L;
+	private static final int INSERT_BATCH_SIZE = 10_000;
+
+	private UserDataSeeder() {
+	}
+
+	static void seed(final JdbcTemplate jdbcTemplate, final int rows) {
+		for (int from = 0; from < rows; from += INSERT_BATCH_SIZE) {
+			final int offset = from;
+			final int batchSize = Math.min(INSERT_BATCH_SIZE, rows - from);
+			jdbcTemplate.batchUpdate("insert into user (id, email, name, password, username, version) values (?, ?, ?, ?, ?, 0)",
+					new BatchPreparedStatementSetter() {
+						@Override
+						public void setValues(PreparedStatement ps, int i) throws SQLException {
+							long id = FIRST_ID + offset + i;
+							ps.setLong(1, id);
+							ps.setString(2, "user" + id + "@bench.com");
+							ps.setString(3, "User" + id);
+							ps.setString(4, "password");
+							ps.setString(5, "username" + id);
+						}
+
+						@Override
+						public int getBatchSize() {
+							return batchSize;
+						}
+					});
+		}
+		jdbcTemplate.execute("alter sequence user_seq restart with " + (FIRST_ID + rows + 1000));
+	}
+}
@@ -0,0 +1,68 @@
+package com.nilotpal.api.userapi.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nilotpal.api.userapi.exceptions.UserNotFoundException;
+import com.nilotpal.api.userapi.model.User;
+
+/**
+ * Concurrent getUserById calls with the cache off, so every call is a miss: all threads on one hot
+ * id, where coalescing shares queries, and on random ids, where it can only batch them. Compare
+ * -p coalescing=true,false and -p batchWindowMs=0,1.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(16)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class UserLoadBenchmark {
+	@State(Scope.Benchmark)
+	public static class LoadState extends UserApiState {
+		@Param({ "true", "false" })
+		public boolean coalescing;
+
+		@Param({ "0" })
+		public long batchWindowMs;
+
+		String hotId;
+
+		@Override
+		protected String[] properties() {
+			String[] properties = super.properties();
+			String[] withLoader = new String[properties.length + 3];
+			System.arraycopy(properties, 0, withLoader, 0, properties.length);
+			withLoader[properties.length] = "user-api.load-coalescing.enabled=" + coalescing;
+			withLoader[properties.length + 1] = "user-api.load-coalescing.batch-window-ms=" + batchWindowMs;
+			withLoader[properties.length + 2] = "spring.cache.type=none";
+			return withLoader;
+		}
+
+		@Override
+		protected void started() {
+			hotId = Long.toString(UserDataSeeder.FIRST_ID);
+		}
+	}
+
+	@Benchmark
+	public User hotId(LoadState state) throws UserNotFoundException {
+		return state.userService.getUserById(state.hotId);
+	}
+
+	@Benchmark
+	public User randomId(LoadState state) throws UserNotFoundException {
+		return state.userService.getUserById(Long.toString(state.randomSeededId()));
+	}
+}
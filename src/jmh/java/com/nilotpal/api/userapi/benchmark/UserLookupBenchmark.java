@@ -0,0 +1,60 @@
+package com.nilotpal.api.userapi.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nilotpal.api.userapi.exceptions.UserNotFoundException;
+import com.nilotpal.api.userapi.model.BatchItemResult;
+import com.nilotpal.api.userapi.model.User;
+
+/**
+ * Resolving a page of random ids with one lookup (POST /users/lookup) versus one getUserById per id.
+ * Run with -p cacheType=none for the cold case, where the lookup costs one IN query per chunk.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class UserLookupBenchmark {
+	@State(Scope.Thread)
+	public static class Ids {
+		@Param({ "200" })
+		public int count;
+
+		List<String> random(UserApiState state) {
+			List<String> ids = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				ids.add(String.valueOf(state.randomSeededId()));
+			}
+			return ids;
+		}
+	}
+
+	@Benchmark
+	public List<BatchItemResult> lookup(UserApiState state, Ids ids) {
+		return state.userBatchService.getUsers(ids.random(state));
+	}
+
+	@Benchmark
+	public List<User> singleGets(UserApiState state, Ids ids) throws UserNotFoundException {
+		List<String> requested = ids.random(state);
+		List<User> users = new ArrayList<>(requested.size());
+		for (String id : requested) {
+			users.add(state.userService.getUserById(id));
+		}
+		return users;
+	}
+}
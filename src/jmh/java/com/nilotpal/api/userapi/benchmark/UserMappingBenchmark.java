@@ -0,0 +1,91 @@
+package com.nilotpal.api.userapi.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nilotpal.api.userapi.entity.UserEntity;
+import com.nilotpal.api.userapi.exceptions.InvalidCursorException;
+import com.nilotpal.api.userapi.model.User;
+
+/**
+ * Writes one page of loaded UserEntity rows with the application's ObjectMapper, either mapped to
+ * User models first (as every list response did before) or directly through UserEntitySerializer.
+ * The page is read once, so only mapping and serialization are measured; run with -prof gc to
+ * compare gc.alloc.rate.norm, the bytes allocated per page.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class UserMappingBenchmark {
+	@State(Scope.Benchmark)
+	public static class PageState extends UserApiState {
+		@Param({ "20", "1000" })
+		public int pageSize;
+
+		ObjectMapper objectMapper;
+		List<UserEntity> page;
+
+		@Override
+		protected void started() {
+			objectMapper = context.getBean(ObjectMapper.class);
+			try {
+				page = userService.getUserEntitiesAfter(null, pageSize).getUsers();
+			} catch (InvalidCursorException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	/**
+	 * Stands in for the response stream; counts what is written so nothing is buffered.
+	 */
+	static final class DiscardingOutputStream extends OutputStream {
+		long written;
+
+		@Override
+		public void write(int b) {
+			written++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			written += len;
+		}
+	}
+
+	@Benchmark
+	public long mappedPage(PageState state) throws IOException {
+		List<User> users = new ArrayList<>(state.page.size());
+		for (UserEntity userEntity : state.page) {
+			users.add(new User(String.valueOf(userEntity.getId()), userEntity.getEmail(), userEntity.getName(),
+					userEntity.getUsername(), userEntity.getVersion()));
+		}
+		DiscardingOutputStream out = new DiscardingOutputStream();
+		state.objectMapper.writeValue(out, users);
+		return out.written;
+	}
+
+	@Benchmark
+	public long directPage(PageState state) throws IOException {
+		DiscardingOutputStream out = new DiscardingOutputStream();
+		state.objectMapper.writeValue(out, state.page);
+		return out.written;
+	}
+}
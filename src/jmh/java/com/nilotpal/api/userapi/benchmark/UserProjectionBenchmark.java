@@ -0,0 +1,94 @@
+package com.nilotpal.api.userapi.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nilotpal.api.userapi.exceptions.InvalidCursorException;
+import com.nilotpal.api.userapi.model.UserField;
+
+/**
+ * Full versus sparse (fields=id,username) cursor pages, read through the service and serialized
+ * with the application's ObjectMapper as GET /users would. The responseBytes secondary result is
+ * the average payload size; run with -prof gc to compare allocation per page.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class UserProjectionBenchmark {
+	private static final Set<UserField> ID_AND_USERNAME = EnumSet.of(UserField.USERNAME);
+
+	@State(Scope.Benchmark)
+	public static class ProjectionState extends UserApiState {
+		@Param({ "20", "1000" })
+		public int pageSize;
+
+		ObjectMapper objectMapper;
+
+		@Override
+		protected void started() {
+			objectMapper = context.getBean(ObjectMapper.class);
+		}
+
+		String randomCursor() {
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(
+					Long.toString(randomSeededId() - pageSize).getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Payload {
+		private long bytes;
+		private long pages;
+
+		public double responseBytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			bytes = 0L;
+			pages = 0L;
+			responseBytes = 0.0d;
+		}
+
+		byte[] record(byte[] body) {
+			bytes += body.length;
+			responseBytes = (double) bytes / ++pages;
+			return body;
+		}
+	}
+
+	@Benchmark
+	public byte[] fullPage(ProjectionState state, Payload payload)
+			throws InvalidCursorException, JsonProcessingException {
+		return payload.record(state.objectMapper
+				.writeValueAsBytes(state.userService.getUsersAfter(state.randomCursor(), state.pageSize).getUsers()));
+	}
+
+	@Benchmark
+	public byte[] projectedPage(ProjectionState state, Payload payload)
+			throws InvalidCursorException, JsonProcessingException {
+		return payload.record(state.objectMapper.writeValueAsBytes(
+				state.userService.getUsersAfter(state.randomCursor(), state.pageSize, ID_AND_USERNAME).getUsers()));
+	}
+}
@@ -0,0 +1,63 @@
+package com.nilotpal.api.userapi.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nilotpal.api.userapi.model.User;
+import com.nilotpal.api.userapi.service.UserSearchIndex;
+
+/**
+ * Type-ahead search over the seeded users: the index lookup alone and the full service call,
+ * which also reads the matches back by primary key. Queries are a random seeded user's
+ * "username<id>" cut to prefixLength characters, so short prefixes match most of the table and
+ * long ones a handful of users. Run with -p rows=1000000 (and a larger heap) for the 1M user case.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class UserSearchBenchmark {
+	private static final int LIMIT = 10;
+
+	@State(Scope.Benchmark)
+	public static class SearchState extends UserApiState {
+		@Param({ "9", "12" })
+		public int prefixLength;
+
+		UserSearchIndex userSearchIndex;
+
+		@Override
+		protected void started() {
+			// The index was built at startup, before the rows were seeded
+			userSearchIndex = context.getBean(UserSearchIndex.class);
+			userSearchIndex.rebuild();
+		}
+
+		String randomQuery() {
+			String username = "username" + randomSeededId();
+			return username.substring(0, Math.min(prefixLength, username.length()));
+		}
+	}
+
+	@Benchmark
+	public List<Long> searchIndex(SearchState state) {
+		return state.userSearchIndex.search(state.randomQuery(), LIMIT);
+	}
+
+	@Benchmark
+	public List<User> searchUsers(SearchState state) throws Exception {
+		return state.userService.searchUsers(state.randomQuery(), LIMIT);
+	}
+}
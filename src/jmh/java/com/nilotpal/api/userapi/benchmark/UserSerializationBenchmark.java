@@ -0,0 +1,114 @@
+package com.nilotpal.api.userapi.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.nilotpal.api.userapi.model.User;
+
+/**
+ * Jackson serialization of the list payloads returned by GET /users, with the same mapper
+ * defaults Spring MVC uses, in each negotiable encoding (-p format=json,smile,cbor). The
+ * payloadBytes and gzippedBytes secondary results are the size on the wire without and with
+ * response compression.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserSerializationBenchmark {
+	@Param({ "20", "1000" })
+	public int users;
+
+	@Param({ "json", "smile", "cbor" })
+	public String format;
+
+	private ObjectMapper objectMapper;
+	private ObjectReader userListReader;
+	private List<User> payload;
+	private byte[] serialized;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class PayloadSize {
+		public long payloadBytes;
+		public long gzippedBytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			payloadBytes = 0L;
+			gzippedBytes = 0L;
+		}
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		objectMapper = Jackson2ObjectMapperBuilder.json().factory(factory()).build();
+		userListReader = objectMapper.readerFor(User[].class);
+		payload = new ArrayList<>(users);
+		for (long id = UserDataSeeder.FIRST_ID; id < UserDataSeeder.FIRST_ID + users; id++) {
+			payload.add(new User(String.valueOf(id), "user" + id + "@bench.com", "User" + id, "username" + id));
+		}
+		serialized = objectMapper.writeValueAsBytes(payload);
+	}
+
+	private JsonFactory factory() {
+		switch (format) {
+		case "smile":
+			return new SmileFactory();
+		case "cbor":
+			return new CBORFactory();
+		default:
+			return new JsonFactory();
+		}
+	}
+
+	@Benchmark
+	public byte[] serializeUserList() throws JsonProcessingException {
+		return objectMapper.writeValueAsBytes(payload);
+	}
+
+	@Benchmark
+	public User[] deserializeUserList() throws IOException {
+		return userListReader.readValue(serialized);
+	}
+
+	@Benchmark
+	public byte[] serializeAndGzipUserList(PayloadSize size) throws IOException {
+		byte[] body = objectMapper.writeValueAsBytes(payload);
+		ByteArrayOutputStream gzipped = new ByteArrayOutputStream(body.length / 2);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+			gzip.write(body);
+		}
+		// Assigned rather than accumulated: the sizes are constant for a trial
+		size.payloadBytes = body.length;
+		size.gzippedBytes = gzipped.size();
+		return gzipped.toByteArray();
+	}
+}
@@ -0,0 +1,87 @@
+package com.nilotpal.api.userapi.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nilotpal.api.userapi.exceptions.InvalidCursorException;
+import com.nilotpal.api.userapi.exceptions.UserNotFoundException;
+import com.nilotpal.api.userapi.model.BatchItemResult;
+import com.nilotpal.api.userapi.model.CreateUserRequest;
+import com.nilotpal.api.userapi.model.UpdateUserRequest;
+import com.nilotpal.api.userapi.model.User;
+import com.nilotpal.api.userapi.model.UserSlice;
+
+/**
+ * Service-level hot paths, end to end through JPA into H2. Run with -p rows=1000000 for the
+ * large-table numbers and -p cacheType=none to measure getUserById without the cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class UserServiceBenchmark {
+	private static final int BATCH_SIZE = 100;
+
+	@Benchmark
+	public User getUserById(UserApiState state) throws UserNotFoundException {
+		return state.userService.getUserById(String.valueOf(state.randomSeededId()));
+	}
+
+	@Benchmark
+	public User getUserByUsername(UserApiState state) throws UserNotFoundException {
+		return state.userService.getUserByUsername("username" + state.randomSeededId());
+	}
+
+	@Benchmark
+	public User createUser(UserApiState state) {
+		return state.userService.createUser(newUser()).join();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public List<BatchItemResult> createUsersBatched(UserApiState state) {
+		List<CreateUserRequest> createUserRequests = new ArrayList<>(BATCH_SIZE);
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			createUserRequests.add(newUser());
+		}
+		return state.userBatchService.createUsers(createUserRequests);
+	}
+
+	@Benchmark
+	public User updateUser(UserApiState state) {
+		long id = state.randomSeededId();
+		return state.userService.updateUser(String.valueOf(id),
+				new UpdateUserRequest("user" + id + "@bench.com", "Updated" + id, "password", "username" + id)).join();
+	}
+
+	@Benchmark
+	public List<User> listRandomOffsetPage(UserApiState state) {
+		return state.userService.getAllUsers(ThreadLocalRandom.current().nextInt(state.rows / 20), 20);
+	}
+
+	@Benchmark
+	public UserSlice<User> listRandomCursorSlice(UserApiState state) throws InvalidCursorException {
+		String cursor = Base64.getUrlEncoder().withoutPadding()
+				.encodeToString(Long.toString(state.randomSeededId()).getBytes(StandardCharsets.UTF_8));
+		return state.userService.getUsersAfter(cursor, 20);
+	}
+
+	private static CreateUserRequest newUser() {
+		long n = ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
+		return new CreateUserRequest("new" + n + "@bench.com", "New" + n, "password", "new" + n);
+	}
+}
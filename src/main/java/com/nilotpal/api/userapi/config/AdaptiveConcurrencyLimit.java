@@ -0,0 +1,132 @@
+package com.nilotpal.api.userapi.config;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Caps the users API requests in flight at a limit that follows the latency of the repository calls
+ * that read or write a single row (POINT_OPERATIONS, timed as repository.invocations). Lists,
+ * exports, batches and the index and pool warm-up reads take as long as they are big, so they are
+ * left out rather than mistaken for a slow database that point reads should be shed for.
+ *
+ * The recent latency is compared with the long-run average: while it stays within
+ * latency-tolerance times that average and the limit is in use, the limit grows by about its square
+ * root per call; when calls slow down, requests are queueing for connections or the database is
+ * struggling, and the limit shrinks in proportion, by at most half. Requests over the limit are
+ * shed by the RateLimitFilter with 503 before they reach the pool. Disabled, requests are still
+ * counted but never shed.
+ *
+ * The estimate is one immutable value swapped by compare-and-set, so repository calls never wait
+ * on each other to report; a sample that loses the race to a concurrent one is dropped, which
+ * only happens while samples are plentiful.
+ */
+@Component
+public class AdaptiveConcurrencyLimit implements MeterBinder {
+	public static final String LIMIT = "concurrency.limit";
+	public static final String IN_FLIGHT = "concurrency.in.flight";
+	public static final Set<String> POINT_OPERATIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+			"findById", "findVersionById", "existsById", "findFirstByUsernameOrderByIdAsc",
+			"findFirstByEmailOrderByIdAsc", "save", "updateById", "updateByIdAndVersion", "removeById",
+			"deleteById")));
+	private static final double SHORT_SMOOTHING = 0.1d;
+	private static final double LONG_SMOOTHING = 0.002d;
+	private static final double LIMIT_SMOOTHING = 0.2d;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final boolean enabled;
+	private final int minLimit;
+	private final int maxLimit;
+	private final double tolerance;
+	private final AtomicReference<Estimate> estimate;
+
+	public AdaptiveConcurrencyLimit(@Value("${user-api.concurrency-limit.enabled:true}") boolean enabled,
+			@Value("${user-api.concurrency-limit.initial:50}") int initialLimit,
+			@Value("${user-api.concurrency-limit.min:10}") int minLimit,
+			@Value("${user-api.concurrency-limit.max:500}") int maxLimit,
+			@Value("${user-api.concurrency-limit.latency-tolerance:2.0}") double tolerance) {
+		this.enabled = enabled;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.tolerance = tolerance;
+		this.estimate = new AtomicReference<>(
+				new Estimate(Math.max(minLimit, Math.min(maxLimit, initialLimit)), 0.0d, 0.0d));
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder(LIMIT, this, AdaptiveConcurrencyLimit::getLimit)
+				.description("Requests the users API currently admits at once").register(registry);
+		Gauge.builder(IN_FLIGHT, inFlight, AtomicInteger::get).description("Users API requests in flight")
+				.register(registry);
+	}
+
+	public boolean tryAcquire() {
+		while (true) {
+			int current = inFlight.get();
+			if (enabled && current >= getLimit()) {
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	public void release() {
+		inFlight.decrementAndGet();
+	}
+
+	public int getLimit() {
+		return (int) estimate.get().limit;
+	}
+
+	/**
+	 * Takes the latency of a repository call into the estimate, if it is one of the
+	 * POINT_OPERATIONS.
+	 */
+	public void recordLatency(String operation, long latencyNanos) {
+		if (!enabled || latencyNanos <= 0L || !POINT_OPERATIONS.contains(operation)) {
+			return;
+		}
+		Estimate current = estimate.get();
+		double shortLatency = current.longLatency == 0.0d ? latencyNanos : current.shortLatency;
+		double longLatency = current.longLatency == 0.0d ? latencyNanos : current.longLatency;
+		shortLatency += (latencyNanos - shortLatency) * SHORT_SMOOTHING;
+		longLatency += (latencyNanos - longLatency) * LONG_SMOOTHING;
+		if (longLatency > 2.0d * shortLatency) {
+			// Load has dropped well below what the long-run average remembers, let it catch up
+			longLatency *= 0.95d;
+		}
+		double gradient = Math.max(0.5d, Math.min(1.0d, tolerance * longLatency / shortLatency));
+		double newLimit = current.limit * gradient;
+		if (gradient == 1.0d && inFlight.get() * 2 >= current.limit) {
+			newLimit += Math.sqrt(current.limit);
+		}
+		double limit = Math.max(minLimit,
+				Math.min(maxLimit, current.limit * (1.0d - LIMIT_SMOOTHING) + newLimit * LIMIT_SMOOTHING));
+		estimate.compareAndSet(current, new Estimate(limit, shortLatency, longLatency));
+	}
+
+	private static final class Estimate {
+		private final double limit;
+		private final double shortLatency;
+		private final double longLatency;
+
+		Estimate(double limit, double shortLatency, double longLatency) {
+			this.limit = limit;
+			this.shortLatency = shortLatency;
+			this.longLatency = longLatency;
+		}
+	}
+}
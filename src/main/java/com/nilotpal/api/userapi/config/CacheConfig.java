@@ -0,0 +1,53 @@
+package com.nilotpal.api.userapi.config;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import com.github.benmanes.caffeine.cache.Cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * In-process user cache. Size and TTL come from spring.cache.caffeine.spec; Boot binds the
+ * hit/miss/put/eviction meters of the caches listed in spring.cache.cache-names. The cache
+ * advice runs outside the transaction advice, so a hit does not begin a transaction.
+ */
+@Configuration
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 1)
+public class CacheConfig {
+	public static final String USERS_CACHE = "users";
+
+	/**
+	 * Micrometer only reports load statistics for Caffeine LoadingCaches, while Spring's
+	 * read-through loads through get(key, loader) on a plain cache, so bind them here.
+	 */
+	@Bean
+	public MeterBinder usersCacheLoadMetrics(CacheManager cacheManager) {
+		return registry -> {
+			org.springframework.cache.Cache cache = cacheManager.getCache(USERS_CACHE);
+			if (!(cache instanceof CaffeineCache)) {
+				return;
+			}
+			Cache<Object, Object> nativeCache = ((CaffeineCache) cache).getNativeCache();
+			TimeGauge.builder("cache.load.duration", nativeCache, TimeUnit.NANOSECONDS, c -> c.stats().totalLoadTime())
+					.tags("cache", USERS_CACHE, "name", "cacheManager")
+					.description("The time the cache has spent loading new values").register(registry);
+			FunctionCounter.builder("cache.load", nativeCache, c -> c.stats().loadSuccessCount())
+					.tags("cache", USERS_CACHE, "name", "cacheManager", "result", "success")
+					.description("The number of times cache lookup methods have successfully loaded a new value")
+					.register(registry);
+			FunctionCounter.builder("cache.load", nativeCache, c -> c.stats().loadFailureCount())
+					.tags("cache", USERS_CACHE, "name", "cacheManager", "result", "failure")
+					.description("The number of times cache lookup methods threw an exception while loading a new value")
+					.register(registry);
+		};
+	}
+}
@@ -0,0 +1,41 @@
+package com.nilotpal.api.userapi.config;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Tells the clients of the users APIs apart, for their rate limits and idempotency keys. A client
+ * is its address (set server.use-forward-headers=true behind a proxy) unless it sends one of the
+ * api-keys in the client header. With trust-header any key in the header is taken, which is only
+ * safe when a gateway in front authenticates the clients and sets the header itself: nothing here
+ * checks the key, so otherwise every request could pick a fresh identity.
+ */
+@Component
+public class ClientIdentity {
+	private final String header;
+	private final boolean trustHeader;
+	private final Set<String> apiKeys;
+
+	public ClientIdentity(@Value("${user-api.client.header:X-API-Key}") String header,
+			@Value("${user-api.client.trust-header:false}") boolean trustHeader,
+			@Value("${user-api.client.api-keys:}") String[] apiKeys) {
+		this.header = header;
+		this.trustHeader = trustHeader;
+		this.apiKeys = new HashSet<>(Arrays.asList(apiKeys));
+	}
+
+	public String of(HttpServletRequest request) {
+		String apiKey = request.getHeader(header);
+		if (StringUtils.hasText(apiKey) && (trustHeader || apiKeys.contains(apiKey))) {
+			return "key:" + apiKey;
+		}
+		return "address:" + request.getRemoteAddr();
+	}
+}
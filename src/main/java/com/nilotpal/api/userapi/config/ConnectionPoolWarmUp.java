@@ -0,0 +1,122 @@
+package com.nilotpal.api.userapi.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nilotpal.api.userapi.repository.UserRepository;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Opens the pool's minimum idle connections before Tomcat starts accepting requests and runs the
+ * UserRepository read queries once on each of them, so the first requests neither wait for a
+ * connection handshake nor pay for preparing statements (the driver caches prepared statements
+ * per connection). The threads meet at a barrier inside their transactions, which makes every
+ * one of them hold a different connection. With read replicas the read-only transactions are
+ * routed there, so it is the replica pools that get primed. Failures are logged; startup carries
+ * on cold.
+ */
+@Component
+public class ConnectionPoolWarmUp implements SmartInitializingSingleton {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPoolWarmUp.class);
+	private static final long TIMEOUT_SECONDS = 30L;
+	private static final Sort SORT_BY_ID = Sort.by("id");
+	private static final Long NO_USER = -1L;
+	private static final Long PAST_LAST_USER = Long.MAX_VALUE;
+
+	@Autowired
+	DataSource dataSource;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Value("${user-api.datasource.warm-up:true}")
+	boolean enabled;
+
+	@Override
+	public void afterSingletonsInstantiated() {
+		if (!enabled) {
+			return;
+		}
+		long start = System.nanoTime();
+		int connections = 0;
+		try {
+			// Outside a transaction the routing data source unwraps to the primary pool
+			if (!dataSource.isWrapperFor(HikariDataSource.class)) {
+				return;
+			}
+			connections = dataSource.unwrap(HikariDataSource.class).getMinimumIdle();
+			if (connections == 0) {
+				return;
+			}
+			warmUp(connections);
+			LOGGER.info("Warmed up {} pooled connections in {} ms", connections,
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		} catch (Exception e) {
+			LOGGER.warn("Connection pool warm-up failed, starting with a cold pool", e);
+		}
+	}
+
+	void warmUp(int connections) throws Exception {
+		TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+		CyclicBarrier allConnected = new CyclicBarrier(connections);
+		ExecutorService threads = Executors.newFixedThreadPool(connections);
+		try {
+			List<Future<Object>> warmed = new ArrayList<>(connections);
+			for (int i = 0; i < connections; i++) {
+				warmed.add(threads.submit(() -> readOnly.execute(status -> {
+					try {
+						allConnected.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+					} catch (Exception e) {
+						throw new IllegalStateException("Could not hold " + connections + " connections at once", e);
+					}
+					primeStatements();
+					return null;
+				})));
+			}
+			for (Future<Object> future : warmed) {
+				future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			}
+		} finally {
+			threads.shutdownNow();
+		}
+	}
+
+	/**
+	 * Runs each read query the API issues. Lookups and cursor pages use an id or cursor that matches
+	 * nothing; the offset pages read the first row, a single index seek. Limits are bound parameters,
+	 * so a page of one prepares the same statements as any other page size.
+	 */
+	private void primeStatements() {
+		PageRequest firstRow = PageRequest.of(0, 1, SORT_BY_ID);
+		userRepository.findById(NO_USER);
+		userRepository.findVersionById(NO_USER);
+		userRepository.findFirstByUsernameOrderByIdAsc("");
+		userRepository.findFirstByEmailOrderByIdAsc("");
+		userRepository.findAll(firstRow);
+		userRepository.findVersionsBy(firstRow);
+		userRepository.findByIdGreaterThanOrderByIdAsc(PAST_LAST_USER, PageRequest.of(0, 1));
+		userRepository.findVersionsByIdGreaterThanOrderByIdAsc(PAST_LAST_USER, PageRequest.of(0, 1));
+	}
+}
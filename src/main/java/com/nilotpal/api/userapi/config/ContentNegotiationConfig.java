@@ -0,0 +1,81 @@
+package com.nilotpal.api.userapi.config;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.ListIterator;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Binary encodings of the JSON payloads for service-to-service callers: Smile and CBOR carry the same
+ * documents as the JSON responses, so the model needs no extra schema. They are only used when the
+ * client asks for them with Accept; JSON stays the default.
+ */
+@Configuration
+public class ContentNegotiationConfig implements WebMvcConfigurer {
+	public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+	public static final String APPLICATION_CBOR_VALUE = "application/cbor";
+	public static final MediaType APPLICATION_SMILE = MediaType.parseMediaType(APPLICATION_SMILE_VALUE);
+	public static final MediaType APPLICATION_CBOR = MediaType.parseMediaType(APPLICATION_CBOR_VALUE);
+
+	private final ApplicationContext applicationContext;
+	private final ObjectProvider<List<Jackson2ObjectMapperBuilderCustomizer>> customizers;
+
+	public ContentNegotiationConfig(ApplicationContext applicationContext,
+			ObjectProvider<List<Jackson2ObjectMapperBuilderCustomizer>> customizers) {
+		this.applicationContext = applicationContext;
+		this.customizers = customizers;
+	}
+
+	/**
+	 * Spring MVC already registers Smile and CBOR converters when jackson-dataformat-smile and -cbor
+	 * are on the classpath, with mappers Boot's customizers never see. They are replaced in place, as
+	 * the first converter able to write a type wins and appending would leave the defaults in charge.
+	 */
+	@Override
+	public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+		replace(converters, MappingJackson2SmileHttpMessageConverter.class,
+				new MappingJackson2SmileHttpMessageConverter(objectMapper(Jackson2ObjectMapperBuilder.smile())));
+		replace(converters, MappingJackson2CborHttpMessageConverter.class,
+				new MappingJackson2CborHttpMessageConverter(objectMapper(Jackson2ObjectMapperBuilder.cbor())));
+	}
+
+	private static void replace(List<HttpMessageConverter<?>> converters,
+			Class<? extends HttpMessageConverter<?>> type, HttpMessageConverter<?> converter) {
+		boolean replaced = false;
+		for (ListIterator<HttpMessageConverter<?>> iterator = converters.listIterator(); iterator.hasNext();) {
+			if (type.isInstance(iterator.next())) {
+				if (replaced) {
+					iterator.remove();
+				} else {
+					iterator.set(converter);
+					replaced = true;
+				}
+			}
+		}
+		if (!replaced) {
+			converters.add(converter);
+		}
+	}
+
+	/**
+	 * Same modules and features as the JSON mapper Boot configures: its customizers are applied to a
+	 * fresh builder of the binary format. Boot's own builder is a shared bean and is left untouched.
+	 */
+	private ObjectMapper objectMapper(Jackson2ObjectMapperBuilder builder) {
+		builder.applicationContext(applicationContext);
+		customizers.getIfAvailable(Collections::emptyList).forEach(customizer -> customizer.customize(builder));
+		return builder.build();
+	}
+}
@@ -0,0 +1,44 @@
+package com.nilotpal.api.userapi.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Sizes the Hikari pool from user-api.datasource.pool-size instead of Hikari's fixed default of
+ * 10. A size of 0 derives it from the cores, (cores * 2) + 1, which is where a pool in front of a
+ * single database stops gaining throughput. minimum-idle has Hikari's meaning (0 keeps no idle
+ * connection); fixed-pool keeps every connection open instead. The database executor takes the
+ * same size unless user-api.db-executor.threads is set.
+ */
+@Configuration
+public class DataSourcePoolConfig {
+
+	@Bean
+	public static BeanPostProcessor dataSourcePoolSizer(@Value("${user-api.datasource.pool-size:0}") int poolSize,
+			@Value("${user-api.datasource.minimum-idle:2}") int minimumIdle,
+			@Value("${user-api.datasource.fixed-pool:false}") boolean fixedPool) {
+		return new BeanPostProcessor() {
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+				if (bean instanceof HikariDataSource) {
+					size((HikariDataSource) bean, poolSize, minimumIdle, fixedPool);
+				}
+				return bean;
+			}
+		};
+	}
+
+	public static void size(HikariDataSource dataSource, int poolSize, int minimumIdle, boolean fixedPool) {
+		int maximumPoolSize = poolSize(poolSize);
+		dataSource.setMaximumPoolSize(maximumPoolSize);
+		dataSource.setMinimumIdle(fixedPool ? maximumPoolSize : Math.max(0, Math.min(minimumIdle, maximumPoolSize)));
+	}
+
+	public static int poolSize(int configured) {
+		return configured > 0 ? configured : Runtime.getRuntime().availableProcessors() * 2 + 1;
+	}
+}
@@ -0,0 +1,84 @@
+package com.nilotpal.api.userapi.config;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Runs blocking repository calls on a bounded pool so Tomcat's request threads are released while
+ * JDBC works; throughput is then capped by the pool (sized like the connection pool) rather than by
+ * server.tomcat.max-threads. When the queue is full the submission fails with a
+ * TaskRejectedException, answered with 503 and Retry-After. Disabled, calls run on the caller.
+ */
+@Component
+public class DatabaseExecutor {
+	private final ThreadPoolTaskExecutor executor;
+
+	public DatabaseExecutor(@Value("${user-api.db-executor.enabled:true}") boolean enabled,
+			@Value("${user-api.db-executor.threads:${user-api.datasource.pool-size:0}}") int threads,
+			@Value("${user-api.db-executor.queue-capacity:200}") int queueCapacity) {
+		if (enabled) {
+			executor = new ThreadPoolTaskExecutor();
+			executor.setCorePoolSize(DataSourcePoolConfig.poolSize(threads));
+			executor.setMaxPoolSize(DataSourcePoolConfig.poolSize(threads));
+			executor.setQueueCapacity(queueCapacity);
+			executor.setThreadNamePrefix("db-");
+			executor.initialize();
+		} else {
+			executor = null;
+		}
+	}
+
+	@PreDestroy
+	void shutdown() {
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	public <T> CompletableFuture<T> supply(final Callable<T> call) {
+		if (executor == null) {
+			CompletableFuture<T> result = new CompletableFuture<>();
+			try {
+				result.complete(call.call());
+			} catch (Exception e) {
+				result.completeExceptionally(e instanceof RuntimeException ? e : new CompletionException(e));
+			}
+			return result;
+		}
+
+		HttpServletRequest request = currentRequest();
+		return CompletableFuture.supplyAsync(() -> {
+			HibernateStatementListener.reset();
+			try {
+				return call.call();
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			} finally {
+				// Handed over before the future completes, so it is there when the request is recorded
+				if (request != null) {
+					MetricsConfig.addStatements(request, HibernateStatementListener.get());
+				}
+				HibernateStatementListener.clear();
+			}
+		}, executor);
+	}
+
+	private static HttpServletRequest currentRequest() {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		return attributes instanceof ServletRequestAttributes ? ((ServletRequestAttributes) attributes).getRequest()
+				: null;
+	}
+}
@@ -0,0 +1,21 @@
+package com.nilotpal.api.userapi.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stops the application as soon as it is ready (user-api.startup.exit-when-ready=true), for
+ * training runs that record the classes loaded during startup into a class-data sharing archive.
+ */
+@Component
+@ConditionalOnProperty("user-api.startup.exit-when-ready")
+public class ExitWhenReady implements ApplicationListener<ApplicationReadyEvent> {
+
+	@Override
+	public void onApplicationEvent(ApplicationReadyEvent event) {
+		System.exit(SpringApplication.exit(event.getApplicationContext()));
+	}
+}
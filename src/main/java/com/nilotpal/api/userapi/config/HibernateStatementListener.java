@@ -0,0 +1,76 @@
+package com.nilotpal.api.userapi.config;
+
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Hibernate instantiates this class once as the statement inspector and once per session as the
+ * session listener (hibernate.session.events.auto). Both share per-thread state: the inspector sees
+ * the SQL as it is prepared, the listener counts and times its execution. The count is read by
+ * MetricsConfig at the end of each request; slow statements are handed to SlowQueryLog.
+ */
+public class HibernateStatementListener extends BaseSessionEventListener implements StatementInspector {
+	private static final long serialVersionUID = 1L;
+
+	private static final ThreadLocal<StatementState> STATE = ThreadLocal.withInitial(StatementState::new);
+
+	@Override
+	public String inspect(String sql) {
+		STATE.get().sql = sql;
+		return sql;
+	}
+
+	@Override
+	public void jdbcExecuteStatementStart() {
+		executionStarted();
+	}
+
+	@Override
+	public void jdbcExecuteStatementEnd() {
+		executionEnded();
+	}
+
+	@Override
+	public void jdbcExecuteBatchStart() {
+		executionStarted();
+	}
+
+	@Override
+	public void jdbcExecuteBatchEnd() {
+		executionEnded();
+	}
+
+	private static void executionStarted() {
+		StatementState state = STATE.get();
+		state.statements++;
+		if (SlowQueryLog.isActive()) {
+			state.startNanos = System.nanoTime();
+		}
+	}
+
+	private static void executionEnded() {
+		StatementState state = STATE.get();
+		if (state.startNanos != 0L) {
+			SlowQueryLog.statementExecuted(state.sql, System.nanoTime() - state.startNanos);
+			state.startNanos = 0L;
+		}
+	}
+
+	public static void reset() {
+		STATE.get().statements = 0;
+	}
+
+	public static int get() {
+		return STATE.get().statements;
+	}
+
+	public static void clear() {
+		STATE.remove();
+	}
+
+	private static class StatementState {
+		private int statements;
+		private String sql;
+		private long startNanos;
+	}
+}
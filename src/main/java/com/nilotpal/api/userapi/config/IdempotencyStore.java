@@ -0,0 +1,143 @@
+package com.nilotpal.api.userapi.config;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import com.nilotpal.api.userapi.exceptions.IdempotencyKeyReusedException;
+
+/**
+ * Remembers the responses of writes sent with an Idempotency-Key header, so a client retrying
+ * after a timeout gets the original response (marked Idempotent-Replayed) instead of a second
+ * write. Concurrent requests with the same key share the execution of the first one. Each key is
+ * bound to a digest of the operation and request body (the password included, so it is never kept
+ * itself); reusing it for anything else fails with IdempotencyKeyReusedException. Only successful
+ * responses are kept, a failed request can be retried with the same key. Keys belong to the client
+ * that sent them (ClientIdentity), so one client's key never answers or blocks another's.
+ *
+ * Finished executions are held in memory for ttl-seconds, at most max-keys of them, so a retry
+ * reaching another instance is not caught. Executions still running are held apart from them until
+ * they finish, so evicting keys cannot let a duplicate of a running request run as well; there are
+ * never more of those than requests in flight. A finished execution moves over while its key is
+ * locked, so a duplicate arriving at that moment finds it in one place or the other.
+ */
+@Component
+public class IdempotencyStore {
+	public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+	public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+	private final ObjectMapper objectMapper;
+	private final ClientIdentity clientIdentity;
+	private final ConcurrentHashMap<String, Execution> running = new ConcurrentHashMap<>();
+	private final Cache<String, Execution> finished;
+
+	public IdempotencyStore(ObjectMapper objectMapper, ClientIdentity clientIdentity,
+			@Value("${user-api.idempotency.enabled:true}") boolean enabled,
+			@Value("${user-api.idempotency.max-keys:10000}") long maxKeys,
+			@Value("${user-api.idempotency.ttl-seconds:86400}") long ttlSeconds) {
+		this.objectMapper = objectMapper;
+		this.clientIdentity = clientIdentity;
+		this.finished = enabled ? Caffeine.newBuilder().maximumSize(maxKeys)
+				.expireAfterWrite(ttlSeconds, TimeUnit.SECONDS).<String, Execution>build() : null;
+	}
+
+	/**
+	 * Runs the call, or answers from the execution an earlier request with the same key started.
+	 * Without a key (or with the store disabled) the call simply runs.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> CompletableFuture<ResponseEntity<T>> execute(final HttpServletRequest httpRequest, final String key,
+			final String operation, final Object request, final Supplier<CompletableFuture<ResponseEntity<T>>> call)
+			throws IdempotencyKeyReusedException {
+		if (finished == null || key == null) {
+			return call.get();
+		}
+		String clientKey = clientIdentity.of(httpRequest) + ' ' + key;
+		Execution started = new Execution(fingerprint(operation, request));
+		Execution[] earlier = new Execution[1];
+		running.compute(clientKey, (k, current) -> {
+			earlier[0] = current != null ? current : finished.getIfPresent(k);
+			return earlier[0] == null ? started : current;
+		});
+		Execution execution = earlier[0];
+		if (execution != null) {
+			if (!execution.fingerprint.equals(started.fingerprint)) {
+				throw new IdempotencyKeyReusedException(
+						IDEMPOTENCY_KEY_HEADER + " " + key + " was already used for a different request");
+			}
+			return execution.response.thenApply(response -> (ResponseEntity<T>) replayed(response));
+		}
+
+		CompletableFuture<ResponseEntity<T>> response;
+		try {
+			response = call.get();
+		} catch (RuntimeException e) {
+			running.remove(clientKey, started);
+			started.response.completeExceptionally(e);
+			throw e;
+		}
+		response.whenComplete((result, failure) -> {
+			boolean succeeded = failure == null && result.getStatusCode().is2xxSuccessful();
+			running.computeIfPresent(clientKey, (k, current) -> {
+				if (current != started) {
+					return current;
+				}
+				if (succeeded) {
+					finished.put(k, started);
+				}
+				return null;
+			});
+			if (failure != null) {
+				started.response.completeExceptionally(failure);
+			} else {
+				started.response.complete(result);
+			}
+		});
+		return response;
+	}
+
+	private static ResponseEntity<?> replayed(final ResponseEntity<?> response) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.putAll(response.getHeaders());
+		headers.set(REPLAYED_HEADER, "true");
+		return new ResponseEntity<>(response.getBody(), headers, response.getStatusCode());
+	}
+
+	private String fingerprint(final String operation, final Object request) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(operation.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(objectMapper.writeValueAsBytes(request));
+			return Base64.getEncoder().encodeToString(digest.digest());
+		} catch (NoSuchAlgorithmException | JsonProcessingException e) {
+			throw new IllegalStateException("Cannot fingerprint " + operation, e);
+		}
+	}
+
+	private static final class Execution {
+		private final String fingerprint;
+		private final CompletableFuture<ResponseEntity<?>> response = new CompletableFuture<>();
+
+		Execution(String fingerprint) {
+			this.fingerprint = fingerprint;
+		}
+	}
+}
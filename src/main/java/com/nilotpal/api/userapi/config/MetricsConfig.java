@@ -0,0 +1,158 @@
+package com.nilotpal.api.userapi.config;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.Repository;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Timings Boot does not record on its own: every repository method call as repository.invocations
+ * (also fed to the AdaptiveConcurrencyLimit) and the number of JDBC statements behind each request
+ * as hibernate.statements.per.request.
+ * Endpoint (http.server.requests), pool wait and usage (hikaricp.connections.*) timers are bound by
+ * Boot; the percentiles of all of them are configured in application.properties.
+ */
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+	public static final String REPOSITORY_INVOCATIONS = "repository.invocations";
+	public static final String STATEMENTS_PER_REQUEST = "hibernate.statements.per.request";
+	static final String OFFLOADED_STATEMENTS_ATTRIBUTE = MetricsConfig.class.getName() + ".offloadedStatements";
+
+	private final ObjectProvider<MeterRegistry> meterRegistry;
+
+	public MetricsConfig(ObjectProvider<MeterRegistry> meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+
+	/**
+	 * Spring Data Kay has no repository metrics, so time the repository proxies by adding an
+	 * interceptor in front of their transaction and exception translation advice.
+	 */
+	@Bean
+	public static BeanPostProcessor repositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry,
+			ObjectProvider<AdaptiveConcurrencyLimit> concurrencyLimit) {
+		return new BeanPostProcessor() {
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+				if (bean instanceof Repository && bean instanceof Advised) {
+					Advised advised = (Advised) bean;
+					advised.addAdvice(0, new RepositoryTimingInterceptor(meterRegistry, concurrencyLimit,
+							advised.getProxiedInterfaces()[0].getSimpleName()));
+				}
+				return bean;
+			}
+		};
+	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(new StatementCountInterceptor(meterRegistry));
+	}
+
+	/**
+	 * Adds statements a request ran on another thread (the database executor) to its count.
+	 */
+	static void addStatements(HttpServletRequest request, int statements) {
+		Object offloaded = request.getAttribute(OFFLOADED_STATEMENTS_ATTRIBUTE);
+		request.setAttribute(OFFLOADED_STATEMENTS_ATTRIBUTE,
+				offloaded == null ? statements : (Integer) offloaded + statements);
+	}
+
+	static class RepositoryTimingInterceptor implements MethodInterceptor {
+		private final ObjectProvider<MeterRegistry> meterRegistry;
+		private final ObjectProvider<AdaptiveConcurrencyLimit> concurrencyLimit;
+		private final String repository;
+
+		RepositoryTimingInterceptor(ObjectProvider<MeterRegistry> meterRegistry,
+				ObjectProvider<AdaptiveConcurrencyLimit> concurrencyLimit, String repository) {
+			this.meterRegistry = meterRegistry;
+			this.concurrencyLimit = concurrencyLimit;
+			this.repository = repository;
+		}
+
+		@Override
+		public Object invoke(MethodInvocation invocation) throws Throwable {
+			MeterRegistry registry = meterRegistry.getIfAvailable();
+			AdaptiveConcurrencyLimit limit = concurrencyLimit.getIfAvailable();
+			if (registry == null && limit == null) {
+				return invocation.proceed();
+			}
+			long start = System.nanoTime();
+			String exception = "None";
+			try {
+				return invocation.proceed();
+			} catch (Throwable e) {
+				exception = e.getClass().getSimpleName();
+				throw e;
+			} finally {
+				long elapsed = System.nanoTime() - start;
+				if (limit != null) {
+					limit.recordLatency(invocation.getMethod().getName(), elapsed);
+				}
+				if (registry != null) {
+					Timer.builder(REPOSITORY_INVOCATIONS)
+							.tags("repository", repository, "method", invocation.getMethod().getName(), "exception",
+									exception)
+							.description("Duration of repository method invocations").register(registry)
+							.record(elapsed, TimeUnit.NANOSECONDS);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Open session in view keeps one Hibernate session per request thread, so the statement count
+	 * is reset when the handler starts and recorded once it completes.
+	 */
+	static class StatementCountInterceptor extends HandlerInterceptorAdapter {
+		private final ObjectProvider<MeterRegistry> meterRegistry;
+
+		StatementCountInterceptor(ObjectProvider<MeterRegistry> meterRegistry) {
+			this.meterRegistry = meterRegistry;
+		}
+
+		@Override
+		public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+			HibernateStatementListener.reset();
+			return true;
+		}
+
+		@Override
+		public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+				Exception ex) {
+			MeterRegistry registry = meterRegistry.getIfAvailable();
+			if (registry != null) {
+				Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+				Object offloaded = request.getAttribute(OFFLOADED_STATEMENTS_ATTRIBUTE);
+				DistributionSummary.builder(STATEMENTS_PER_REQUEST)
+						.tags("method", request.getMethod(), "uri", uri == null ? "UNKNOWN" : uri.toString())
+						.description("JDBC statements executed by Hibernate per request").register(registry)
+						.record(HibernateStatementListener.get() + (offloaded == null ? 0 : (Integer) offloaded));
+			}
+			HibernateStatementListener.clear();
+		}
+
+		@Override
+		public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+				Object handler) {
+			HibernateStatementListener.clear();
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package com.nilotpal.api.userapi.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * BCrypt is deliberately slow, so hashing runs on its own bounded pool instead of on Tomcat's
+ * request threads. When the queue is full the submission is rejected and the request answered
+ * with a 503 rather than queueing without limit.
+ */
+@Configuration
+public class PasswordHashingConfig {
+	public static final String PASSWORD_HASHING_EXECUTOR = "passwordHashingExecutor";
+
+	@Bean
+	public BCryptPasswordEncoder passwordEncoder(@Value("${user-api.password.bcrypt-strength:10}") int strength) {
+		return new BCryptPasswordEncoder(strength);
+	}
+
+	@Bean(name = PASSWORD_HASHING_EXECUTOR)
+	public ThreadPoolTaskExecutor passwordHashingExecutor(
+			@Value("${user-api.password.hashing-threads:0}") int threads,
+			@Value("${user-api.password.hashing-queue-capacity:1000}") int queueCapacity) {
+		int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(poolSize);
+		executor.setMaxPoolSize(poolSize);
+		executor.setQueueCapacity(queueCapacity);
+		executor.setThreadNamePrefix("password-hash-");
+		return executor;
+	}
+}
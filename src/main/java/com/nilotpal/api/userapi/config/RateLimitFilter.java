@@ -0,0 +1,218 @@
+package com.nilotpal.api.userapi.config;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import com.nilotpal.api.userapi.model.ApiException;
+
+/**
+ * Throttles each client of the users APIs with a token bucket holding up to burst tokens, refilled
+ * at requests-per-second. Operations over many users (GET of the whole list, export, stream, search,
+ * lookup and batches) take list-cost tokens; a cursor page of the list (after or limit given) takes
+ * point-cost for every page-rows rows it asks for, up to list-cost; the others, creating a user with
+ * PUT /users among them, take point-cost. Clients are told apart by the ClientIdentity, their
+ * address unless they send a known API key; a client out of tokens gets 429 with Retry-After set to
+ * when enough are back. Admitted requests then need a permit from the AdaptiveConcurrencyLimit and
+ * are shed with 503 without one; the permit is returned when the last dispatch of the request ends.
+ *
+ * A bucket is a single AtomicLong holding the time it will be full again (GCRA), so taking tokens
+ * is one compare-and-set. Buckets live in a bounded Caffeine map whose striped table keeps clients
+ * from contending with each other, and are dropped once idle long enough to be full anyway.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+	private static final Pattern USERS_API = Pattern.compile("/(reactive/)?users(/.*)?");
+	private static final Pattern USERS_COLLECTION = Pattern.compile("/(reactive/)?users/?");
+	private static final Pattern BULK_OPERATIONS = Pattern
+			.compile("/(reactive/)?users/(export|search|lookup|stream|batch(/delete)?)/?");
+	private static final String PERMIT_ATTRIBUTE = RateLimitFilter.class.getName() + ".permit";
+
+	private final ObjectMapper objectMapper;
+	private final AdaptiveConcurrencyLimit concurrencyLimit;
+	private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+	private final boolean enabled;
+	private final long intervalNanos;
+	private final int burst;
+	private final int listCost;
+	private final int pointCost;
+	private final int pageRows;
+	private final ClientIdentity clientIdentity;
+	private final Cache<String, AtomicLong> buckets;
+
+	public RateLimitFilter(ObjectMapper objectMapper, AdaptiveConcurrencyLimit concurrencyLimit,
+			ClientIdentity clientIdentity,
+			@Value("${user-api.rate-limit.enabled:true}") boolean enabled,
+			@Value("${user-api.rate-limit.requests-per-second:50}") double requestsPerSecond,
+			@Value("${user-api.rate-limit.burst:100}") int burst,
+			@Value("${user-api.rate-limit.list-cost:10}") int listCost,
+			@Value("${user-api.rate-limit.point-cost:1}") int pointCost,
+			@Value("${user-api.rate-limit.page-rows:100}") int pageRows,
+			@Value("${user-api.rate-limit.max-clients:100000}") long maxClients) {
+		this.objectMapper = objectMapper;
+		this.concurrencyLimit = concurrencyLimit;
+		this.enabled = enabled;
+		this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1L) / requestsPerSecond);
+		this.burst = burst;
+		this.listCost = listCost;
+		this.pointCost = pointCost;
+		this.pageRows = pageRows;
+		this.clientIdentity = clientIdentity;
+		this.buckets = Caffeine.newBuilder().maximumSize(maxClients)
+				.expireAfterAccess(Duration.ofNanos(Math.max(TimeUnit.SECONDS.toNanos(1L), burst * intervalNanos)))
+				.build();
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		return !USERS_API.matcher(urlPathHelper.getPathWithinApplication(request)).matches();
+	}
+
+	@Override
+	protected boolean shouldNotFilterAsyncDispatch() {
+		// The last dispatch of an asynchronous request is where its permit is returned
+		return false;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		Permit permit = (Permit) request.getAttribute(PERMIT_ATTRIBUTE);
+		if (permit == null) {
+			if (enabled) {
+				long waitNanos = tryAcquire(clientIdentity.of(request), costOf(request), System.nanoTime());
+				if (waitNanos > 0L) {
+					reject(response, HttpStatus.TOO_MANY_REQUESTS, TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1L,
+							"Rate limit exceeded, retry later");
+					return;
+				}
+			}
+			if (!concurrencyLimit.tryAcquire()) {
+				reject(response, HttpStatus.SERVICE_UNAVAILABLE, Long.parseLong(UserExceptionHandler.RETRY_AFTER_SECONDS),
+						"Server busy, retry later");
+				return;
+			}
+			permit = new Permit(concurrencyLimit);
+			request.setAttribute(PERMIT_ATTRIBUTE, permit);
+		}
+
+		try {
+			filterChain.doFilter(request, response);
+		} finally {
+			if (!isAsyncStarted(request)) {
+				permit.release();
+			} else if (!isAsyncDispatch(request)) {
+				// In case the request ends without another dispatch, e.g. when the client goes away
+				request.getAsyncContext().addListener(permit);
+			}
+		}
+	}
+
+	/**
+	 * Returns the tokens the request takes: list-cost for operations over many users, point-cost per
+	 * page-rows rows of a cursor page, up to list-cost, and point-cost for the rest.
+	 */
+	int costOf(HttpServletRequest request) {
+		String path = urlPathHelper.getPathWithinApplication(request);
+		if (BULK_OPERATIONS.matcher(path).matches()) {
+			return listCost;
+		}
+		if (!USERS_COLLECTION.matcher(path).matches() || !HttpMethod.GET.matches(request.getMethod())) {
+			return pointCost;
+		}
+		String limit = request.getParameter("limit");
+		if (limit == null) {
+			return request.getParameter("after") == null ? listCost : pointCost;
+		}
+		try {
+			long rows = Math.min(Math.max(Long.parseLong(limit), 1L), (long) listCost * pageRows);
+			return (int) Math.min((rows + pageRows - 1) / pageRows * pointCost, listCost);
+		} catch (NumberFormatException e) {
+			return listCost;
+		}
+	}
+
+	/**
+	 * Takes cost tokens from the client's bucket and returns 0, or returns how long to wait until
+	 * they would be there, taking nothing. A cost above burst is charged as burst.
+	 */
+	long tryAcquire(String client, int cost, long nowNanos) {
+		AtomicLong fullAt = buckets.get(client, key -> new AtomicLong(nowNanos));
+		long increment = Math.min(cost, burst) * intervalNanos;
+		long capacity = burst * intervalNanos;
+		while (true) {
+			long current = fullAt.get();
+			long next = Math.max(current, nowNanos) + increment;
+			long waitNanos = next - nowNanos - capacity;
+			if (waitNanos > 0L) {
+				return waitNanos;
+			}
+			if (fullAt.compareAndSet(current, next)) {
+				return 0L;
+			}
+		}
+	}
+
+	private void reject(HttpServletResponse response, HttpStatus status, long retryAfterSeconds, String message)
+			throws IOException {
+		response.setStatus(status.value());
+		response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+		response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+		objectMapper.writeValue(response.getOutputStream(), new ApiException(status, message));
+	}
+
+	private static class Permit implements AsyncListener {
+		private final AtomicBoolean released = new AtomicBoolean();
+		private final AdaptiveConcurrencyLimit concurrencyLimit;
+
+		Permit(AdaptiveConcurrencyLimit concurrencyLimit) {
+			this.concurrencyLimit = concurrencyLimit;
+		}
+
+		void release() {
+			if (released.compareAndSet(false, true)) {
+				concurrencyLimit.release();
+			}
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			release();
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+		}
+	}
+}
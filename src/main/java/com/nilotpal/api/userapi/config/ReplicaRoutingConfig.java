@@ -0,0 +1,63 @@
+package com.nilotpal.api.userapi.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Replaces Boot's single pool when user-api.datasource.replica-urls lists read replicas: the
+ * primary keeps the spring.datasource settings, each replica gets a pool of the same size and
+ * credentials, and the application's DataSource routes between them by transaction type. The
+ * pools are not beans of their own, as Boot initialises the schema of every DataSource bean.
+ */
+@Configuration
+@ConditionalOnProperty(ReplicaRoutingConfig.REPLICA_URLS)
+public class ReplicaRoutingConfig {
+	public static final String REPLICA_URLS = "user-api.datasource.replica-urls";
+
+	@Bean
+	public ReplicaRoutingDataSource dataSource(DataSourceProperties properties, Environment environment,
+			@Value("${" + REPLICA_URLS + "}") String[] replicaUrls,
+			@Value("${user-api.datasource.pool-size:0}") int poolSize,
+			@Value("${user-api.datasource.minimum-idle:2}") int minimumIdle,
+			@Value("${user-api.datasource.fixed-pool:false}") boolean fixedPool,
+			@Value("${user-api.datasource.replica-max-lag-seconds:5}") long maxLagSeconds,
+			@Value("${user-api.datasource.replica-lag-check-interval-ms:1000}") long checkIntervalMillis,
+			@Value("${user-api.datasource.replica-lag-query:SHOW SLAVE STATUS}") String lagQuery,
+			ObjectProvider<MeterRegistry> meterRegistry) {
+		HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+		Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+		DataSourcePoolConfig.size(primary, poolSize, minimumIdle, fixedPool);
+
+		List<HikariDataSource> replicas = new ArrayList<>(replicaUrls.length);
+		for (int i = 0; i < replicaUrls.length; i++) {
+			HikariDataSource replica = new HikariDataSource();
+			replica.setPoolName(primary.getPoolName() + "-replica-" + i);
+			replica.setJdbcUrl(replicaUrls[i].trim());
+			replica.setDriverClassName(properties.determineDriverClassName());
+			replica.setUsername(properties.determineUsername());
+			replica.setPassword(properties.determinePassword());
+			replica.setMaximumPoolSize(primary.getMaximumPoolSize());
+			replica.setMinimumIdle(primary.getMinimumIdle());
+			replica.setConnectionTimeout(primary.getConnectionTimeout());
+			replica.setReadOnly(true);
+			replica.setDataSourceProperties(primary.getDataSourceProperties());
+			replicas.add(replica);
+		}
+		return new ReplicaRoutingDataSource(primary, replicas, maxLagSeconds, checkIntervalMillis, lagQuery,
+				meterRegistry);
+	}
+}
@@ -0,0 +1,198 @@
+package com.nilotpal.api.userapi.config;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Sends read-only transactions to the replicas in turn and everything else to the primary. A
+ * background check reads each replica's lag (the Seconds_Behind_Master column of the lag query,
+ * or its first column); replicas that are further behind than the limit, or whose lag cannot be
+ * read, are skipped, and with none left reads fall back to the primary. Connections are fetched
+ * lazily, as the read-only flag is only set once the transaction has begun. Outside of a
+ * transaction the data source unwraps to the primary pool.
+ */
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy
+		implements SmartInitializingSingleton, DisposableBean {
+	public static final String ROUTED = "datasource.routed";
+	public static final String REPLICA_LAG = "datasource.replica.lag";
+	static final String PRIMARY = "primary";
+	private static final String SECONDS_BEHIND_MASTER = "Seconds_Behind_Master";
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+	private final HikariDataSource primary;
+	private final List<Replica> replicas = new ArrayList<>();
+	private final long maxLagSeconds;
+	private final long checkIntervalMillis;
+	private final String lagQuery;
+	private final ObjectProvider<MeterRegistry> meterRegistryProvider;
+	private final AtomicInteger next = new AtomicInteger();
+	private final Map<String, Counter> routed = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService lagChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "replica-lag");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private volatile MeterRegistry meterRegistry;
+
+	public ReplicaRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas, long maxLagSeconds,
+			long checkIntervalMillis, String lagQuery, ObjectProvider<MeterRegistry> meterRegistryProvider) {
+		this.primary = primary;
+		this.maxLagSeconds = maxLagSeconds;
+		this.checkIntervalMillis = checkIntervalMillis;
+		this.lagQuery = lagQuery;
+		this.meterRegistryProvider = meterRegistryProvider;
+		Map<Object, Object> targets = new HashMap<>();
+		targets.put(PRIMARY, primary);
+		for (int i = 0; i < replicas.size(); i++) {
+			Replica replica = new Replica("replica-" + i, replicas.get(i));
+			this.replicas.add(replica);
+			targets.put(replica.key, replica.dataSource);
+		}
+		AbstractRoutingDataSource router = new AbstractRoutingDataSource() {
+			@Override
+			protected Object determineCurrentLookupKey() {
+				return lookupKey();
+			}
+		};
+		router.setTargetDataSources(targets);
+		router.setDefaultTargetDataSource(primary);
+		router.setLenientFallback(false);
+		router.afterPropertiesSet();
+		setTargetDataSource(router);
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		super.afterPropertiesSet();
+		// Checked once up front so reads use the replicas from the first request on
+		checkLag();
+		lagChecker.scheduleWithFixedDelay(this::checkLag, checkIntervalMillis, checkIntervalMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Meters are bound once every bean exists, as the registry itself is built on top of this
+	 * data source; connections routed while the context starts are not counted.
+	 */
+	@Override
+	public void afterSingletonsInstantiated() {
+		MeterRegistry registry = meterRegistryProvider.getIfAvailable();
+		if (registry == null) {
+			return;
+		}
+		for (Replica replica : replicas) {
+			if (replica.dataSource.getMetricsTrackerFactory() == null) {
+				replica.dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+			}
+			Gauge.builder(REPLICA_LAG, replica, r -> r.lagSeconds).tag("target", replica.key).baseUnit("seconds")
+					.description("Replication lag last read from the replica, NaN when unknown").register(registry);
+		}
+		meterRegistry = registry;
+	}
+
+	@Override
+	public void destroy() {
+		lagChecker.shutdownNow();
+		for (Replica replica : replicas) {
+			replica.dataSource.close();
+		}
+		primary.close();
+	}
+
+	private String lookupKey() {
+		if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			return routed(PRIMARY, false);
+		}
+		int start = next.getAndIncrement();
+		for (int i = 0; i < replicas.size(); i++) {
+			Replica replica = replicas.get(Math.floorMod(start + i, replicas.size()));
+			if (replica.lagSeconds <= maxLagSeconds) {
+				return routed(replica.key, true);
+			}
+		}
+		return routed(PRIMARY, true);
+	}
+
+	private String routed(String key, boolean readOnly) {
+		MeterRegistry registry = meterRegistry;
+		if (registry != null) {
+			String transaction = readOnly ? "read-only" : "read-write";
+			routed.computeIfAbsent(key + '/' + transaction, k -> Counter.builder(ROUTED).tag("target", key)
+					.tag("transaction", transaction).description("Connections handed out per routing target")
+					.register(registry)).increment();
+		}
+		return key;
+	}
+
+	void checkLag() {
+		for (Replica replica : replicas) {
+			try {
+				replica.lagSeconds = readLag(replica.dataSource);
+			} catch (SQLException | RuntimeException e) {
+				LOGGER.warn("Could not read the lag of {}, reading from the primary instead", replica.key, e);
+				replica.lagSeconds = Double.NaN;
+			}
+		}
+	}
+
+	private double readLag(HikariDataSource dataSource) throws SQLException {
+		try (Connection connection = dataSource.getConnection();
+				Statement statement = connection.createStatement();
+				ResultSet resultSet = statement.executeQuery(lagQuery)) {
+			if (!resultSet.next()) {
+				// Not replicating at all
+				return Double.NaN;
+			}
+			long lag = resultSet.getLong(lagColumn(resultSet));
+			return resultSet.wasNull() ? Double.NaN : lag;
+		}
+	}
+
+	private static int lagColumn(ResultSet resultSet) {
+		try {
+			return resultSet.findColumn(SECONDS_BEHIND_MASTER);
+		} catch (SQLException e) {
+			return 1;
+		}
+	}
+
+	private static class Replica {
+		private final String key;
+		private final HikariDataSource dataSource;
+		// NaN (unknown) compares false against the limit, so an unchecked replica is never used
+		private volatile double lagSeconds = Double.NaN;
+
+		Replica(String key, HikariDataSource dataSource) {
+			this.key = key;
+			this.dataSource = dataSource;
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package com.nilotpal.api.userapi.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sampled slow-query log that replaces show-sql and parameter tracing. Statements slower than the
+ * threshold are sampled on the request thread and written by a single background thread; the SQL
+ * is the prepared text, so bound parameters are never logged and inline literals are masked.
+ * Settings can be read and changed at runtime through the slowqueries actuator endpoint.
+ */
+@Component
+@Endpoint(id = "slowqueries")
+public class SlowQueryLog {
+	private static final Logger LOGGER = LoggerFactory.getLogger(SlowQueryLog.class);
+	private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+	private static final Pattern NUMERIC_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+	private static final int QUEUE_CAPACITY = 1000;
+
+	private static volatile SlowQueryLog instance;
+
+	private final ThreadPoolExecutor writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+				Thread thread = new Thread(r, "slow-query-log");
+				thread.setDaemon(true);
+				return thread;
+			}, (r, executor) -> dropped());
+	private final AtomicLong logged = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	private volatile boolean enabled;
+	private volatile long thresholdNanos;
+	private volatile double sampleRate;
+
+	public SlowQueryLog(@Value("${user-api.slow-query-log.enabled:false}") boolean enabled,
+			@Value("${user-api.slow-query-log.threshold-ms:200}") long thresholdMillis,
+			@Value("${user-api.slow-query-log.sample-rate:1.0}") double sampleRate) {
+		this.enabled = enabled;
+		this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+		this.sampleRate = sampleRate;
+	}
+
+	@PostConstruct
+	void register() {
+		instance = this;
+	}
+
+	@PreDestroy
+	void shutdown() {
+		if (instance == this) {
+			instance = null;
+		}
+		writer.shutdown();
+	}
+
+	static boolean isActive() {
+		SlowQueryLog log = instance;
+		return log != null && log.enabled;
+	}
+
+	static void statementExecuted(String sql, long elapsedNanos) {
+		SlowQueryLog log = instance;
+		if (log != null) {
+			log.record(sql, elapsedNanos);
+		}
+	}
+
+	void record(String sql, long elapsedNanos) {
+		if (!enabled || elapsedNanos < thresholdNanos || sql == null) {
+			return;
+		}
+		if (sampleRate < 1.0d && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+			return;
+		}
+		writer.execute(() -> {
+			logged.incrementAndGet();
+			LOGGER.warn("Slow query ({} ms): {}", TimeUnit.NANOSECONDS.toMillis(elapsedNanos), redact(sql));
+		});
+	}
+
+	private void dropped() {
+		droppedCount.incrementAndGet();
+	}
+
+	static String redact(String sql) {
+		String redacted = STRING_LITERAL.matcher(sql).replaceAll("'?'");
+		return NUMERIC_LITERAL.matcher(redacted).replaceAll("?").replaceAll("\\s+", " ").trim();
+	}
+
+	@ReadOperation
+	public Map<String, Object> settings() {
+		Map<String, Object> settings = new LinkedHashMap<>();
+		settings.put("enabled", enabled);
+		settings.put("thresholdMs", TimeUnit.NANOSECONDS.toMillis(thresholdNanos));
+		settings.put("sampleRate", sampleRate);
+		settings.put("logged", logged.get());
+		settings.put("dropped", droppedCount.get());
+		return settings;
+	}
+
+	@WriteOperation
+	public Map<String, Object> configure(@Nullable Boolean enabled, @Nullable Long thresholdMs,
+			@Nullable Double sampleRate) {
+		if (thresholdMs != null) {
+			this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+		}
+		if (sampleRate != null) {
+			this.sampleRate = Math.max(0.0d, Math.min(1.0d, sampleRate));
+		}
+		if (enabled != null) {
+			this.enabled = enabled;
+		}
+		return settings();
+	}
+}
@@ -1,5 +1,6 @@
 package com.nilotpal.api.userapi.config;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -11,9 +12,15 @@ import springfox.documentation.spi.DocumentationType;
 import springfox.documentation.spring.web.plugins.Docket;
 import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
+/**
+ * Springfox scans every handler method while the context starts, so the prod profile turns the
+ * documentation off (user-api.swagger.enabled=false) to shorten cold starts.
+ */
 @Configuration
 @EnableSwagger2
+@ConditionalOnProperty(name = SwaggerDocumentationConfig.SWAGGER_ENABLED, matchIfMissing = true)
 public class SwaggerDocumentationConfig {
+	public static final String SWAGGER_ENABLED = "user-api.swagger.enabled";
 
 	ApiInfo apiInfo() {
 		return new ApiInfoBuilder()
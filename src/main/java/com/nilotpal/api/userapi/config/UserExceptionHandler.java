@@ -1,7 +1,11 @@
 package com.nilotpal.api.userapi.config;
 
+import java.util.concurrent.CompletionException;
+
 import javax.servlet.http.HttpServletRequest;
 
+import org.springframework.core.task.TaskRejectedException;
+
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -11,11 +15,18 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
+import com.nilotpal.api.userapi.exceptions.IdempotencyKeyReusedException;
+import com.nilotpal.api.userapi.exceptions.InvalidCursorException;
+import com.nilotpal.api.userapi.exceptions.InvalidFieldsException;
+import com.nilotpal.api.userapi.exceptions.PreconditionFailedException;
+import com.nilotpal.api.userapi.exceptions.SearchUnavailableException;
 import com.nilotpal.api.userapi.exceptions.UserNotFoundException;
 import com.nilotpal.api.userapi.model.ApiException;
 
 @RestControllerAdvice
 public class UserExceptionHandler extends ResponseEntityExceptionHandler {
+	static final String RETRY_AFTER_SECONDS = "1";
+
 	@ExceptionHandler(UserNotFoundException.class)
 	protected ResponseEntity<ApiException> handleUserNotFoundException(HttpServletRequest request,
 			UserNotFoundException exception) {
@@ -23,8 +34,84 @@ public class UserExceptionHandler extends ResponseEntityExceptionHandler {
 		return buildResponseEntity(new ApiException(HttpStatus.NOT_FOUND, errorMessage, exception));
 	}
 
+	@ExceptionHandler(InvalidCursorException.class)
+	protected ResponseEntity<ApiException> handleInvalidCursorException(HttpServletRequest request,
+			InvalidCursorException exception) {
+		String errorMessage = StringUtils.isEmpty(exception.getMessage()) ? "Invalid Cursor" : exception.getMessage();
+		return buildResponseEntity(new ApiException(HttpStatus.BAD_REQUEST, errorMessage, exception));
+	}
+
+	@ExceptionHandler(InvalidFieldsException.class)
+	protected ResponseEntity<ApiException> handleInvalidFieldsException(HttpServletRequest request,
+			InvalidFieldsException exception) {
+		String errorMessage = StringUtils.isEmpty(exception.getMessage()) ? "Invalid Fields" : exception.getMessage();
+		return buildResponseEntity(new ApiException(HttpStatus.BAD_REQUEST, errorMessage, exception));
+	}
+
+	@ExceptionHandler(PreconditionFailedException.class)
+	protected ResponseEntity<ApiException> handlePreconditionFailedException(HttpServletRequest request,
+			PreconditionFailedException exception) {
+		String errorMessage = StringUtils.isEmpty(exception.getMessage()) ? "Precondition Failed"
+				: exception.getMessage();
+		return buildResponseEntity(new ApiException(HttpStatus.PRECONDITION_FAILED, errorMessage, exception));
+	}
+
+	@ExceptionHandler(IdempotencyKeyReusedException.class)
+	protected ResponseEntity<ApiException> handleIdempotencyKeyReusedException(HttpServletRequest request,
+			IdempotencyKeyReusedException exception) {
+		String errorMessage = StringUtils.isEmpty(exception.getMessage()) ? "Idempotency-Key Reused"
+				: exception.getMessage();
+		return buildResponseEntity(new ApiException(HttpStatus.UNPROCESSABLE_ENTITY, errorMessage, exception));
+	}
+
+	@ExceptionHandler(TaskRejectedException.class)
+	protected ResponseEntity<ApiException> handleTaskRejectedException(HttpServletRequest request,
+			TaskRejectedException exception) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+		return buildResponseEntity(new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "Server busy, retry later",
+				exception), headers);
+	}
+
+	@ExceptionHandler(SearchUnavailableException.class)
+	protected ResponseEntity<ApiException> handleSearchUnavailableException(HttpServletRequest request,
+			SearchUnavailableException exception) {
+		String errorMessage = StringUtils.isEmpty(exception.getMessage()) ? "Search Unavailable" : exception.getMessage();
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+		return buildResponseEntity(new ApiException(HttpStatus.SERVICE_UNAVAILABLE, errorMessage, exception), headers);
+	}
+
+	/**
+	 * Failures of asynchronous handlers arrive wrapped by the CompletableFuture that carried them.
+	 */
+	@ExceptionHandler(CompletionException.class)
+	protected ResponseEntity<ApiException> handleCompletionException(HttpServletRequest request,
+			CompletionException exception) {
+		Throwable cause = exception.getCause();
+		if (cause instanceof UserNotFoundException) {
+			return handleUserNotFoundException(request, (UserNotFoundException) cause);
+		}
+		if (cause instanceof InvalidCursorException) {
+			return handleInvalidCursorException(request, (InvalidCursorException) cause);
+		}
+		if (cause instanceof PreconditionFailedException) {
+			return handlePreconditionFailedException(request, (PreconditionFailedException) cause);
+		}
+		if (cause instanceof TaskRejectedException) {
+			return handleTaskRejectedException(request, (TaskRejectedException) cause);
+		}
+		if (cause instanceof SearchUnavailableException) {
+			return handleSearchUnavailableException(request, (SearchUnavailableException) cause);
+		}
+		return buildResponseEntity(new ApiException(HttpStatus.INTERNAL_SERVER_ERROR, cause == null ? exception : cause));
+	}
+
 	private ResponseEntity<ApiException> buildResponseEntity(ApiException apiException) {
-		HttpHeaders requestHeaders = new HttpHeaders();
+		return buildResponseEntity(apiException, new HttpHeaders());
+	}
+
+	private ResponseEntity<ApiException> buildResponseEntity(ApiException apiException, HttpHeaders requestHeaders) {
 		requestHeaders.setContentType(MediaType.APPLICATION_JSON_UTF8);
 		return new ResponseEntity<ApiException>(apiException, requestHeaders, apiException.getStatus());
 	}
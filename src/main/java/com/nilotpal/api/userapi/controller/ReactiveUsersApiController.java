@@ -0,0 +1,68 @@
+package com.nilotpal.api.userapi.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.nilotpal.api.userapi.config.ContentNegotiationConfig;
+import com.nilotpal.api.userapi.model.User;
+import com.nilotpal.api.userapi.service.ReactiveUserService;
+import com.nilotpal.api.userapi.service.ReactiveUserServiceImpl;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Api(value = "reactive users", description = "the reactive read-only users API")
+@RestController
+@Profile(ReactiveUserServiceImpl.REACTIVE_PROFILE)
+@RequestMapping(value = "/reactive/users")
+public class ReactiveUsersApiController {
+	@Autowired
+	private ReactiveUserService reactiveUserService;
+
+	@ApiOperation(value = "list all users", nickname = "listUsingGET2", notes = "Use after/limit for cursor pagination", response = User.class, responseContainer = "List", tags = {
+			"Reactive User", })
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "OK", response = User.class, responseContainer = "List"),
+			@ApiResponse(code = 400, message = "Invalid cursor") })
+	@GetMapping(produces = { "application/json;charset=UTF-8", ContentNegotiationConfig.APPLICATION_SMILE_VALUE,
+			ContentNegotiationConfig.APPLICATION_CBOR_VALUE })
+	public Flux<User> listUsingGET2(
+			@ApiParam(value = "page") @RequestParam(value = "page", required = false) Integer page,
+			@ApiParam(value = "size") @RequestParam(value = "size", required = false) Integer size,
+			@ApiParam(value = "opaque cursor returned by GET /users") @RequestParam(value = "after", required = false) String after,
+			@ApiParam(value = "limit") @RequestParam(value = "limit", required = false) Integer limit) {
+		if (after != null || limit != null) {
+			return reactiveUserService.getUsersAfter(after, limit);
+		}
+		return reactiveUserService.getAllUsers(page, size);
+	}
+
+	@ApiOperation(value = "stream all users", nickname = "streamUsingGET", notes = "One JSON user per line, read from the database as the client consumes them", response = User.class, responseContainer = "List", tags = {
+			"Reactive User", })
+	@ApiResponses(value = { @ApiResponse(code = 200, message = "OK", response = User.class, responseContainer = "List") })
+	@GetMapping(value = "/stream", produces = { MediaType.APPLICATION_STREAM_JSON_VALUE })
+	public Flux<User> streamUsingGET() {
+		return reactiveUserService.streamUsers();
+	}
+
+	@ApiOperation(value = "Find a user via id", nickname = "getUsingGET1", notes = "", response = User.class, tags = {
+			"Reactive User", })
+	@ApiResponses(value = { @ApiResponse(code = 200, message = "OK", response = User.class),
+			@ApiResponse(code = 404, message = "User Not Found") })
+	@GetMapping(value = "/{id}", produces = { "application/json;charset=UTF-8",
+			ContentNegotiationConfig.APPLICATION_SMILE_VALUE, ContentNegotiationConfig.APPLICATION_CBOR_VALUE })
+	public Mono<User> getUsingGET1(@ApiParam(value = "id", required = true) @PathVariable("id") String id) {
+		return reactiveUserService.getUserById(id);
+	}
+}
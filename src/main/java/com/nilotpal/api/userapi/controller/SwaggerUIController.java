@@ -1,12 +1,16 @@
 package com.nilotpal.api.userapi.controller;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.nilotpal.api.userapi.config.SwaggerDocumentationConfig;
+
 /**
  * Home redirection to swagger api documentation
  */
 @RestController
+@ConditionalOnProperty(name = SwaggerDocumentationConfig.SWAGGER_ENABLED, matchIfMissing = true)
 public class SwaggerUIController {
 	@RequestMapping(value = "/")
 	public String redirectToSwaggerUI() {
@@ -1,27 +1,61 @@
 package com.nilotpal.api.userapi.controller;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.accept.ContentNegotiationManager;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
 
-import com.nilotpal.api.userapi.exceptions.UserNotFoundException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import com.nilotpal.api.userapi.config.ContentNegotiationConfig;
+import com.nilotpal.api.userapi.config.DatabaseExecutor;
+import com.nilotpal.api.userapi.config.IdempotencyStore;
+import com.nilotpal.api.userapi.entity.UserEntity;
+import com.nilotpal.api.userapi.exceptions.IdempotencyKeyReusedException;
+import com.nilotpal.api.userapi.exceptions.InvalidFieldsException;
+import com.nilotpal.api.userapi.exceptions.PreconditionFailedException;
+import com.nilotpal.api.userapi.model.BatchItemResult;
+import com.nilotpal.api.userapi.model.BatchUpdateUserRequest;
 import com.nilotpal.api.userapi.model.CreateUserRequest;
 import com.nilotpal.api.userapi.model.UpdateUserRequest;
 import com.nilotpal.api.userapi.model.User;
+import com.nilotpal.api.userapi.model.UserField;
+import com.nilotpal.api.userapi.model.UserSlice;
+import com.nilotpal.api.userapi.model.VerifyPasswordRequest;
+import com.nilotpal.api.userapi.model.VersionTag;
+import com.nilotpal.api.userapi.service.UserBatchService;
 import com.nilotpal.api.userapi.service.UserService;
 
 import io.swagger.annotations.Api;
@@ -32,67 +66,347 @@ import io.swagger.annotations.ApiResponses;
 
 @Api(value = "users", description = "the users API")
 @RestController
-@RequestMapping(value = "/users", produces = { "application/json;charset=UTF-8" }, consumes = { "application/json" })
+@RequestMapping(value = "/users", produces = { "application/json;charset=UTF-8",
+		ContentNegotiationConfig.APPLICATION_SMILE_VALUE, ContentNegotiationConfig.APPLICATION_CBOR_VALUE }, consumes = {
+				"application/json" })
 public class UsersApiController {
+	static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+	static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+	static final String PREFER_RETURN_MINIMAL = "return=minimal";
+	private static final int EXPORT_FLUSH_INTERVAL = 500;
+	private static final List<MediaType> PRODUCIBLE_MEDIA_TYPES = Arrays.asList(MediaType.APPLICATION_JSON_UTF8,
+			ContentNegotiationConfig.APPLICATION_SMILE, ContentNegotiationConfig.APPLICATION_CBOR);
 
 	@Autowired
 	private UserService userService;
 
-	@ApiOperation(value = "list all users", nickname = "listUsingGET1", notes = "Multiple status values can be provided with comma separated strings", response = User.class, responseContainer = "List", tags = {
+	@Autowired
+	private UserBatchService userBatchService;
+
+	@Autowired
+	private DatabaseExecutor databaseExecutor;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private IdempotencyStore idempotencyStore;
+
+	@Autowired
+	private ContentNegotiationManager contentNegotiationManager;
+
+	@ApiOperation(value = "list all users", nickname = "listUsingGET1", notes = "Use after/limit for cursor pagination; the next cursor is returned in the X-Next-Cursor header", response = User.class, responseContainer = "List", tags = {
 			"User", })
 	@ApiResponses(value = {
-			@ApiResponse(code = 200, message = "OK", response = User.class, responseContainer = "List") })
+			@ApiResponse(code = 200, message = "OK", response = User.class, responseContainer = "List"),
+			@ApiResponse(code = 304, message = "Not Modified"),
+			@ApiResponse(code = 400, message = "Invalid cursor or fields"),
+			@ApiResponse(code = 503, message = "Database executor is saturated") })
 	@GetMapping
-	public ResponseEntity<List<User>> listUsingGET1(
+	public CompletableFuture<ResponseEntity<List<?>>> listUsingGET1(
 			@ApiParam(value = "page") @Valid @RequestParam(value = "page", required = false) Integer page,
-			@ApiParam(value = "size") @Valid @RequestParam(value = "size", required = false) Integer size) {
-		List<User> body = userService.getAllUsers(page, size);
-		return ResponseEntity.ok(body);
+			@ApiParam(value = "size") @Valid @RequestParam(value = "size", required = false) Integer size,
+			@ApiParam(value = "opaque cursor returned by the previous call") @RequestParam(value = "after", required = false) String after,
+			@ApiParam(value = "limit") @RequestParam(value = "limit", required = false) Integer limit,
+			@ApiParam(value = "comma separated subset of id,email,name,username; only these columns are read") @RequestParam(value = "fields", required = false) String fields,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+			HttpServletRequest request) throws InvalidFieldsException, HttpMediaTypeNotAcceptableException {
+		Set<UserField> selectedFields = UserField.parse(fields);
+		String representation = representation(request, selectedFields);
+		if (after != null || limit != null) {
+			return databaseExecutor.supply(() -> {
+				// Checked against the id/version projection, so a 304 loads and serializes no users
+				if (ifNoneMatch != null) {
+					String tag = VersionTag.forRepresentation(userService.getUsersAfterVersionTag(after, limit),
+							representation);
+					if (VersionTag.matchesIfNoneMatch(ifNoneMatch, tag)) {
+						return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(tag).varyBy(HttpHeaders.ACCEPT)
+								.<List<?>>build();
+					}
+				}
+				if (selectedFields == null) {
+					// Full rows are written straight from the entities, without mapping them to User models
+					UserSlice<UserEntity> slice = userService.getUserEntitiesAfter(after, limit);
+					return slice(slice, VersionTag.forRepresentation(
+							VersionTag.ofEntities(slice.getUsers(), slice.hasNext()), representation));
+				}
+				UserSlice<User> slice = userService.getUsersAfter(after, limit, selectedFields);
+				return slice(slice, VersionTag.forRepresentation(VersionTag.of(slice.getUsers(), slice.hasNext()),
+						representation));
+			});
+		}
+
+		return databaseExecutor.supply(() -> {
+			if (ifNoneMatch != null) {
+				String tag = VersionTag.forRepresentation(userService.getUsersVersionTag(page, size), representation);
+				if (VersionTag.matchesIfNoneMatch(ifNoneMatch, tag)) {
+					return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(tag).varyBy(HttpHeaders.ACCEPT)
+							.<List<?>>build();
+				}
+			}
+			if (selectedFields == null) {
+				List<UserEntity> body = userService.getAllUserEntities(page, size);
+				return ResponseEntity.ok().eTag(VersionTag.forRepresentation(VersionTag.ofEntities(body, false),
+						representation)).varyBy(HttpHeaders.ACCEPT).<List<?>>body(body);
+			}
+			List<User> body = userService.getAllUsers(page, size, selectedFields);
+			return ResponseEntity.ok()
+					.eTag(VersionTag.forRepresentation(VersionTag.of(body, false), representation))
+					.varyBy(HttpHeaders.ACCEPT).<List<?>>body(body);
+		});
 	}
 
-	@ApiOperation(value = "Register a new user", nickname = "createUsingPUT", notes = "", response = User.class, tags = {
+	private static ResponseEntity<List<?>> slice(UserSlice<?> slice, String tag) {
+		ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(tag).varyBy(HttpHeaders.ACCEPT);
+		if (slice.hasNext()) {
+			response.header(NEXT_CURSOR_HEADER, slice.getNextCursor());
+		}
+		return response.<List<?>>body(slice.getUsers());
+	}
+
+	/**
+	 * Names the representation the response will be written in, for its ETag: the binary encoding
+	 * the request negotiates, as the message converters will pick it, and the selected fields.
+	 * Empty for JSON with every field.
+	 */
+	private String representation(HttpServletRequest request, Set<UserField> selectedFields)
+			throws HttpMediaTypeNotAcceptableException {
+		List<MediaType> compatible = new ArrayList<>();
+		for (MediaType requested : contentNegotiationManager.resolveMediaTypes(new ServletWebRequest(request))) {
+			for (MediaType producible : PRODUCIBLE_MEDIA_TYPES) {
+				if (requested.isCompatibleWith(producible)) {
+					compatible.add(producible.copyQualityValue(requested));
+				}
+			}
+		}
+		MediaType.sortBySpecificityAndQuality(compatible);
+		StringJoiner representation = new StringJoiner("-");
+		if (!compatible.isEmpty() && !compatible.get(0).isCompatibleWith(MediaType.APPLICATION_JSON)) {
+			representation.add(compatible.get(0).getSubtype().replace("x-jackson-", ""));
+		}
+		if (selectedFields != null) {
+			StringJoiner fields = new StringJoiner(".").add(UserField.ID);
+			selectedFields.forEach(field -> fields.add(field.getAttribute()));
+			representation.add(fields.toString());
+		}
+		return representation.toString();
+	}
+
+	@ApiOperation(value = "export all users", nickname = "exportUsingGET", notes = "Streams every user as newline delimited JSON without buffering the table in memory", response = User.class, responseContainer = "List", tags = {
+			"User", })
+	@ApiResponses(value = { @ApiResponse(code = 200, message = "OK", response = User.class, responseContainer = "List") })
+	@GetMapping(value = "/export", produces = { APPLICATION_NDJSON_VALUE })
+	public ResponseEntity<StreamingResponseBody> exportUsingGET() {
+		ObjectWriter userWriter = objectMapper.writerFor(UserEntity.class);
+		StreamingResponseBody body = outputStream -> {
+			try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+				generator.setRootValueSeparator(null);
+				int[] written = { 0 };
+				userService.exportUsers(userEntity -> {
+					try {
+						userWriter.writeValue(generator, userEntity);
+						generator.writeRaw('\n');
+						if (++written[0] % EXPORT_FLUSH_INTERVAL == 0) {
+							generator.flush();
+						}
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+			}
+		};
+		return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE)).body(body);
+	}
+
+	@ApiOperation(value = "Register a new user", nickname = "createUsingPUT", notes = "Retries carrying the same Idempotency-Key are answered with the original response", response = User.class, tags = {
 			"User" })
-	@ApiResponses(value = { @ApiResponse(code = 200, message = "OK", response = User.class) })
+	@ApiResponses(value = { @ApiResponse(code = 200, message = "OK", response = User.class),
+			@ApiResponse(code = 422, message = "Idempotency-Key was used for a different request"),
+			@ApiResponse(code = 503, message = "Password hashing is saturated") })
 	@PutMapping
-	public ResponseEntity<User> createUsingPUT(
-			@ApiParam(value = "request", required = true) @Valid @RequestBody CreateUserRequest createUserRequest) {
-		User createdUser = userService.createUser(createUserRequest);
-		URI location = ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}")
-				.buildAndExpand(createdUser.getId()).toUri();
-		return ResponseEntity.created(location).body(createdUser);
+	public CompletableFuture<ResponseEntity<User>> createUsingPUT(
+			@ApiParam(value = "key identifying retries of this request") @RequestHeader(value = IdempotencyStore.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+			@ApiParam(value = "request", required = true) @Valid @RequestBody CreateUserRequest createUserRequest,
+			HttpServletRequest request) throws IdempotencyKeyReusedException {
+		// Built on the request thread, the response is completed on the password hashing pool
+		UriComponentsBuilder locationBuilder = ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}");
+		return idempotencyStore.execute(request, idempotencyKey, "PUT /users", createUserRequest,
+				() -> userService.createUser(createUserRequest).thenApply(createdUser -> {
+					URI location = locationBuilder.buildAndExpand(createdUser.getId()).toUri();
+					return ResponseEntity.created(location).body(createdUser);
+				}));
 	}
 
-	@ApiOperation(value = "Delete a user", nickname = "deleteUsingDELETE", notes = "", response = User.class, tags = {
+	@ApiOperation(value = "Delete a user", nickname = "deleteUsingDELETE", notes = "Send 'Prefer: return=minimal' to skip reading the deleted user back", response = User.class, tags = {
 			"User", })
-	@ApiResponses(value = { @ApiResponse(code = 200, message = "OK", response = User.class) })
+	@ApiResponses(value = { @ApiResponse(code = 200, message = "OK", response = User.class),
+			@ApiResponse(code = 204, message = "Deleted"),
+			@ApiResponse(code = 503, message = "Database executor is saturated") })
 	@DeleteMapping("/{id}")
-	public ResponseEntity<User> deleteUsingDELETE(
-			@ApiParam(value = "id", required = true) @PathVariable("id") String id) throws UserNotFoundException {
+	public CompletableFuture<ResponseEntity<User>> deleteUsingDELETE(
+			@ApiParam(value = "id", required = true) @PathVariable("id") String id,
+			@ApiParam(value = "return=minimal for an empty response") @RequestHeader(value = "Prefer", required = false) String prefer) {
 		// TODO: Handle id type check here..
-		User user = userService.deleteUser(id);
-		return ResponseEntity.ok(user);
+		if (PREFER_RETURN_MINIMAL.equalsIgnoreCase(prefer)) {
+			return databaseExecutor.supply(() -> {
+				userService.deleteUserById(id);
+				return ResponseEntity.noContent().<User>build();
+			});
+		}
+
+		return databaseExecutor.supply(() -> ResponseEntity.ok(userService.deleteUser(id)));
 	}
 
 	@ApiOperation(value = "Find a user via id", nickname = "getUsingGET", notes = "", response = User.class, tags = {
 			"User", })
-	@ApiResponses(value = { @ApiResponse(code = 200, message = "OK", response = User.class) })
+	@ApiResponses(value = { @ApiResponse(code = 200, message = "OK", response = User.class),
+			@ApiResponse(code = 304, message = "Not Modified"),
+			@ApiResponse(code = 503, message = "Database executor is saturated") })
 	@GetMapping("/{id}")
-	public ResponseEntity<User> getUsingGET(@ApiParam(value = "id", required = true) @PathVariable("id") String id)
-			throws UserNotFoundException {
+	public CompletableFuture<ResponseEntity<User>> getUsingGET(
+			@ApiParam(value = "id", required = true) @PathVariable("id") String id,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+			HttpServletRequest request) throws HttpMediaTypeNotAcceptableException {
 		// TODO: Handle id type check here..
-		User user = userService.getUserById(id);
-		return ResponseEntity.ok(user);
+		String representation = representation(request, null);
+		return databaseExecutor.supply(() -> {
+			// The version comes from the cache or a single-column query, the user is only read on a miss
+			// No version while a buffered update is waiting to be written, so no tag either
+			if (ifNoneMatch != null) {
+				Long version = userService.getUserVersion(id);
+				String tag = version == null ? null : VersionTag.forRepresentation(VersionTag.of(version), representation);
+				if (tag != null && VersionTag.matchesIfNoneMatch(ifNoneMatch, tag)) {
+					return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(tag).varyBy(HttpHeaders.ACCEPT)
+							.<User>build();
+				}
+			}
+			User user = userService.getUserById(id);
+			ResponseEntity.BodyBuilder response = ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT);
+			if (user.getVersion() != null) {
+				response.eTag(VersionTag.forRepresentation(VersionTag.of(user.getVersion()), representation));
+			}
+			return response.body(user);
+		});
+	}
+
+	@ApiOperation(value = "Search users", nickname = "searchUsingGET", notes = "Type-ahead search: users with a word of their name, username or email starting with each word of q, best matches first", response = User.class, responseContainer = "List", tags = {
+			"User", })
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "OK", response = User.class, responseContainer = "List"),
+			@ApiResponse(code = 503, message = "Database executor is saturated or the search index is still being built") })
+	@GetMapping("/search")
+	public CompletableFuture<ResponseEntity<List<User>>> searchUsingGET(
+			@ApiParam(value = "prefixes to search for", required = true) @RequestParam("q") String q,
+			@ApiParam(value = "maximum number of users, 10 by default and at most 100") @RequestParam(value = "limit", required = false) Integer limit) {
+		return databaseExecutor.supply(() -> ResponseEntity.ok(userService.searchUsers(q, limit)));
 	}
 
-	@ApiOperation(value = "Update a user", nickname = "updateUsingPOST1", notes = "", response = User.class, tags = {
+	@ApiOperation(value = "Find many users via id", nickname = "lookupUsingPOST", notes = "One result per requested id, in request order; ids without a user are reported as NOT_FOUND", response = BatchItemResult.class, responseContainer = "List", tags = {
 			"User", })
-	@ApiResponses(value = { @ApiResponse(code = 200, message = "OK", response = User.class) })
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "OK", response = BatchItemResult.class, responseContainer = "List"),
+			@ApiResponse(code = 503, message = "Database executor is saturated") })
+	@PostMapping("/lookup")
+	public CompletableFuture<ResponseEntity<List<BatchItemResult>>> lookupUsingPOST(
+			@ApiParam(value = "ids", required = true) @RequestBody List<String> ids) {
+		return databaseExecutor.supply(() -> ResponseEntity.ok(userBatchService.getUsers(ids)));
+	}
+
+	@ApiOperation(value = "Find a user via username", nickname = "getByUsernameUsingGET", notes = "", response = User.class, tags = {
+			"User", })
+	@ApiResponses(value = { @ApiResponse(code = 200, message = "OK", response = User.class),
+			@ApiResponse(code = 503, message = "Database executor is saturated") })
+	@GetMapping("/by-username/{username:.+}")
+	public CompletableFuture<ResponseEntity<User>> getByUsernameUsingGET(
+			@ApiParam(value = "username", required = true) @PathVariable("username") String username) {
+		return databaseExecutor.supply(() -> ResponseEntity.ok(userService.getUserByUsername(username)));
+	}
+
+	@ApiOperation(value = "Find a user via email", nickname = "getByEmailUsingGET", notes = "", response = User.class, tags = {
+			"User", })
+	@ApiResponses(value = { @ApiResponse(code = 200, message = "OK", response = User.class),
+			@ApiResponse(code = 503, message = "Database executor is saturated") })
+	@GetMapping("/by-email/{email:.+}")
+	public CompletableFuture<ResponseEntity<User>> getByEmailUsingGET(
+			@ApiParam(value = "email", required = true) @PathVariable("email") String email) {
+		return databaseExecutor.supply(() -> ResponseEntity.ok(userService.getUserByEmail(email)));
+	}
+
+	@ApiOperation(value = "Update a user", nickname = "updateUsingPOST1", notes = "Retries carrying the same Idempotency-Key are answered with the original response", response = User.class, tags = {
+			"User", })
+	@ApiResponses(value = { @ApiResponse(code = 200, message = "OK", response = User.class),
+			@ApiResponse(code = 412, message = "If-Match does not match the current version"),
+			@ApiResponse(code = 422, message = "Idempotency-Key was used for a different request"),
+			@ApiResponse(code = 503, message = "Password hashing is saturated") })
 	@PostMapping("/{id}")
-	public ResponseEntity<User> updateUsingPOST1(@ApiParam(value = "id", required = true) @PathVariable("id") String id,
-			@ApiParam(value = "request", required = true) @Valid @RequestBody UpdateUserRequest updateUserRequest)
-			throws UserNotFoundException {
+	public CompletableFuture<ResponseEntity<User>> updateUsingPOST1(
+			@ApiParam(value = "id", required = true) @PathVariable("id") String id,
+			@ApiParam(value = "ETag of the version being replaced") @RequestHeader(value = "If-Match", required = false) String ifMatch,
+			@ApiParam(value = "key identifying retries of this request") @RequestHeader(value = IdempotencyStore.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+			@ApiParam(value = "request", required = true) @Valid @RequestBody UpdateUserRequest updateUserRequest,
+			HttpServletRequest request)
+			throws PreconditionFailedException, IdempotencyKeyReusedException, HttpMediaTypeNotAcceptableException {
 		// TODO: Handle id type check here..
-		User updatedUser = userService.updateUser(id, updateUserRequest);
-		return ResponseEntity.ok(updatedUser);
+		Long expectedVersion = VersionTag.parseIfMatch(ifMatch);
+		String representation = representation(request, null);
+		String operation = "POST /users/" + id + (ifMatch == null ? "" : " If-Match: " + ifMatch);
+		return idempotencyStore.execute(request, idempotencyKey, operation, updateUserRequest,
+				() -> userService.updateUser(id, updateUserRequest, expectedVersion).thenApply(updatedUser -> {
+					ResponseEntity.BodyBuilder response = ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT);
+					if (updatedUser.getVersion() != null) {
+						response.eTag(VersionTag.forRepresentation(VersionTag.of(updatedUser.getVersion()),
+								representation));
+					}
+					return response.body(updatedUser);
+				}));
+	}
+
+	@ApiOperation(value = "Verify a user's password", nickname = "verifyPasswordUsingPOST", notes = "Outdated password hashes are upgraded after a successful check", tags = {
+			"User", })
+	@ApiResponses(value = { @ApiResponse(code = 204, message = "Password matches"),
+			@ApiResponse(code = 401, message = "Password does not match"),
+			@ApiResponse(code = 503, message = "Database executor or password hashing is saturated") })
+	@PostMapping("/{id}/password/verify")
+	public CompletableFuture<ResponseEntity<Void>> verifyPasswordUsingPOST(
+			@ApiParam(value = "id", required = true) @PathVariable("id") String id,
+			@ApiParam(value = "request", required = true) @Valid @RequestBody VerifyPasswordRequest verifyPasswordRequest) {
+		// The user is read on the database executor, the hash is then checked on the hashing pool
+		return databaseExecutor.supply(() -> userService.verifyPassword(id, verifyPasswordRequest.getPassword()))
+				.thenCompose(matches -> matches)
+				.thenApply(matched -> ResponseEntity.status(matched ? HttpStatus.NO_CONTENT : HttpStatus.UNAUTHORIZED)
+						.<Void>build());
+	}
+
+	@ApiOperation(value = "Register many users", nickname = "createBatchUsingPUT", notes = "Items are committed in chunks; each item reports its own status", response = BatchItemResult.class, responseContainer = "List", tags = {
+			"User" })
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "OK", response = BatchItemResult.class, responseContainer = "List"),
+			@ApiResponse(code = 503, message = "Database executor is saturated") })
+	@PutMapping("/batch")
+	public CompletableFuture<ResponseEntity<List<BatchItemResult>>> createBatchUsingPUT(
+			@ApiParam(value = "requests", required = true) @Valid @RequestBody List<CreateUserRequest> createUserRequests) {
+		return databaseExecutor.supply(() -> ResponseEntity.ok(userBatchService.createUsers(createUserRequests)));
+	}
+
+	@ApiOperation(value = "Update many users", nickname = "updateBatchUsingPOST", notes = "Items are committed in chunks; each item reports its own status", response = BatchItemResult.class, responseContainer = "List", tags = {
+			"User" })
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "OK", response = BatchItemResult.class, responseContainer = "List"),
+			@ApiResponse(code = 503, message = "Database executor is saturated") })
+	@PostMapping("/batch")
+	public CompletableFuture<ResponseEntity<List<BatchItemResult>>> updateBatchUsingPOST(
+			@ApiParam(value = "requests", required = true) @Valid @RequestBody List<BatchUpdateUserRequest> updateUserRequests) {
+		return databaseExecutor.supply(() -> ResponseEntity.ok(userBatchService.updateUsers(updateUserRequests)));
+	}
+
+	@ApiOperation(value = "Delete many users", nickname = "deleteBatchUsingPOST", notes = "Items are committed in chunks; each item reports its own status", response = BatchItemResult.class, responseContainer = "List", tags = {
+			"User" })
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "OK", response = BatchItemResult.class, responseContainer = "List"),
+			@ApiResponse(code = 503, message = "Database executor is saturated") })
+	@PostMapping("/batch/delete")
+	public CompletableFuture<ResponseEntity<List<BatchItemResult>>> deleteBatchUsingPOST(
+			@ApiParam(value = "ids", required = true) @RequestBody List<String> ids) {
+		return databaseExecutor.supply(() -> ResponseEntity.ok(userBatchService.deleteUsers(ids)));
 	}
 }
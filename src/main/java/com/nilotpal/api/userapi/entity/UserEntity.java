@@ -4,24 +4,47 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.validation.Valid;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
 import com.nilotpal.api.userapi.model.CreateUserRequest;
 import com.nilotpal.api.userapi.model.UpdateUserRequest;
+import com.nilotpal.api.userapi.model.UserEntitySerializer;
 
+/**
+ * Rows are serialized by UserEntitySerializer, so list and export responses can be written straight
+ * from the entities and the password never reaches a response.
+ */
 @Entity
-@Table(name = "user")
+@Table(name = "user", indexes = { @Index(name = "idx_user_username", columnList = "username"),
+		@Index(name = "idx_user_email", columnList = "email") })
+@JsonSerialize(using = UserEntitySerializer.class)
 public class UserEntity {
 
+	/*
+	 * Pooled sequence (backed by a user_seq table on MySQL) hands out ids in blocks of 50, so
+	 * inserts no longer pay a round-trip per id and Hibernate can group them into JDBC batches.
+	 */
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_id_generator")
+	@SequenceGenerator(name = "user_id_generator", sequenceName = "user_seq", allocationSize = 50)
 	private Long id;
 	private String email;
 	private String name;
 	private String password;
 	private String username;
 
+	/*
+	 * Optimistic lock column, bumped on every write and surfaced to clients as the ETag.
+	 */
+	@Version
+	private Long version;
+
 	public UserEntity() {
 	}
 
@@ -33,17 +56,17 @@ public class UserEntity {
 		this.username = username;
 	}
 
-	public UserEntity(@Valid CreateUserRequest createUserRequest) {
+	public UserEntity(@Valid CreateUserRequest createUserRequest, final String passwordHash) {
 		this.email = createUserRequest.getEmail();
 		this.name = createUserRequest.getName();
-		this.password = createUserRequest.getPassword();
+		this.password = passwordHash;
 		this.username = createUserRequest.getUsername();
 	}
 
-	public UserEntity merge(@Valid UpdateUserRequest updateUserRequest) {
+	public UserEntity merge(@Valid UpdateUserRequest updateUserRequest, final String passwordHash) {
 		this.email = updateUserRequest.getEmail();
 		this.name = updateUserRequest.getName();
-		this.password = updateUserRequest.getPassword();
+		this.password = passwordHash;
 		this.username = updateUserRequest.getUsername();
 		return this;
 	}
@@ -68,6 +91,10 @@ public class UserEntity {
 		return username;
 	}
 
+	public Long getVersion() {
+		return version;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -0,0 +1,13 @@
+package com.nilotpal.api.userapi.exceptions;
+
+public class IdempotencyKeyReusedException extends Exception {
+	private static final long serialVersionUID = 1L;
+
+	public IdempotencyKeyReusedException() {
+		super();
+	}
+
+	public IdempotencyKeyReusedException(String message) {
+		super(message);
+	}
+}
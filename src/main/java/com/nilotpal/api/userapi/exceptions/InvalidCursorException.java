@@ -0,0 +1,13 @@
+package com.nilotpal.api.userapi.exceptions;
+
+public class InvalidCursorException extends Exception {
+	private static final long serialVersionUID = 1L;
+
+	public InvalidCursorException() {
+		super();
+	}
+
+	public InvalidCursorException(String message) {
+		super(message);
+	}
+}
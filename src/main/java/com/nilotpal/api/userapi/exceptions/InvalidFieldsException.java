@@ -0,0 +1,13 @@
+package com.nilotpal.api.userapi.exceptions;
+
+public class InvalidFieldsException extends Exception {
+	private static final long serialVersionUID = 1L;
+
+	public InvalidFieldsException() {
+		super();
+	}
+
+	public InvalidFieldsException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,13 @@
+package com.nilotpal.api.userapi.exceptions;
+
+public class SearchUnavailableException extends Exception {
+	private static final long serialVersionUID = 1L;
+
+	public SearchUnavailableException() {
+		super();
+	}
+
+	public SearchUnavailableException(String message) {
+		super(message);
+	}
+}
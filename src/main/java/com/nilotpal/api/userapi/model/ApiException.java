@@ -22,6 +22,12 @@ public class ApiException {
 		this.status = status;
 	}
 
+	public ApiException(HttpStatus status, String message) {
+		this();
+		this.status = status;
+		this.message = message;
+	}
+
 	public ApiException(HttpStatus status, Throwable ex) {
 		this();
 		this.status = status;
@@ -0,0 +1,65 @@
+package com.nilotpal.api.userapi.model;
+
+import org.springframework.http.HttpStatus;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * Outcome of one item of a batch request, reported at the same index as the request item.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult {
+	private int index;
+	private String id;
+	private HttpStatus status;
+	private User user;
+	private String message;
+
+	private BatchItemResult(int index, String id, HttpStatus status, User user, String message) {
+		this.index = index;
+		this.id = id;
+		this.status = status;
+		this.user = user;
+		this.message = message;
+	}
+
+	public static BatchItemResult success(int index, HttpStatus status, User user) {
+		return new BatchItemResult(index, user.getId(), status, user, null);
+	}
+
+	public static BatchItemResult failure(int index, String id, HttpStatus status, String message) {
+		return new BatchItemResult(index, id, status, null, message);
+	}
+
+	@ApiModelProperty(value = "Position of the item in the request")
+	public int getIndex() {
+		return index;
+	}
+
+	@ApiModelProperty(value = "Database ID of the user, when known")
+	public String getId() {
+		return id;
+	}
+
+	@ApiModelProperty(value = "Outcome of the item")
+	public HttpStatus getStatus() {
+		return status;
+	}
+
+	@ApiModelProperty(value = "User after the operation (before it, for deletes)")
+	public User getUser() {
+		return user;
+	}
+
+	@ApiModelProperty(value = "Reason the item failed")
+	public String getMessage() {
+		return message;
+	}
+
+	@Override
+	public String toString() {
+		return "BatchItemResult [index=" + index + ", id=" + id + ", status=" + status + "]";
+	}
+}
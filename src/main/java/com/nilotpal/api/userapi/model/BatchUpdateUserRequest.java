@@ -0,0 +1,26 @@
+package com.nilotpal.api.userapi.model;
+
+import org.springframework.validation.annotation.Validated;
+
+import io.swagger.annotations.ApiModelProperty;
+
+@Validated
+public class BatchUpdateUserRequest extends UpdateUserRequest {
+	private String id;
+
+	public BatchUpdateUserRequest(String id, String email, String name, String password, String username) {
+		super(email, name, password, username);
+		this.id = id;
+	}
+
+	@ApiModelProperty(value = "Database ID of the existing user")
+	public String getId() {
+		return id;
+	}
+
+	@Override
+	public String toString() {
+		return "User [id=" + id + ", email=" + getEmail() + ", name=" + getName() + ", username=" + getUsername()
+				+ "]";
+	}
+}
@@ -49,7 +49,7 @@ public class CreateUserRequest   {
 		if (o == null || getClass() != o.getClass()) {
 			return false;
 		}
-		User user = (User) o;
+		CreateUserRequest user = (CreateUserRequest) o;
 		return Objects.equals(this.email, user.getEmail()) 
 			&& Objects.equals(this.name, user.getName()) 
 			&& Objects.equals(this.password, user.getPassword())
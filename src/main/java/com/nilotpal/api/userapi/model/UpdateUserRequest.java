@@ -49,7 +49,7 @@ public class UpdateUserRequest {
 		if (o == null || getClass() != o.getClass()) {
 			return false;
 		}
-		User user = (User) o;
+		UpdateUserRequest user = (UpdateUserRequest) o;
 		return Objects.equals(this.email, user.getEmail()) && Objects.equals(this.name, user.getName())
 				&& Objects.equals(this.password, user.getPassword())
 				&& Objects.equals(this.username, user.getUsername());
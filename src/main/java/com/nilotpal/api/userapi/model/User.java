@@ -4,23 +4,38 @@ import java.util.Objects;
 
 import org.springframework.validation.annotation.Validated;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import io.swagger.annotations.ApiModelProperty;
 
+/**
+ * Null attributes are omitted, so a sparse fieldset (fields=) only carries what was asked for.
+ */
 @Validated
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class User {
 	private String id;
 	private String email;
 	private String name;
-	private String password;
 	private String username;
+	private Long version;
+
+	@JsonCreator
+	public User(@JsonProperty("id") String id, @JsonProperty("email") String email, @JsonProperty("name") String name,
+			@JsonProperty("username") String username) {
+		this(id, email, name, username, null);
+	}
 
-	public User(String id, String email, String name, String password, String username) {
+	public User(String id, String email, String name, String username, Long version) {
 		super();
 		this.id = id;
 		this.email = email;
 		this.name = name;
-		this.password = password;
 		this.username = username;
+		this.version = version;
 	}
 
 	@ApiModelProperty(value = "Email id of the user")
@@ -38,16 +53,20 @@ public class User {
 		return name;
 	}
 
-	@ApiModelProperty(value = "Login password of the user")
-	public String getPassword() {
-		return password;
-	}
-
 	@ApiModelProperty(value = "Login username of the user")
 	public String getUsername() {
 		return username;
 	}
 
+	/**
+	 * Sent as the ETag header rather than in the body.
+	 */
+	@JsonIgnore
+	@ApiModelProperty(hidden = true)
+	public Long getVersion() {
+		return version;
+	}
+
 	@Override
 	public boolean equals(java.lang.Object o) {
 		if (this == o) {
@@ -60,13 +79,12 @@ public class User {
 		return Objects.equals(this.id, user.getId()) 
 				&& Objects.equals(this.email, user.getEmail()) 
 				&& Objects.equals(this.name, user.getName()) 
-				&& Objects.equals(this.password, user.getPassword())
 				&& Objects.equals(this.username, user.getUsername());
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(email, id, name, password, username);
+		return Objects.hash(email, id, name, username);
 	}
 
 	@Override
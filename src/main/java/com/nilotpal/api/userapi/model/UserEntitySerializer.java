@@ -0,0 +1,66 @@
+package com.nilotpal.api.userapi.model;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import com.nilotpal.api.userapi.entity.UserEntity;
+
+/**
+ * Writes a UserEntity row as the same document as {@link User} (id as a string, null attributes
+ * omitted, no password or version) without mapping it to a User first. Field names are pre-encoded
+ * and the id's digits go through a per-thread buffer, so a row costs no allocation of its own.
+ */
+public class UserEntitySerializer extends StdSerializer<UserEntity> {
+	private static final long serialVersionUID = 1L;
+	private static final SerializableString ID = new SerializedString("id");
+	private static final SerializableString EMAIL = new SerializedString("email");
+	private static final SerializableString NAME = new SerializedString("name");
+	private static final SerializableString USERNAME = new SerializedString("username");
+	// Long.MIN_VALUE is the longest id, 20 characters
+	private static final ThreadLocal<char[]> ID_DIGITS = ThreadLocal.withInitial(() -> new char[20]);
+
+	public UserEntitySerializer() {
+		super(UserEntity.class);
+	}
+
+	@Override
+	public void serialize(UserEntity userEntity, JsonGenerator generator, SerializerProvider provider)
+			throws IOException {
+		generator.writeStartObject();
+		if (userEntity.getId() != null) {
+			generator.writeFieldName(ID);
+			writeId(userEntity.getId(), generator);
+		}
+		writeField(generator, EMAIL, userEntity.getEmail());
+		writeField(generator, NAME, userEntity.getName());
+		writeField(generator, USERNAME, userEntity.getUsername());
+		generator.writeEndObject();
+	}
+
+	private static void writeField(JsonGenerator generator, SerializableString name, String value)
+			throws IOException {
+		if (value != null) {
+			generator.writeFieldName(name);
+			generator.writeString(value);
+		}
+	}
+
+	static void writeId(long id, JsonGenerator generator) throws IOException {
+		char[] digits = ID_DIGITS.get();
+		int start = digits.length;
+		long remaining = id;
+		do {
+			digits[--start] = (char) ('0' + Math.abs(remaining % 10));
+			remaining /= 10;
+		} while (remaining != 0);
+		if (id < 0) {
+			digits[--start] = '-';
+		}
+		generator.writeString(digits, start, digits.length - start);
+	}
+}
@@ -0,0 +1,54 @@
+package com.nilotpal.api.userapi.model;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import com.nilotpal.api.userapi.exceptions.InvalidFieldsException;
+
+/**
+ * User attributes that can be requested with fields=. The id is always returned, so it is accepted
+ * in the list but has no constant of its own.
+ */
+public enum UserField {
+	EMAIL("email"), NAME("name"), USERNAME("username");
+
+	public static final String ID = "id";
+
+	private final String attribute;
+
+	UserField(final String attribute) {
+		this.attribute = attribute;
+	}
+
+	public String getAttribute() {
+		return attribute;
+	}
+
+	/**
+	 * Parses a comma separated fields= value, null when every field was asked for.
+	 */
+	public static Set<UserField> parse(final String fields) throws InvalidFieldsException {
+		if (fields == null || fields.trim().isEmpty()) {
+			return null;
+		}
+		Set<UserField> selected = EnumSet.noneOf(UserField.class);
+		for (String field : fields.split(",")) {
+			String name = field.trim();
+			if (ID.equals(name)) {
+				continue;
+			}
+			selected.add(of(name, fields));
+		}
+		return Collections.unmodifiableSet(selected);
+	}
+
+	private static UserField of(final String name, final String fields) throws InvalidFieldsException {
+		for (UserField field : values()) {
+			if (field.attribute.equals(name)) {
+				return field;
+			}
+		}
+		throw new InvalidFieldsException("Invalid fields: " + fields);
+	}
+}
@@ -0,0 +1,30 @@
+package com.nilotpal.api.userapi.model;
+
+import java.util.List;
+
+/**
+ * One keyset page of users (User models or UserEntity rows) plus the opaque cursor pointing past its
+ * last row. The cursor is null once the end of the table has been reached.
+ */
+public class UserSlice<T> {
+	private List<T> users;
+	private String nextCursor;
+
+	public UserSlice(List<T> users, String nextCursor) {
+		super();
+		this.users = users;
+		this.nextCursor = nextCursor;
+	}
+
+	public List<T> getUsers() {
+		return users;
+	}
+
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public boolean hasNext() {
+		return nextCursor != null;
+	}
+}
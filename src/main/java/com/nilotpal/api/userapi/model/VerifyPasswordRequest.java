@@ -0,0 +1,29 @@
+package com.nilotpal.api.userapi.model;
+
+import org.springframework.validation.annotation.Validated;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.swagger.annotations.ApiModelProperty;
+
+@Validated
+public class VerifyPasswordRequest {
+	private String password;
+
+	@JsonCreator
+	public VerifyPasswordRequest(@JsonProperty("password") String password) {
+		super();
+		this.password = password;
+	}
+
+	@ApiModelProperty(value = "Login password to check")
+	public String getPassword() {
+		return password;
+	}
+
+	@Override
+	public String toString() {
+		return "VerifyPasswordRequest [password=***]";
+	}
+}
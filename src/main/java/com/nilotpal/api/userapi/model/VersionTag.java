@@ -0,0 +1,95 @@
+package com.nilotpal.api.userapi.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.util.DigestUtils;
+
+import com.nilotpal.api.userapi.entity.UserEntity;
+import com.nilotpal.api.userapi.exceptions.PreconditionFailedException;
+
+/**
+ * Strong ETags for user resources. A single user is tagged with its version; a list with a digest
+ * of the ids and versions it contains, so the tag can be computed either from the loaded users or
+ * from an id/version projection without materializing them. Representations other than JSON with
+ * every field add a suffix naming their encoding and fields, as their bytes differ.
+ */
+public final class VersionTag {
+	private static final String ANY = "*";
+
+	private VersionTag() {
+	}
+
+	public static String of(final Long version) {
+		return "\"" + version + "\"";
+	}
+
+	public static String of(final List<User> users, final boolean hasNext) {
+		return of(users, User::getId, User::getVersion, hasNext);
+	}
+
+	public static String ofEntities(final List<UserEntity> userEntities, final boolean hasNext) {
+		return of(userEntities, UserEntity::getId, UserEntity::getVersion, hasNext);
+	}
+
+	public static <T> String of(final List<T> items, final Function<T, Object> id, final Function<T, Long> version,
+			final boolean hasNext) {
+		StringBuilder versions = new StringBuilder(items.size() * 16);
+		for (T item : items) {
+			versions.append(id.apply(item)).append(':').append(version.apply(item)).append(';');
+		}
+		versions.append(hasNext);
+		return "\"" + DigestUtils.md5DigestAsHex(versions.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+	}
+
+	/**
+	 * The tag of one representation of the tagged users, e.g. "3-cbor" or "<digest>-id.email". JSON
+	 * with every field keeps the plain tag, so it is unchanged for most clients.
+	 */
+	public static String forRepresentation(final String tag, final String representation) {
+		if (tag == null || representation.isEmpty()) {
+			return tag;
+		}
+		return tag.substring(0, tag.length() - 1) + "-" + representation + "\"";
+	}
+
+	/**
+	 * Whether an If-None-Match header lists the tag (weak comparison, as for GET).
+	 */
+	public static boolean matchesIfNoneMatch(final String ifNoneMatch, final String tag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (String candidate : ifNoneMatch.split(",")) {
+			String clientTag = candidate.trim();
+			if (clientTag.startsWith("W/")) {
+				clientTag = clientTag.substring(2);
+			}
+			if (ANY.equals(clientTag) || clientTag.equals(tag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Version required by an If-Match header, null when any version will do. The tag of any
+	 * representation of the user names the same version.
+	 */
+	public static Long parseIfMatch(final String ifMatch) throws PreconditionFailedException {
+		if (ifMatch == null || ANY.equals(ifMatch.trim())) {
+			return null;
+		}
+		String tag = ifMatch.trim();
+		if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+			int representation = tag.indexOf('-');
+			try {
+				return Long.valueOf(tag.substring(1, representation < 0 ? tag.length() - 1 : representation));
+			} catch (NumberFormatException e) {
+				// Falls through, no user version can match it
+			}
+		}
+		throw new PreconditionFailedException("If-Match does not match the current version: " + ifMatch);
+	}
+}
@@ -1,11 +1,113 @@
 package com.nilotpal.api.userapi.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.nilotpal.api.userapi.entity.UserEntity;
 
 @Repository
-public interface UserRepository extends JpaRepository<UserEntity, Long> {
+public interface UserRepository extends JpaRepository<UserEntity, Long>, UserRepositoryCustom {
+	int STREAM_FETCH_SIZE = 1000;
+
+	/**
+	 * Keyset (seek) page: rows strictly after the given id in id order. Returned as a
+	 * {@link Slice}, so only pageSize + 1 rows are read and no count query is issued.
+	 */
+	Slice<UserEntity> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+	/**
+	 * Id and version of a page of users, enough to compute the list ETag without loading the
+	 * entities themselves.
+	 */
+	List<UserVersion> findVersionsBy(Pageable pageable);
+
+	List<UserVersion> findVersionsBy(Sort sort);
+
+	Slice<UserVersion> findVersionsByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+	@Query("select u.version from UserEntity u where u.id = :id")
+	Optional<Long> findVersionById(@Param("id") Long id);
+
+	/**
+	 * Seek on idx_user_username. Usernames are not unique, so the oldest matching user wins.
+	 */
+	Optional<UserEntity> findFirstByUsernameOrderByIdAsc(String username);
+
+	/**
+	 * Seek on idx_user_email. Emails are not unique, so the oldest matching user wins.
+	 */
+	Optional<UserEntity> findFirstByEmailOrderByIdAsc(String email);
+
+	/**
+	 * Streams every user in id order, STREAM_FETCH_SIZE rows per JDBC round-trip. Entities are
+	 * loaded read-only (no dirty-checking snapshots); must be consumed inside a transaction and
+	 * closed afterwards.
+	 */
+	@QueryHints({ @QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+			@QueryHint(name = HINT_READONLY, value = "true") })
+	@Query("select u from UserEntity u order by u.id")
+	Stream<UserEntity> streamAllByOrderByIdAsc();
+
+	/**
+	 * Overwrites a user in a single UPDATE statement, without loading it first.
+	 *
+	 * @return the number of rows touched, 0 when there is no user with that id
+	 */
+	@Transactional
+	@Modifying(clearAutomatically = true)
+	@Query("update UserEntity u set u.email = :email, u.name = :name, u.password = :password, "
+			+ "u.username = :username, u.version = u.version + 1 where u.id = :id")
+	int updateById(@Param("id") Long id, @Param("email") String email, @Param("name") String name,
+			@Param("password") String password, @Param("username") String username);
+
+	/**
+	 * Like updateById, but only while the user is still at the given version (If-Match).
+	 *
+	 * @return the number of rows touched, 0 when the user is gone or was changed in the meantime
+	 */
+	@Transactional
+	@Modifying(clearAutomatically = true)
+	@Query("update UserEntity u set u.email = :email, u.name = :name, u.password = :password, "
+			+ "u.username = :username, u.version = u.version + 1 where u.id = :id and u.version = :version")
+	int updateByIdAndVersion(@Param("id") Long id, @Param("version") Long version, @Param("email") String email,
+			@Param("name") String name, @Param("password") String password, @Param("username") String username);
+
+	/**
+	 * Replaces a stored password with its rehashed form, unless it was changed in the meantime.
+	 * The representation is unchanged, so the version (and the clients' ETags) stay valid.
+	 *
+	 * @return the number of rows touched, 0 when the user or its old password is gone
+	 */
+	@Transactional
+	@Modifying(clearAutomatically = true)
+	@Query("update UserEntity u set u.password = :newPassword where u.id = :id and u.password = :oldPassword")
+	int updatePasswordById(@Param("id") Long id, @Param("oldPassword") String oldPassword,
+			@Param("newPassword") String newPassword);
 
+	/**
+	 * Deletes a user in a single DELETE statement, without loading it first.
+	 *
+	 * @return the number of rows touched, 0 when there is no user with that id
+	 */
+	@Transactional
+	@Modifying(clearAutomatically = true)
+	@Query("delete from UserEntity u where u.id = :id")
+	int removeById(@Param("id") Long id);
 }
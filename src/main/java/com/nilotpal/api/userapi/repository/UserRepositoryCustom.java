@@ -0,0 +1,30 @@
+package com.nilotpal.api.userapi.repository;
+
+import java.util.List;
+import java.util.Set;
+
+import javax.persistence.Tuple;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import com.nilotpal.api.userapi.model.UserField;
+
+/**
+ * Sparse fieldset queries. Only the id, the version and the requested columns are selected, and
+ * the rows come back as unmanaged tuples keyed by attribute name.
+ */
+public interface UserRepositoryCustom {
+	String ID = "id";
+	String VERSION = "version";
+
+	List<Tuple> findFieldsBy(Set<UserField> fields, Pageable pageable);
+
+	List<Tuple> findFieldsBy(Set<UserField> fields, Sort sort);
+
+	/**
+	 * Keyset variant of findFieldsBy, rows strictly after the given id in id order.
+	 */
+	Slice<Tuple> findFieldsByIdGreaterThanOrderByIdAsc(Set<UserField> fields, Long id, Pageable pageable);
+}
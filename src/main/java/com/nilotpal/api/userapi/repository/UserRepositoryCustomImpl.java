@@ -0,0 +1,75 @@
+package com.nilotpal.api.userapi.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import com.nilotpal.api.userapi.entity.UserEntity;
+import com.nilotpal.api.userapi.model.UserField;
+
+/**
+ * Builds the select list from the requested fields; a Spring Data interface projection would need
+ * one interface per combination of fields.
+ */
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Override
+	public List<Tuple> findFieldsBy(final Set<UserField> fields, final Pageable pageable) {
+		TypedQuery<Tuple> query = createQuery(fields, null, pageable.getSort());
+		if (pageable.isPaged()) {
+			query.setFirstResult((int) pageable.getOffset()).setMaxResults(pageable.getPageSize());
+		}
+		return query.getResultList();
+	}
+
+	@Override
+	public List<Tuple> findFieldsBy(final Set<UserField> fields, final Sort sort) {
+		return createQuery(fields, null, sort).getResultList();
+	}
+
+	@Override
+	public Slice<Tuple> findFieldsByIdGreaterThanOrderByIdAsc(final Set<UserField> fields, final Long id,
+			final Pageable pageable) {
+		// One extra row tells whether there is a next slice, as the derived Slice queries do
+		List<Tuple> rows = createQuery(fields, id, Sort.by(ID)).setMaxResults(pageable.getPageSize() + 1)
+				.getResultList();
+		boolean hasNext = rows.size() > pageable.getPageSize();
+		return new SliceImpl<>(hasNext ? rows.subList(0, pageable.getPageSize()) : rows, pageable, hasNext);
+	}
+
+	private TypedQuery<Tuple> createQuery(final Set<UserField> fields, final Long afterId, final Sort sort) {
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Tuple> criteria = builder.createTupleQuery();
+		Root<UserEntity> user = criteria.from(UserEntity.class);
+
+		List<Selection<?>> selections = new ArrayList<>(fields.size() + 2);
+		selections.add(user.get(ID).alias(ID));
+		selections.add(user.get(VERSION).alias(VERSION));
+		for (UserField field : fields) {
+			selections.add(user.get(field.getAttribute()).alias(field.getAttribute()));
+		}
+		criteria.multiselect(selections);
+		if (afterId != null) {
+			criteria.where(builder.greaterThan(user.<Long>get(ID), afterId));
+		}
+		criteria.orderBy(QueryUtils.toOrders(sort, user, builder));
+		return entityManager.createQuery(criteria);
+	}
+}
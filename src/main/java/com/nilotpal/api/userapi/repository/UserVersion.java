@@ -0,0 +1,10 @@
+package com.nilotpal.api.userapi.repository;
+
+/**
+ * Closed projection, so only the id and version columns are selected.
+ */
+public interface UserVersion {
+	Long getId();
+
+	Long getVersion();
+}
@@ -0,0 +1,12 @@
+package com.nilotpal.api.userapi.service;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.stereotype.Service;
+
+@Service
+public interface PasswordService {
+	CompletableFuture<String> hash(final String rawPassword);
+	CompletableFuture<Boolean> matches(final String rawPassword, final String storedPassword);
+	boolean needsRehash(final String storedPassword);
+}
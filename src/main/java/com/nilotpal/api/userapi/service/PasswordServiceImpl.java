@@ -0,0 +1,67 @@
+package com.nilotpal.api.userapi.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import com.nilotpal.api.userapi.config.PasswordHashingConfig;
+
+/**
+ * Hashes and verifies passwords on the password hashing pool. A full pool makes the call fail
+ * with a TaskRejectedException before any work is queued. Stored values that are not BCrypt
+ * hashes (rows written before passwords were hashed) or that use a lower work factor than the
+ * configured one are reported by needsRehash so they can be upgraded after a successful match.
+ */
+@Service
+public class PasswordServiceImpl implements PasswordService {
+	private static final Pattern BCRYPT_HASH = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+
+	@Autowired
+	BCryptPasswordEncoder passwordEncoder;
+
+	@Autowired
+	@Qualifier(PasswordHashingConfig.PASSWORD_HASHING_EXECUTOR)
+	AsyncTaskExecutor passwordHashingExecutor;
+
+	@Value("${user-api.password.bcrypt-strength:10}")
+	int strength;
+
+	@Override
+	public CompletableFuture<String> hash(final String rawPassword) {
+		if (rawPassword == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+		return CompletableFuture.supplyAsync(() -> passwordEncoder.encode(rawPassword), passwordHashingExecutor);
+	}
+
+	@Override
+	public CompletableFuture<Boolean> matches(final String rawPassword, final String storedPassword) {
+		if (rawPassword == null || storedPassword == null) {
+			return CompletableFuture.completedFuture(false);
+		}
+		if (!BCRYPT_HASH.matcher(storedPassword).find()) {
+			return CompletableFuture.completedFuture(MessageDigest.isEqual(
+					rawPassword.getBytes(StandardCharsets.UTF_8), storedPassword.getBytes(StandardCharsets.UTF_8)));
+		}
+		return CompletableFuture.supplyAsync(() -> passwordEncoder.matches(rawPassword, storedPassword),
+				passwordHashingExecutor);
+	}
+
+	@Override
+	public boolean needsRehash(final String storedPassword) {
+		if (storedPassword == null) {
+			return false;
+		}
+		Matcher matcher = BCRYPT_HASH.matcher(storedPassword);
+		return !matcher.find() || Integer.parseInt(matcher.group(1)) < strength;
+	}
+}
@@ -0,0 +1,21 @@
+package com.nilotpal.api.userapi.service;
+
+import org.springframework.stereotype.Service;
+
+import com.nilotpal.api.userapi.model.User;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Read side of {@link UserService} as Reactor publishers, for callers that compose requests
+ * instead of holding a thread per call. Errors are signalled as in UserService
+ * (UserNotFoundException, InvalidCursorException, TaskRejectedException when saturated).
+ */
+@Service
+public interface ReactiveUserService {
+	Mono<User> getUserById(final String id);
+	Flux<User> getAllUsers(final Integer page, final Integer size);
+	Flux<User> getUsersAfter(final String cursor, final Integer limit);
+	Flux<User> streamUsers();
+}
@@ -0,0 +1,62 @@
+package com.nilotpal.api.userapi.service;
+
+import java.util.concurrent.Callable;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import com.nilotpal.api.userapi.config.DatabaseExecutor;
+import com.nilotpal.api.userapi.model.User;
+import com.nilotpal.api.userapi.model.UserSlice;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive facade over the JPA read path. Each repository call runs on the database executor and
+ * nothing is fetched before it is subscribed to; streamUsers pages through the table by keyset,
+ * reading the next slice only when the subscriber has asked for more users.
+ */
+@Service
+@Profile(ReactiveUserServiceImpl.REACTIVE_PROFILE)
+public class ReactiveUserServiceImpl implements ReactiveUserService {
+	public static final String REACTIVE_PROFILE = "reactive";
+	static final int STREAM_SLICE_SIZE = 500;
+
+	@Autowired
+	UserService userService;
+
+	@Autowired
+	DatabaseExecutor databaseExecutor;
+
+	@Override
+	public Mono<User> getUserById(final String id) {
+		return onDatabaseExecutor(() -> userService.getUserById(id));
+	}
+
+	@Override
+	public Flux<User> getAllUsers(final Integer page, final Integer size) {
+		return onDatabaseExecutor(() -> userService.getAllUsers(page, size)).flatMapIterable(users -> users);
+	}
+
+	@Override
+	public Flux<User> getUsersAfter(final String cursor, final Integer limit) {
+		return onDatabaseExecutor(() -> userService.getUsersAfter(cursor, limit))
+				.flatMapIterable(UserSlice::getUsers);
+	}
+
+	@Override
+	public Flux<User> streamUsers() {
+		return slice(null).expand(slice -> slice.hasNext() ? slice(slice.getNextCursor()) : Mono.empty())
+				.flatMapIterable(UserSlice::getUsers);
+	}
+
+	private Mono<UserSlice<User>> slice(final String cursor) {
+		return onDatabaseExecutor(() -> userService.getUsersAfter(cursor, STREAM_SLICE_SIZE));
+	}
+
+	private <T> Mono<T> onDatabaseExecutor(final Callable<T> call) {
+		return Mono.defer(() -> Mono.fromFuture(databaseExecutor.supply(call)));
+	}
+}
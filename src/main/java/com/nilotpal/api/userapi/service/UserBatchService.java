@@ -0,0 +1,17 @@
+package com.nilotpal.api.userapi.service;
+
+import java.util.List;
+
+import org.springframework.stereotype.Service;
+
+import com.nilotpal.api.userapi.model.BatchItemResult;
+import com.nilotpal.api.userapi.model.BatchUpdateUserRequest;
+import com.nilotpal.api.userapi.model.CreateUserRequest;
+
+@Service
+public interface UserBatchService {
+	List<BatchItemResult> createUsers(final List<CreateUserRequest> createUserRequests);
+	List<BatchItemResult> updateUsers(final List<BatchUpdateUserRequest> updateUserRequests);
+	List<BatchItemResult> deleteUsers(final List<String> ids);
+	List<BatchItemResult> getUsers(final List<String> ids);
+}
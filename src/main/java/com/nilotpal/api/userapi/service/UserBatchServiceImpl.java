@@ -0,0 +1,381 @@
+package com.nilotpal.api.userapi.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.NestedRuntimeException;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nilotpal.api.userapi.config.CacheConfig;
+import com.nilotpal.api.userapi.entity.UserEntity;
+import com.nilotpal.api.userapi.model.BatchItemResult;
+import com.nilotpal.api.userapi.model.BatchUpdateUserRequest;
+import com.nilotpal.api.userapi.model.CreateUserRequest;
+import com.nilotpal.api.userapi.model.User;
+import com.nilotpal.api.userapi.repository.UserRepository;
+
+/**
+ * Applies batch requests in chunks of {@code user-api.batch.chunk-size} items, one transaction
+ * per chunk. Within a chunk Hibernate groups the inserts/updates into JDBC batches, so a chunk
+ * costs a handful of round-trips instead of one per user. A failing chunk is rolled back and
+ * reported item by item without affecting the chunks before or after it. At most
+ * hashing-concurrency passwords of all running batches are on the shared hashing pool at once, so
+ * a batch cannot fill its queue and starve single creates and updates; an item whose password
+ * could not be hashed fails on its own, and the items left once no permit frees up within
+ * hashing-wait-ms fail with 503. Lookups read the ids
+ * missing from the write-behind buffer and the users cache with one IN query per chunk.
+ *
+ * Before a chunk of updates the write-behind buffer writes what it holds for the chunk's users, so
+ * an earlier single update cannot land on top of the batch later; a chunk of deletes drops them,
+ * failing their waiters as deleteUser does.
+ */
+@Service
+public class UserBatchServiceImpl implements UserBatchService {
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Autowired
+	CacheManager cacheManager;
+
+	@Autowired
+	PasswordService passwordService;
+
+	@Autowired
+	UserSearchIndex userSearchIndex;
+
+	@Autowired
+	UserUpdateBuffer userUpdateBuffer;
+
+	@Value("${user-api.batch.chunk-size:500}")
+	int chunkSize;
+
+	@Value("${user-api.batch.hashing-concurrency:4}")
+	int hashingConcurrency;
+
+	@Value("${user-api.batch.hashing-wait-ms:1000}")
+	long hashingWaitMillis;
+
+	private Semaphore hashingPermits;
+
+	@PostConstruct
+	void init() {
+		hashingPermits = new Semaphore(hashingConcurrency);
+	}
+
+	@Override
+	public List<BatchItemResult> createUsers(final List<CreateUserRequest> createUserRequests) {
+		List<BatchItemResult> results = new ArrayList<>(createUserRequests.size());
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+		for (int from = 0; from < createUserRequests.size(); from += chunkSize) {
+			int to = Math.min(from + chunkSize, createUserRequests.size());
+			List<CreateUserRequest> chunk = createUserRequests.subList(from, to);
+			List<CompletableFuture<String>> passwordHashes = hashPasswords(
+					chunk.stream().map(CreateUserRequest::getPassword).collect(Collectors.toList()));
+			BatchItemResult[] chunkResults = new BatchItemResult[chunk.size()];
+			List<Integer> hashed = new ArrayList<>(chunk.size());
+			List<UserEntity> userEntities = new ArrayList<>(chunk.size());
+			for (int i = 0; i < chunk.size(); i++) {
+				try {
+					userEntities.add(new UserEntity(chunk.get(i), passwordHashes.get(i).join()));
+					hashed.add(i);
+				} catch (CompletionException e) {
+					chunkResults[i] = hashingFailure(from + i, null, e);
+				}
+			}
+			if (!userEntities.isEmpty()) {
+				try {
+					List<UserEntity> saved = transactionTemplate
+							.execute(status -> userRepository.saveAll(userEntities));
+					for (int j = 0; j < saved.size(); j++) {
+						User created = UserServiceImpl.convertUserEntityToUser(saved.get(j));
+						userSearchIndex.index(created);
+						chunkResults[hashed.get(j)] = BatchItemResult.success(from + hashed.get(j), HttpStatus.CREATED,
+								created);
+					}
+				} catch (DataAccessException | TransactionException e) {
+					for (int i : hashed) {
+						chunkResults[i] = failure(from + i, null, e);
+					}
+				}
+			}
+			results.addAll(Arrays.asList(chunkResults));
+		}
+
+		return results;
+	}
+
+	@Override
+	public List<BatchItemResult> updateUsers(final List<BatchUpdateUserRequest> updateUserRequests) {
+		List<BatchItemResult> results = new ArrayList<>(updateUserRequests.size());
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+		for (int from = 0; from < updateUserRequests.size(); from += chunkSize) {
+			int to = Math.min(from + chunkSize, updateUserRequests.size());
+			List<BatchUpdateUserRequest> chunk = updateUserRequests.subList(from, to);
+			int offset = from;
+			List<CompletableFuture<String>> hashing = hashPasswords(
+					chunk.stream().map(BatchUpdateUserRequest::getPassword).collect(Collectors.toList()));
+			BatchItemResult[] chunkResults = new BatchItemResult[chunk.size()];
+			List<Integer> hashed = new ArrayList<>(chunk.size());
+			String[] passwordHashes = new String[chunk.size()];
+			for (int i = 0; i < chunk.size(); i++) {
+				try {
+					passwordHashes[i] = hashing.get(i).join();
+					hashed.add(i);
+				} catch (CompletionException e) {
+					chunkResults[i] = hashingFailure(from + i, chunk.get(i).getId(), e);
+				}
+			}
+			if (!hashed.isEmpty()) {
+				try {
+					userUpdateBuffer.flush(hashed.stream().map(i -> parseId(chunk.get(i).getId()))
+							.filter(Objects::nonNull).collect(Collectors.toList()));
+					List<BatchItemResult> updated = transactionTemplate.execute(status -> {
+						// One IN query for the whole chunk; dirty checking then flushes batched UPDATEs
+						Map<Long, UserEntity> existing = findAllById(hashed.stream().map(i -> chunk.get(i).getId())
+								.collect(Collectors.toList()));
+						List<BatchItemResult> itemResults = new ArrayList<>(hashed.size());
+						Map<Integer, UserEntity> merged = new LinkedHashMap<>();
+						for (int i : hashed) {
+							BatchUpdateUserRequest request = chunk.get(i);
+							UserEntity userEntity = existing.get(parseId(request.getId()));
+							if (userEntity == null) {
+								itemResults.add(notFound(offset + i, request.getId()));
+							} else {
+								userEntity.merge(request, passwordHashes[i]);
+								merged.put(i, userEntity);
+							}
+						}
+						// Flushed before the results are taken, so that they carry the new versions
+						userRepository.flush();
+						merged.forEach((i, userEntity) -> itemResults.add(BatchItemResult.success(offset + i,
+								HttpStatus.OK, UserServiceImpl.convertUserEntityToUser(userEntity))));
+						return itemResults;
+					});
+					evictCachedUsers(updated);
+					updateSearchIndex(updated, false);
+					updated.forEach(result -> chunkResults[result.getIndex() - offset] = result);
+				} catch (DataAccessException | TransactionException e) {
+					for (int i : hashed) {
+						chunkResults[i] = failure(offset + i, chunk.get(i).getId(), e);
+					}
+				}
+			}
+			results.addAll(Arrays.asList(chunkResults));
+		}
+
+		return results;
+	}
+
+	@Override
+	public List<BatchItemResult> deleteUsers(final List<String> ids) {
+		List<BatchItemResult> results = new ArrayList<>(ids.size());
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+		for (int from = 0; from < ids.size(); from += chunkSize) {
+			int to = Math.min(from + chunkSize, ids.size());
+			List<String> chunk = ids.subList(from, to);
+			int offset = from;
+			chunk.stream().map(UserBatchServiceImpl::parseId).filter(Objects::nonNull)
+					.forEach(userUpdateBuffer::discard);
+			try {
+				List<BatchItemResult> chunkResults = transactionTemplate.execute(status -> {
+					Map<Long, UserEntity> existing = findAllById(chunk);
+					// A single DELETE ... WHERE id = ? OR id = ? ... for everything that was found
+					userRepository.deleteInBatch(existing.values());
+					List<BatchItemResult> itemResults = new ArrayList<>(chunk.size());
+					for (int i = 0; i < chunk.size(); i++) {
+						UserEntity userEntity = existing.get(parseId(chunk.get(i)));
+						itemResults.add(userEntity == null ? notFound(offset + i, chunk.get(i))
+								: BatchItemResult.success(offset + i, HttpStatus.OK,
+										UserServiceImpl.convertUserEntityToUser(userEntity)));
+					}
+					return itemResults;
+				});
+				evictCachedUsers(chunkResults);
+				updateSearchIndex(chunkResults, true);
+				results.addAll(chunkResults);
+			} catch (DataAccessException | TransactionException e) {
+				addChunkFailure(results, from, to, i -> chunk.get(i), e);
+			}
+		}
+
+		return results;
+	}
+
+	@Override
+	public List<BatchItemResult> getUsers(final List<String> ids) {
+		Map<Long, User> found = new HashMap<>();
+		Map<Long, NestedRuntimeException> failed = new HashMap<>();
+		Cache cache = cacheManager.getCache(CacheConfig.USERS_CACHE);
+		List<Long> misses = new ArrayList<>();
+		for (Long id : ids.stream().map(UserBatchServiceImpl::parseId).filter(Objects::nonNull).distinct()
+				.collect(Collectors.toList())) {
+			// Same precedence as getUserById: a buffered update, then the cache, then the database
+			Optional<User> buffered = userUpdateBuffer.pending(id);
+			User user = buffered.isPresent() ? buffered.get() : cache == null ? null : cache.get(id, User.class);
+			if (user != null) {
+				found.put(id, user);
+			} else {
+				misses.add(id);
+			}
+		}
+
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		transactionTemplate.setReadOnly(true);
+		for (int from = 0; from < misses.size(); from += chunkSize) {
+			List<Long> chunk = misses.subList(from, Math.min(from + chunkSize, misses.size()));
+			try {
+				transactionTemplate.execute(status -> userRepository.findAllById(chunk)).forEach(
+						userEntity -> found.put(userEntity.getId(), UserServiceImpl.convertUserEntityToUser(userEntity)));
+			} catch (DataAccessException | TransactionException e) {
+				chunk.forEach(id -> failed.put(id, e));
+			}
+		}
+
+		List<BatchItemResult> results = new ArrayList<>(ids.size());
+		for (int index = 0; index < ids.size(); index++) {
+			String id = ids.get(index);
+			Long parsedId = parseId(id);
+			User user = parsedId == null ? null : found.get(parsedId);
+			NestedRuntimeException failure = parsedId == null ? null : failed.get(parsedId);
+			if (user != null) {
+				results.add(BatchItemResult.success(index, HttpStatus.OK, user));
+			} else if (failure != null) {
+				results.add(BatchItemResult.failure(index, id, HttpStatus.INTERNAL_SERVER_ERROR,
+						failure.getMostSpecificCause().getMessage()));
+			} else {
+				results.add(notFound(index, id));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Hands a chunk's passwords to the password hashing pool, waiting for a permit before each one so
+	 * batches never have more than hashing-concurrency hashes queued or running. The caller joins the
+	 * hashes before the chunk's transaction starts, so no connection is held while hashing. When no
+	 * permit frees up within hashing-wait-ms the remaining passwords are rejected as a full pool
+	 * would reject them, instead of holding the thread for as long as other batches keep hashing.
+	 */
+	private List<CompletableFuture<String>> hashPasswords(final List<String> rawPasswords) {
+		List<CompletableFuture<String>> hashes = new ArrayList<>(rawPasswords.size());
+		for (String rawPassword : rawPasswords) {
+			if (!acquireHashingPermit()) {
+				while (hashes.size() < rawPasswords.size()) {
+					CompletableFuture<String> rejected = new CompletableFuture<>();
+					rejected.completeExceptionally(new TaskRejectedException(
+							"No password hashing permit within " + hashingWaitMillis + " ms"));
+					hashes.add(rejected);
+				}
+				break;
+			}
+			CompletableFuture<String> hash;
+			try {
+				hash = passwordService.hash(rawPassword);
+			} catch (RuntimeException e) {
+				hash = new CompletableFuture<>();
+				hash.completeExceptionally(e);
+			}
+			hashes.add(hash.whenComplete((value, e) -> hashingPermits.release()));
+		}
+		return hashes;
+	}
+
+	private boolean acquireHashingPermit() {
+		try {
+			return hashingPermits.tryAcquire(hashingWaitMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private void evictCachedUsers(final List<BatchItemResult> chunkResults) {
+		Cache cache = cacheManager.getCache(CacheConfig.USERS_CACHE);
+		if (cache == null) {
+			return;
+		}
+		chunkResults.stream().filter(result -> result.getUser() != null)
+				.forEach(result -> cache.evict(Long.valueOf(result.getId())));
+	}
+
+	private void updateSearchIndex(final List<BatchItemResult> chunkResults, final boolean deleted) {
+		chunkResults.stream().filter(result -> result.getUser() != null).forEach(result -> {
+			if (deleted) {
+				userSearchIndex.remove(Long.valueOf(result.getId()));
+			} else {
+				userSearchIndex.index(result.getUser());
+			}
+		});
+	}
+
+	private Map<Long, UserEntity> findAllById(final List<String> ids) {
+		List<Long> parsedIds = ids.stream().map(UserBatchServiceImpl::parseId).filter(id -> id != null)
+				.distinct().collect(Collectors.toList());
+		return userRepository.findAllById(parsedIds).stream()
+				.collect(Collectors.toMap(UserEntity::getId, Function.identity()));
+	}
+
+	private static Long parseId(final String id) {
+		try {
+			return id == null ? null : Long.valueOf(id);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static BatchItemResult notFound(final int index, final String id) {
+		return BatchItemResult.failure(index, id, HttpStatus.NOT_FOUND, "No user found with id: " + id);
+	}
+
+	private static BatchItemResult failure(final int index, final String id, final NestedRuntimeException e) {
+		HttpStatus status = e instanceof DataIntegrityViolationException ? HttpStatus.CONFLICT
+				: HttpStatus.INTERNAL_SERVER_ERROR;
+		return BatchItemResult.failure(index, id, status, e.getMostSpecificCause().getMessage());
+	}
+
+	private static BatchItemResult hashingFailure(final int index, final String id, final CompletionException e) {
+		Throwable cause = e.getCause() == null ? e : e.getCause();
+		HttpStatus status = cause instanceof TaskRejectedException ? HttpStatus.SERVICE_UNAVAILABLE
+				: HttpStatus.INTERNAL_SERVER_ERROR;
+		return BatchItemResult.failure(index, id, status, cause.getMessage());
+	}
+
+	private static void addChunkFailure(final List<BatchItemResult> results, final int from, final int to,
+			final Function<Integer, String> idOfChunkItem, final NestedRuntimeException e) {
+		for (int index = from; index < to; index++) {
+			String id = idOfChunkItem == null ? null : idOfChunkItem.apply(index - from);
+			results.add(failure(index, id, e));
+		}
+	}
+}
@@ -0,0 +1,12 @@
+package com.nilotpal.api.userapi.service;
+
+import java.util.Optional;
+
+import org.springframework.stereotype.Service;
+
+import com.nilotpal.api.userapi.entity.UserEntity;
+
+@Service
+public interface UserLoader {
+	Optional<UserEntity> load(final Long id);
+}
@@ -0,0 +1,177 @@
+package com.nilotpal.api.userapi.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nilotpal.api.userapi.entity.UserEntity;
+import com.nilotpal.api.userapi.repository.UserRepository;
+
+/**
+ * Loads single users by id for getUserById, each in its own short transaction, so a caller waiting
+ * for a load holds no connection. The transactions are not read-only so that they run on the
+ * primary: what is loaded here fills the users cache, and a row read from a lagging replica would
+ * be cached, stale ETag and all, right after the update that evicted it.
+ *
+ * With user-api.load-coalescing.enabled concurrent loads of the same id share one query
+ * (single-flight): the first caller runs it and the others wait for its result. The users cache
+ * already does this for cached reads (sync = true); this covers the cache being off and the loads
+ * that bypass it.
+ *
+ * With a batch-window-ms above 0 the distinct ids requested within the window are read together
+ * by one findAllById (IN query), at most max-batch-size per query. Every load then waits up to the
+ * window, which is what buys fewer queries when many different users miss at once.
+ *
+ * A load that is already running when a user changes can still return the old state to the
+ * callers that joined it, as if they had read a moment earlier.
+ */
+@Service
+public class UserLoaderImpl implements UserLoader {
+	private final ConcurrentHashMap<Long, CompletableFuture<Optional<UserEntity>>> inFlight = new ConcurrentHashMap<>();
+	private final ConcurrentLinkedQueue<Long> queued = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean batchScheduled = new AtomicBoolean();
+	private ScheduledExecutorService batcher;
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Value("${user-api.load-coalescing.enabled:true}")
+	boolean enabled;
+
+	@Value("${user-api.load-coalescing.batch-window-ms:0}")
+	long batchWindowMillis;
+
+	@Value("${user-api.load-coalescing.max-batch-size:100}")
+	int maxBatchSize;
+
+	@PostConstruct
+	void start() {
+		if (enabled && batchWindowMillis > 0) {
+			batcher = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "user-loader");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	@PreDestroy
+	void stop() {
+		if (batcher != null) {
+			batcher.shutdown();
+		}
+	}
+
+	@Override
+	public Optional<UserEntity> load(final Long id) {
+		if (!enabled) {
+			return read(id);
+		}
+		CompletableFuture<Optional<UserEntity>> started = new CompletableFuture<>();
+		CompletableFuture<Optional<UserEntity>> running = inFlight.putIfAbsent(id, started);
+		if (running != null) {
+			return await(running);
+		}
+		if (batcher != null) {
+			queued.add(id);
+			scheduleBatch();
+			return await(started);
+		}
+		try {
+			Optional<UserEntity> userEntity = read(id);
+			started.complete(userEntity);
+			return userEntity;
+		} catch (RuntimeException e) {
+			started.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(id, started);
+		}
+	}
+
+	private Optional<UserEntity> read(final Long id) {
+		return onPrimary().execute(status -> userRepository.findById(id));
+	}
+
+	private TransactionTemplate onPrimary() {
+		return new TransactionTemplate(transactionManager);
+	}
+
+	private void scheduleBatch() {
+		if (queued.size() >= maxBatchSize) {
+			batcher.execute(this::loadBatches);
+		} else if (batchScheduled.compareAndSet(false, true)) {
+			batcher.schedule(this::loadBatches, batchWindowMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Runs on the batcher thread only, so batches never overlap.
+	 */
+	void loadBatches() {
+		batchScheduled.set(false);
+		while (!queued.isEmpty()) {
+			List<Long> batch = new ArrayList<>(Math.min(queued.size(), maxBatchSize));
+			Long id;
+			while (batch.size() < maxBatchSize && (id = queued.poll()) != null) {
+				batch.add(id);
+			}
+			loadBatch(batch);
+		}
+	}
+
+	private void loadBatch(final List<Long> batch) {
+		try {
+			Map<Long, UserEntity> found = onPrimary().execute(status -> userRepository.findAllById(batch).stream()
+					.collect(Collectors.toMap(UserEntity::getId, Function.identity())));
+			for (Long id : batch) {
+				CompletableFuture<Optional<UserEntity>> load = inFlight.remove(id);
+				if (load != null) {
+					load.complete(Optional.ofNullable(found.get(id)));
+				}
+			}
+		} catch (RuntimeException e) {
+			for (Long id : batch) {
+				CompletableFuture<Optional<UserEntity>> load = inFlight.remove(id);
+				if (load != null) {
+					load.completeExceptionally(e);
+				}
+			}
+		}
+	}
+
+	private static Optional<UserEntity> await(final CompletableFuture<Optional<UserEntity>> load) {
+		try {
+			return load.join();
+		} catch (CompletionException e) {
+			// Rethrown as the loading caller saw it
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package com.nilotpal.api.userapi.service;
+
+import java.util.List;
+
+import org.springframework.stereotype.Service;
+
+import com.nilotpal.api.userapi.model.User;
+
+@Service
+public interface UserSearchIndex {
+	List<Long> search(final String query, final int limit);
+	void index(final User user);
+	void remove(final Long id);
+	void rebuild();
+	int size();
+	boolean isReady();
+}
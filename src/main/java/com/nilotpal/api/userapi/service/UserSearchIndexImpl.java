@@ -0,0 +1,381 @@
+package com.nilotpal.api.userapi.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nilotpal.api.userapi.entity.UserEntity;
+import com.nilotpal.api.userapi.model.User;
+import com.nilotpal.api.userapi.repository.UserRepository;
+
+/**
+ * In-memory inverted index for type-ahead search. Every whitespace separated word of a user's
+ * name, username and email is a lower-cased token; tokens are kept sorted, so the users matching a
+ * prefix are a range of the map and the top K are found without looking at the rest of it. Each
+ * token maps to the ascending ids of its users, as an array that is replaced on change, never
+ * modified, so searches take no lock. Matches come in token order (an exact match before longer
+ * words) and then id order. A query of several words returns users matching every one of them.
+ *
+ * Built from the database in the background on startup, searches being unavailable until then
+ * (isReady), and kept up to date by the services after each committed create, update and delete.
+ * Those writes can reach the index out of order, so each carries the user's version and one older
+ * than the indexed version is ignored; users written without learning their new version are read
+ * back from the primary, and removed users are remembered until the next rebuild so that a late
+ * write cannot bring them back. It holds every token once plus each user's tokens, a few hundred
+ * bytes per user.
+ *
+ * The index is per instance: writes made through other instances only show up once it is rebuilt,
+ * every user-api.search.refresh-interval-ms when that is above 0.
+ */
+@Service
+public class UserSearchIndexImpl implements UserSearchIndex, SmartInitializingSingleton {
+	private static final Logger LOGGER = LoggerFactory.getLogger(UserSearchIndexImpl.class);
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+	private static final String[] NO_TOKENS = new String[0];
+	// Version of a removed user, newer than any write that may still arrive for it
+	private static final long REMOVED = Long.MAX_VALUE;
+
+	private volatile ConcurrentSkipListMap<String, long[]> postings = new ConcurrentSkipListMap<>();
+	private volatile ConcurrentHashMap<Long, String[]> tokensById = new ConcurrentHashMap<>();
+	private volatile ConcurrentHashMap<Long, Long> versions = new ConcurrentHashMap<>();
+	private volatile boolean ready;
+	private final Object rebuildLock = new Object();
+	// Writes made while a rebuild reads the database, applied again to the rebuilt index
+	private List<Runnable> missedWrites;
+	private ScheduledExecutorService rebuilder;
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@PersistenceContext
+	EntityManager entityManager;
+
+	@Value("${user-api.search.rebuild-on-startup:true}")
+	boolean rebuildOnStartup;
+
+	@Value("${user-api.search.refresh-interval-ms:0}")
+	long refreshIntervalMillis;
+
+	@Override
+	public void afterSingletonsInstantiated() {
+		// Without a rebuild on startup searches find the users written from now on
+		ready = !rebuildOnStartup;
+		if (!rebuildOnStartup && refreshIntervalMillis <= 0) {
+			return;
+		}
+		rebuilder = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "user-search-index");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (rebuildOnStartup) {
+			rebuilder.execute(this::rebuildQuietly);
+		}
+		if (refreshIntervalMillis > 0) {
+			rebuilder.scheduleWithFixedDelay(this::rebuildQuietly, refreshIntervalMillis, refreshIntervalMillis,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@PreDestroy
+	void stop() {
+		if (rebuilder != null) {
+			rebuilder.shutdownNow();
+		}
+	}
+
+	private void rebuildQuietly() {
+		try {
+			rebuild();
+		} catch (RuntimeException e) {
+			LOGGER.warn(ready ? "Search index could not be refreshed, keeping the current one"
+					: "Search index could not be built, searches find only users written from now on", e);
+			ready = true;
+		}
+	}
+
+	@Override
+	public boolean isReady() {
+		return ready;
+	}
+
+	@Override
+	public List<Long> search(final String query, final int limit) {
+		String[] terms = tokens(query);
+		if (terms.length == 0 || limit <= 0) {
+			return Collections.emptyList();
+		}
+		// The longest word matches the fewest tokens, the others are checked against each candidate
+		String driver = terms[0];
+		for (String term : terms) {
+			if (term.length() > driver.length()) {
+				driver = term;
+			}
+		}
+		Map<Long, String[]> tokens = tokensById;
+		Set<Long> matches = new LinkedHashSet<>();
+		for (Map.Entry<String, long[]> posting : postings.tailMap(driver).entrySet()) {
+			if (!posting.getKey().startsWith(driver)) {
+				break;
+			}
+			for (long id : posting.getValue()) {
+				if ((terms.length == 1 || matchesAll(tokens.get(id), terms)) && matches.add(id)
+						&& matches.size() == limit) {
+					return new ArrayList<>(matches);
+				}
+			}
+		}
+		return new ArrayList<>(matches);
+	}
+
+	private static boolean matchesAll(final String[] userTokens, final String[] terms) {
+		if (userTokens == null) {
+			return false;
+		}
+		for (String term : terms) {
+			boolean matched = false;
+			for (String token : userTokens) {
+				if (token.startsWith(term)) {
+					matched = true;
+					break;
+				}
+			}
+			if (!matched) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void index(final User user) {
+		Long id = Long.valueOf(user.getId());
+		if (user.getVersion() != null) {
+			write(() -> apply(id, user));
+			return;
+		}
+		// Unconditional and write-behind updates do not learn the new version, the row has it
+		Optional<UserEntity> userEntity = new TransactionTemplate(transactionManager)
+				.execute(status -> userRepository.findById(id));
+		if (userEntity.isPresent()) {
+			User written = UserServiceImpl.convertUserEntityToUser(userEntity.get());
+			write(() -> apply(id, written));
+		}
+	}
+
+	@Override
+	public void remove(final Long id) {
+		write(() -> applyRemove(id));
+	}
+
+	private synchronized void write(final Runnable write) {
+		if (missedWrites != null) {
+			missedWrites.add(write);
+		}
+		write.run();
+	}
+
+	private void apply(final Long id, final User user) {
+		Long indexedVersion = versions.get(id);
+		if (indexedVersion != null && indexedVersion >= user.getVersion()) {
+			// Overtaken by a later write or a removal
+			return;
+		}
+		String[] newTokens = tokens(user.getName(), user.getUsername(), user.getEmail());
+		String[] oldTokens = tokensById.get(id);
+		if (oldTokens != null) {
+			for (String token : oldTokens) {
+				if (!Arrays.asList(newTokens).contains(token)) {
+					removeId(token, id);
+				}
+			}
+		}
+		for (int i = 0; i < newTokens.length; i++) {
+			int kept = oldTokens == null ? -1 : Arrays.asList(oldTokens).indexOf(newTokens[i]);
+			newTokens[i] = kept >= 0 ? oldTokens[kept] : addId(newTokens[i], id);
+		}
+		tokensById.put(id, newTokens);
+		versions.put(id, user.getVersion());
+	}
+
+	private void applyRemove(final Long id) {
+		versions.put(id, REMOVED);
+		String[] oldTokens = tokensById.remove(id);
+		if (oldTokens != null) {
+			for (String token : oldTokens) {
+				removeId(token, id);
+			}
+		}
+	}
+
+	/**
+	 * Adds the id to the token's users and returns the token instance the index keeps, so users
+	 * share it rather than holding copies.
+	 */
+	private String addId(final String token, final long id) {
+		Map.Entry<String, long[]> posting = postings.ceilingEntry(token);
+		if (posting == null || !posting.getKey().equals(token)) {
+			postings.put(token, new long[] { id });
+			return token;
+		}
+		long[] ids = posting.getValue();
+		int position = Arrays.binarySearch(ids, id);
+		if (position < 0) {
+			position = -position - 1;
+			long[] added = new long[ids.length + 1];
+			System.arraycopy(ids, 0, added, 0, position);
+			added[position] = id;
+			System.arraycopy(ids, position, added, position + 1, ids.length - position);
+			postings.put(posting.getKey(), added);
+		}
+		return posting.getKey();
+	}
+
+	private void removeId(final String token, final long id) {
+		long[] ids = postings.get(token);
+		int position = ids == null ? -1 : Arrays.binarySearch(ids, id);
+		if (position < 0) {
+			return;
+		}
+		if (ids.length == 1) {
+			postings.remove(token);
+			return;
+		}
+		long[] removed = new long[ids.length - 1];
+		System.arraycopy(ids, 0, removed, 0, position);
+		System.arraycopy(ids, position + 1, removed, position, ids.length - position - 1);
+		postings.put(token, removed);
+	}
+
+	/**
+	 * Reads every user in one streamed read-only query and replaces the index. Searches and writes
+	 * go on meanwhile; the writes are applied to the rebuilt index again, so none of them is lost
+	 * between the read and the swap.
+	 */
+	@Override
+	public void rebuild() {
+		synchronized (rebuildLock) {
+			synchronized (this) {
+				missedWrites = new ArrayList<>();
+			}
+			try {
+				read();
+			} finally {
+				synchronized (this) {
+					missedWrites = null;
+				}
+			}
+		}
+	}
+
+	private void read() {
+		long start = System.nanoTime();
+		Map<String, IdList> ids = new HashMap<>();
+		ConcurrentHashMap<Long, String[]> tokens = new ConcurrentHashMap<>();
+		ConcurrentHashMap<Long, Long> rowVersions = new ConcurrentHashMap<>();
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		transactionTemplate.setReadOnly(true);
+		transactionTemplate.execute(status -> {
+			try (Stream<UserEntity> userEntities = userRepository.streamAllByOrderByIdAsc()) {
+				userEntities.forEach(userEntity -> {
+					entityManager.detach(userEntity);
+					String[] userTokens = tokens(userEntity.getName(), userEntity.getUsername(),
+							userEntity.getEmail());
+					for (int i = 0; i < userTokens.length; i++) {
+						IdList tokenIds = ids.computeIfAbsent(userTokens[i], IdList::new);
+						// Rows arrive in id order, so every list stays sorted
+						tokenIds.add(userEntity.getId());
+						userTokens[i] = tokenIds.token;
+					}
+					tokens.put(userEntity.getId(), userTokens);
+					rowVersions.put(userEntity.getId(), userEntity.getVersion());
+				});
+			}
+			return null;
+		});
+
+		TreeMap<String, long[]> sorted = new TreeMap<>();
+		ids.forEach((token, tokenIds) -> sorted.put(token, tokenIds.toArray()));
+		synchronized (this) {
+			postings = new ConcurrentSkipListMap<>(sorted);
+			tokensById = tokens;
+			versions = rowVersions;
+			missedWrites.forEach(Runnable::run);
+			ready = true;
+		}
+		LOGGER.info("Indexed {} users ({} distinct tokens) for search in {} ms", tokens.size(), sorted.size(),
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+	}
+
+	@Override
+	public int size() {
+		return tokensById.size();
+	}
+
+	static String[] tokens(final String... values) {
+		Set<String> tokens = new LinkedHashSet<>();
+		for (String value : values) {
+			if (value == null) {
+				continue;
+			}
+			for (String token : WHITESPACE.split(value.trim().toLowerCase(Locale.ROOT))) {
+				if (!token.isEmpty()) {
+					tokens.add(token);
+				}
+			}
+		}
+		return tokens.isEmpty() ? NO_TOKENS : tokens.toArray(new String[tokens.size()]);
+	}
+
+	private static final class IdList {
+		private final String token;
+		private long[] ids = new long[1];
+		private int size;
+
+		IdList(String token) {
+			this.token = token;
+		}
+
+		void add(long id) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			ids[size++] = id;
+		}
+
+		long[] toArray() {
+			return size == ids.length ? ids : Arrays.copyOf(ids, size);
+		}
+	}
+}
@@ -1,21 +1,47 @@
 package com.nilotpal.api.userapi.service;
 
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import javax.validation.Valid;
 
 import org.springframework.stereotype.Service;
 
+import com.nilotpal.api.userapi.entity.UserEntity;
+import com.nilotpal.api.userapi.exceptions.InvalidCursorException;
+import com.nilotpal.api.userapi.exceptions.SearchUnavailableException;
 import com.nilotpal.api.userapi.exceptions.UserNotFoundException;
 import com.nilotpal.api.userapi.model.CreateUserRequest;
 import com.nilotpal.api.userapi.model.UpdateUserRequest;
 import com.nilotpal.api.userapi.model.User;
+import com.nilotpal.api.userapi.model.UserField;
+import com.nilotpal.api.userapi.model.UserSlice;
 
 @Service
 public interface UserService {
 	List<User> getAllUsers(final Integer page, final Integer size);
+	List<User> getAllUsers(final Integer page, final Integer size, final Set<UserField> fields);
+	List<UserEntity> getAllUserEntities(final Integer page, final Integer size);
+	String getUsersVersionTag(final Integer page, final Integer size);
+	UserSlice<User> getUsersAfter(final String cursor, final Integer limit) throws InvalidCursorException;
+	UserSlice<User> getUsersAfter(final String cursor, final Integer limit, final Set<UserField> fields)
+			throws InvalidCursorException;
+	UserSlice<UserEntity> getUserEntitiesAfter(final String cursor, final Integer limit)
+			throws InvalidCursorException;
+	String getUsersAfterVersionTag(final String cursor, final Integer limit) throws InvalidCursorException;
+	void exportUsers(final Consumer<UserEntity> consumer);
 	User getUserById(final String id) throws UserNotFoundException;
-	User createUser(@Valid final CreateUserRequest createUserRequest);
-	User updateUser(final String id, @Valid final UpdateUserRequest updateUserRequest) throws UserNotFoundException;
+	Long getUserVersion(final String id) throws UserNotFoundException;
+	User getUserByUsername(final String username) throws UserNotFoundException;
+	User getUserByEmail(final String email) throws UserNotFoundException;
+	List<User> searchUsers(final String query, final Integer limit) throws SearchUnavailableException;
+	CompletableFuture<User> createUser(@Valid final CreateUserRequest createUserRequest);
+	CompletableFuture<User> updateUser(final String id, @Valid final UpdateUserRequest updateUserRequest);
+	CompletableFuture<User> updateUser(final String id, @Valid final UpdateUserRequest updateUserRequest,
+			final Long expectedVersion);
+	CompletableFuture<Boolean> verifyPassword(final String id, final String rawPassword) throws UserNotFoundException;
 	User deleteUser(String id) throws UserNotFoundException;
+	void deleteUserById(final String id) throws UserNotFoundException;
 }
@@ -1,45 +1,203 @@
 package com.nilotpal.api.userapi.service;
 
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.nilotpal.api.userapi.config.CacheConfig;
 import com.nilotpal.api.userapi.entity.UserEntity;
+import com.nilotpal.api.userapi.exceptions.InvalidCursorException;
+import com.nilotpal.api.userapi.exceptions.PreconditionFailedException;
+import com.nilotpal.api.userapi.exceptions.SearchUnavailableException;
 import com.nilotpal.api.userapi.exceptions.UserNotFoundException;
 import com.nilotpal.api.userapi.model.CreateUserRequest;
 import com.nilotpal.api.userapi.model.UpdateUserRequest;
 import com.nilotpal.api.userapi.model.User;
+import com.nilotpal.api.userapi.model.UserField;
+import com.nilotpal.api.userapi.model.UserSlice;
+import com.nilotpal.api.userapi.model.VersionTag;
 import com.nilotpal.api.userapi.repository.UserRepository;
+import com.nilotpal.api.userapi.repository.UserVersion;
 
 @Service
 public class UserServiceImpl implements UserService {
+	static final String USER_CACHE_KEY = "T(java.lang.Long).valueOf(#id)";
+	static final int DEFAULT_SLICE_SIZE = 20;
+	static final int MAX_SLICE_SIZE = 1000;
+	static final int DEFAULT_SEARCH_LIMIT = 10;
+	static final int MAX_SEARCH_LIMIT = 100;
+	// Lists are read in id order, so a list's ETag can be recomputed from the id/version projection
+	static final Sort SORT_BY_ID = Sort.by("id");
+
 	@Autowired
 	UserRepository userRepository;
 
+	@Autowired
+	PasswordService passwordService;
+
+	@Autowired
+	CacheManager cacheManager;
+
+	@Autowired
+	UserUpdateBuffer userUpdateBuffer;
+
+	@Autowired
+	UserSearchIndex userSearchIndex;
+
+	@Autowired
+	UserLoader userLoader;
+
+	@PersistenceContext
+	EntityManager entityManager;
+
 	@Override
+	@Transactional(readOnly = true)
 	public List<User> getAllUsers(final Integer page, final Integer size) {
-		List<UserEntity> allUsers = new ArrayList<>();
+		return getAllUserEntities(page, size).stream().map(UserServiceImpl::convertUserEntityToUser)
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public List<User> getAllUsers(final Integer page, final Integer size, final Set<UserField> fields) {
+		if (fields == null) {
+			return getAllUsers(page, size);
+		}
+
+		List<Tuple> rows = page == null || size == null ? userRepository.findFieldsBy(fields, SORT_BY_ID)
+				: userRepository.findFieldsBy(fields, PageRequest.of(page, size, SORT_BY_ID));
+		return rows.stream().map(row -> convertTupleToUser(row, fields)).collect(Collectors.toList());
+	}
 
+	@Override
+	@Transactional(readOnly = true)
+	public List<UserEntity> getAllUserEntities(final Integer page, final Integer size) {
 		if (page == null || size == null) {
-			allUsers = userRepository.findAll();
-		} else {
-			PageRequest request = PageRequest.of(page, size);
-			allUsers = userRepository.findAll(request).getContent();
+			return userRepository.findAll(SORT_BY_ID);
 		}
+		return userRepository.findAll(PageRequest.of(page, size, SORT_BY_ID)).getContent();
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public String getUsersVersionTag(final Integer page, final Integer size) {
+		List<UserVersion> versions = page == null || size == null ? userRepository.findVersionsBy(SORT_BY_ID)
+				: userRepository.findVersionsBy(PageRequest.of(page, size, SORT_BY_ID));
+		return VersionTag.of(versions, UserVersion::getId, UserVersion::getVersion, false);
+	}
 
-		return allUsers.stream().map(UserServiceImpl::convertUserEntityToUser).collect(Collectors.toList());
+	@Override
+	@Transactional(readOnly = true)
+	public UserSlice<User> getUsersAfter(final String cursor, final Integer limit) throws InvalidCursorException {
+		UserSlice<UserEntity> slice = getUserEntitiesAfter(cursor, limit);
+		return new UserSlice<>(slice.getUsers().stream().map(UserServiceImpl::convertUserEntityToUser)
+				.collect(Collectors.toList()), slice.getNextCursor());
 	}
 
 	@Override
+	@Transactional(readOnly = true)
+	public UserSlice<UserEntity> getUserEntitiesAfter(final String cursor, final Integer limit)
+			throws InvalidCursorException {
+		long afterId = cursor == null ? 0L : decodeCursor(cursor);
+		Slice<UserEntity> slice = userRepository.findByIdGreaterThanOrderByIdAsc(afterId,
+				PageRequest.of(0, sliceSize(limit)));
+		List<UserEntity> content = slice.getContent();
+		String nextCursor = null;
+		if (slice.hasNext() && !content.isEmpty()) {
+			nextCursor = encodeCursor(content.get(content.size() - 1).getId());
+		}
+
+		return new UserSlice<>(content, nextCursor);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public UserSlice<User> getUsersAfter(final String cursor, final Integer limit, final Set<UserField> fields)
+			throws InvalidCursorException {
+		if (fields == null) {
+			return getUsersAfter(cursor, limit);
+		}
+		long afterId = cursor == null ? 0L : decodeCursor(cursor);
+
+		Slice<Tuple> slice = userRepository.findFieldsByIdGreaterThanOrderByIdAsc(fields, afterId,
+				PageRequest.of(0, sliceSize(limit)));
+		List<Tuple> content = slice.getContent();
+		String nextCursor = null;
+		if (slice.hasNext() && !content.isEmpty()) {
+			nextCursor = encodeCursor(content.get(content.size() - 1).get(UserRepository.ID, Long.class));
+		}
+
+		return new UserSlice<>(content.stream().map(row -> convertTupleToUser(row, fields))
+				.collect(Collectors.toList()), nextCursor);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public String getUsersAfterVersionTag(final String cursor, final Integer limit) throws InvalidCursorException {
+		long afterId = cursor == null ? 0L : decodeCursor(cursor);
+		Slice<UserVersion> slice = userRepository.findVersionsByIdGreaterThanOrderByIdAsc(afterId,
+				PageRequest.of(0, sliceSize(limit)));
+		return VersionTag.of(slice.getContent(), UserVersion::getId, UserVersion::getVersion, slice.hasNext());
+	}
+
+	private static int sliceSize(final Integer limit) {
+		return limit == null ? DEFAULT_SLICE_SIZE : Math.min(Math.max(limit, 1), MAX_SLICE_SIZE);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public void exportUsers(final Consumer<UserEntity> consumer) {
+		try (Stream<UserEntity> userEntities = userRepository.streamAllByOrderByIdAsc()) {
+			userEntities.forEach(userEntity -> {
+				// Detach each row before it is written so the persistence context does not grow with the table
+				entityManager.detach(userEntity);
+				consumer.accept(userEntity);
+			});
+		}
+	}
+
+	/**
+	 * Not transactional: the load runs in its own transaction on the primary, so callers waiting
+	 * for a shared or batched load do not hold a connection meanwhile.
+	 */
+	@Override
+	@Cacheable(cacheNames = CacheConfig.USERS_CACHE, key = USER_CACHE_KEY, sync = true)
 	public User getUserById(final String id) throws UserNotFoundException {
-		Optional<UserEntity> userEntity = userRepository.findById(Long.parseLong(id));
+		Long userId = Long.parseLong(id);
+		Optional<User> buffered = userUpdateBuffer.pending(userId);
+		if (buffered.isPresent()) {
+			return buffered.get();
+		}
+
+		Optional<UserEntity> userEntity = userLoader.load(userId);
 		if (userEntity.isPresent()) {
 			return convertUserEntityToUser(userEntity.get());
 		}
@@ -47,40 +205,205 @@ public class UserServiceImpl implements UserService {
 		throw new UserNotFoundException("No user found with id: " + id);
 	}
 
+	/**
+	 * Read-write so that it runs on the primary, like the loads behind getUserById: a version read
+	 * from a lagging replica would validate a stale If-Match.
+	 */
 	@Override
-	public User createUser(@Valid final CreateUserRequest createUserRequest) {
-		UserEntity userEntity = new UserEntity(createUserRequest);
-		return convertUserEntityToUser(userRepository.save(userEntity));
+	@Transactional
+	public Long getUserVersion(final String id) throws UserNotFoundException {
+		Long userId = Long.parseLong(id);
+		if (userUpdateBuffer.pending(userId).isPresent()) {
+			// Changed, but the new version is only known once the buffered update is written
+			return null;
+		}
+		Cache cache = cacheManager.getCache(CacheConfig.USERS_CACHE);
+		User cachedUser = cache == null ? null : cache.get(userId, User.class);
+		if (cachedUser != null && cachedUser.getVersion() != null) {
+			return cachedUser.getVersion();
+		}
+
+		return userRepository.findVersionById(userId)
+				.orElseThrow(() -> new UserNotFoundException("No user found with id: " + id));
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public User getUserByUsername(final String username) throws UserNotFoundException {
+		return userRepository.findFirstByUsernameOrderByIdAsc(username).map(UserServiceImpl::convertUserEntityToUser)
+				.orElseThrow(() -> new UserNotFoundException("No user found with username: " + username));
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public User getUserByEmail(final String email) throws UserNotFoundException {
+		return userRepository.findFirstByEmailOrderByIdAsc(email).map(UserServiceImpl::convertUserEntityToUser)
+				.orElseThrow(() -> new UserNotFoundException("No user found with email: " + email));
+	}
+
+	/**
+	 * Top matches of the search index, read back in one query on the primary key. Users deleted
+	 * since the index was consulted are left out. Unavailable until the index has been built.
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public List<User> searchUsers(final String query, final Integer limit) throws SearchUnavailableException {
+		if (!userSearchIndex.isReady()) {
+			throw new SearchUnavailableException("The search index is still being built");
+		}
+		List<Long> ids = userSearchIndex.search(query,
+				limit == null ? DEFAULT_SEARCH_LIMIT : Math.min(Math.max(limit, 1), MAX_SEARCH_LIMIT));
+		if (ids.isEmpty()) {
+			return Collections.emptyList();
+		}
+		Map<Long, UserEntity> found = userRepository.findAllById(ids).stream()
+				.collect(Collectors.toMap(UserEntity::getId, Function.identity()));
+		return ids.stream().map(found::get).filter(Objects::nonNull).map(UserServiceImpl::convertUserEntityToUser)
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public CompletableFuture<User> createUser(@Valid final CreateUserRequest createUserRequest) {
+		return passwordService.hash(createUserRequest.getPassword()).thenApply(passwordHash -> indexed(
+				convertUserEntityToUser(userRepository.save(new UserEntity(createUserRequest, passwordHash)))));
+	}
+
+	@Override
+	public CompletableFuture<User> updateUser(final String id, @Valid final UpdateUserRequest updateUserRequest) {
+		return updateUser(id, updateUserRequest, null);
+	}
+
+	@Override
+	public CompletableFuture<User> updateUser(final String id, @Valid final UpdateUserRequest updateUserRequest,
+			final Long expectedVersion) {
+		Long userId = Long.parseLong(id);
+		if (userUpdateBuffer.isEnabled()) {
+			if (expectedVersion == null) {
+				return passwordService.hash(updateUserRequest.getPassword())
+						.thenCompose(passwordHash -> userUpdateBuffer.update(userId, updateUserRequest, passwordHash))
+						.thenApply(this::indexed);
+			}
+			// A conditional update has to see, and be ordered after, the updates buffered before it
+			if (userUpdateBuffer.pending(userId).isPresent()) {
+				userUpdateBuffer.flush();
+			}
+		}
+		return passwordService.hash(updateUserRequest.getPassword()).thenApply(passwordHash -> {
+			int updated = expectedVersion == null
+					? userRepository.updateById(userId, updateUserRequest.getEmail(), updateUserRequest.getName(),
+							passwordHash, updateUserRequest.getUsername())
+					: userRepository.updateByIdAndVersion(userId, expectedVersion, updateUserRequest.getEmail(),
+							updateUserRequest.getName(), passwordHash, updateUserRequest.getUsername());
+			if (updated == 0) {
+				if (expectedVersion != null && userRepository.existsById(userId)) {
+					throw new CompletionException(new PreconditionFailedException(
+							"User " + id + " is no longer at version " + expectedVersion));
+				}
+				throw new CompletionException(new UserNotFoundException("No user found with id: " + id));
+			}
+			// Evicted once the row is written, so a concurrent read cannot cache the old state again
+			evictCachedUser(userId);
+
+			// Every column was overwritten, so the new representation needs no read back; the new
+			// version is only known when the update was conditional
+			return indexed(new User(String.valueOf(userId), updateUserRequest.getEmail(), updateUserRequest.getName(),
+					updateUserRequest.getUsername(), expectedVersion == null ? null : expectedVersion + 1));
+		});
+	}
+
+	private User indexed(final User user) {
+		userSearchIndex.index(user);
+		return user;
 	}
 
 	@Override
-	public User updateUser(final String id, @Valid final UpdateUserRequest updateUserRequest)
+	public CompletableFuture<Boolean> verifyPassword(final String id, final String rawPassword)
 			throws UserNotFoundException {
-		Optional<UserEntity> userEntityOptional = userRepository.findById(Long.parseLong(id));
-		if (!userEntityOptional.isPresent()) {
-			throw new UserNotFoundException("No user found with id: " + id);
+		Long userId = Long.parseLong(id);
+		UserEntity userEntity = userRepository.findById(userId)
+				.orElseThrow(() -> new UserNotFoundException("No user found with id: " + id));
+		String storedPassword = userEntity.getPassword();
+		return passwordService.matches(rawPassword, storedPassword).thenApply(matched -> {
+			if (matched && passwordService.needsRehash(storedPassword)) {
+				rehashPassword(userId, rawPassword, storedPassword);
+			}
+			return matched;
+		});
+	}
+
+	/**
+	 * Upgrades a legacy or weaker hash in the background; the caller does not wait for it and a
+	 * rejected or failed rehash is simply retried on the next successful verification.
+	 */
+	private void rehashPassword(final Long userId, final String rawPassword, final String storedPassword) {
+		try {
+			passwordService.hash(rawPassword)
+					.thenAccept(passwordHash -> userRepository.updatePasswordById(userId, storedPassword, passwordHash));
+		} catch (TaskRejectedException e) {
+			// Hashing pool is saturated, keep the current hash for now
 		}
+	}
 
-		UserEntity userEntity = userEntityOptional.get();
-		userEntity = userEntity.merge(updateUserRequest);
-		
-		return convertUserEntityToUser(userRepository.save(userEntity));
+	private void evictCachedUser(final Long userId) {
+		Cache cache = cacheManager.getCache(CacheConfig.USERS_CACHE);
+		if (cache != null) {
+			cache.evict(userId);
+		}
 	}
 
 	@Override
+	@CacheEvict(cacheNames = CacheConfig.USERS_CACHE, key = USER_CACHE_KEY)
 	public User deleteUser(final String id) throws UserNotFoundException {
-		Optional<UserEntity> userEntityOptional = userRepository.findById(Long.parseLong(id));
-		if (!userEntityOptional.isPresent()) {
+		Long userId = Long.parseLong(id);
+		userUpdateBuffer.discard(userId);
+		Optional<UserEntity> userEntityOptional = userRepository.findById(userId);
+		if (!userEntityOptional.isPresent() || userRepository.removeById(userId) == 0) {
 			throw new UserNotFoundException("No user found with id: " + id);
 		}
+		userSearchIndex.remove(userId);
 
-		UserEntity userEntity = userEntityOptional.get();
-		userRepository.delete(userEntity);
-		return convertUserEntityToUser(userEntity);
+		return convertUserEntityToUser(userEntityOptional.get());
 	}
 
-	private static User convertUserEntityToUser(UserEntity userEntity) {
+	@Override
+	@CacheEvict(cacheNames = CacheConfig.USERS_CACHE, key = USER_CACHE_KEY)
+	public void deleteUserById(final String id) throws UserNotFoundException {
+		Long userId = Long.parseLong(id);
+		userUpdateBuffer.discard(userId);
+		if (userRepository.removeById(userId) == 0) {
+			throw new UserNotFoundException("No user found with id: " + id);
+		}
+		userSearchIndex.remove(userId);
+	}
+
+	static String encodeCursor(final long lastId) {
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString(Long.toString(lastId).getBytes(StandardCharsets.UTF_8));
+	}
+
+	static long decodeCursor(final String cursor) throws InvalidCursorException {
+		try {
+			return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+		} catch (IllegalArgumentException e) {
+			throw new InvalidCursorException("Invalid cursor: " + cursor);
+		}
+	}
+
+	static User convertUserEntityToUser(UserEntity userEntity) {
 		return new User(String.valueOf(userEntity.getId()), userEntity.getEmail(), userEntity.getName(),
-				userEntity.getPassword(), userEntity.getUsername());
+				userEntity.getUsername(), userEntity.getVersion());
+	}
+
+	/**
+	 * Fields that were not selected stay null and are left out of the JSON.
+	 */
+	static User convertTupleToUser(Tuple row, Set<UserField> fields) {
+		return new User(String.valueOf(row.get(UserRepository.ID, Long.class)), field(row, fields, UserField.EMAIL),
+				field(row, fields, UserField.NAME), field(row, fields, UserField.USERNAME),
+				row.get(UserRepository.VERSION, Long.class));
+	}
+
+	private static String field(Tuple row, Set<UserField> fields, UserField field) {
+		return fields.contains(field) ? row.get(field.getAttribute(), String.class) : null;
 	}
 }
@@ -0,0 +1,20 @@
+package com.nilotpal.api.userapi.service;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.stereotype.Service;
+
+import com.nilotpal.api.userapi.model.UpdateUserRequest;
+import com.nilotpal.api.userapi.model.User;
+
+@Service
+public interface UserUpdateBuffer {
+	boolean isEnabled();
+	CompletableFuture<User> update(final Long id, final UpdateUserRequest updateUserRequest, final String passwordHash);
+	Optional<User> pending(final Long id);
+	void discard(final Long id);
+	void flush();
+	void flush(final Collection<Long> ids);
+}
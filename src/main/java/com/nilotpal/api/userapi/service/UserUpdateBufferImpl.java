@@ -0,0 +1,286 @@
+package com.nilotpal.api.userapi.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nilotpal.api.userapi.config.CacheConfig;
+import com.nilotpal.api.userapi.exceptions.UserNotFoundException;
+import com.nilotpal.api.userapi.model.UpdateUserRequest;
+import com.nilotpal.api.userapi.model.User;
+import com.nilotpal.api.userapi.repository.UserRepository;
+
+/**
+ * Write-behind buffer for unconditional user updates (user-api.write-behind.enabled). Updates to
+ * the same user are coalesced, last write wins, and written every flush-interval-ms, or as soon
+ * as max-batch-size users are waiting, in one transaction per batch.
+ *
+ * Durability: with wait-for-flush (the default) an update is only acknowledged once the batch
+ * holding it has committed, so nothing acknowledged is lost; coalescing then merges updates that
+ * arrive within one flush interval. Without it updates are acknowledged on acceptance and those
+ * still buffered when the process dies are lost. A graceful shutdown flushes the buffer.
+ *
+ * Reads of a single user see buffered updates (without a version, as the new one is not known
+ * until the write); lists and lookups by username or email read the database.
+ */
+@Service
+public class UserUpdateBufferImpl implements UserUpdateBuffer {
+	private static final Logger LOGGER = LoggerFactory.getLogger(UserUpdateBufferImpl.class);
+
+	private final ConcurrentHashMap<Long, PendingUpdate> pending = new ConcurrentHashMap<>();
+	// Taken from pending but not committed yet, still visible to reads
+	private final ConcurrentHashMap<Long, PendingUpdate> flushing = new ConcurrentHashMap<>();
+	private ScheduledExecutorService flusher;
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	CacheManager cacheManager;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Value("${user-api.write-behind.enabled:false}")
+	boolean enabled;
+
+	@Value("${user-api.write-behind.flush-interval-ms:20}")
+	long flushIntervalMillis;
+
+	@Value("${user-api.write-behind.max-batch-size:100}")
+	int maxBatchSize;
+
+	@Value("${user-api.write-behind.wait-for-flush:true}")
+	boolean waitForFlush;
+
+	@PostConstruct
+	void start() {
+		if (enabled) {
+			flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "user-write-behind");
+				thread.setDaemon(true);
+				return thread;
+			});
+			flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@PreDestroy
+	void stop() throws InterruptedException {
+		if (flusher != null) {
+			flusher.shutdown();
+			flusher.awaitTermination(10, TimeUnit.SECONDS);
+		}
+		flush();
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public CompletableFuture<User> update(final Long id, final UpdateUserRequest updateUserRequest,
+			final String passwordHash) {
+		CompletableFuture<User> written = new CompletableFuture<>();
+		pending.compute(id, (key, previous) -> new PendingUpdate(id, updateUserRequest, passwordHash, previous,
+				waitForFlush ? written : null));
+		// A cached copy would hide the buffered update from reads
+		evictCachedUser(id);
+		if (pending.size() >= maxBatchSize && flusher != null) {
+			flusher.execute(this::flushQuietly);
+		}
+		if (!waitForFlush) {
+			written.complete(new User(String.valueOf(id), updateUserRequest.getEmail(), updateUserRequest.getName(),
+					updateUserRequest.getUsername(), null));
+		}
+		return written;
+	}
+
+	@Override
+	public Optional<User> pending(final Long id) {
+		PendingUpdate update = pending.get(id);
+		if (update == null) {
+			update = flushing.get(id);
+		}
+		return update == null ? Optional.empty() : Optional.of(update.toUser());
+	}
+
+	@Override
+	public void discard(final Long id) {
+		PendingUpdate update = pending.remove(id);
+		if (update != null) {
+			update.fail(new UserNotFoundException("No user found with id: " + id));
+		}
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (RuntimeException e) {
+			LOGGER.error("Flushing buffered user updates failed", e);
+		}
+	}
+
+	@Override
+	public synchronized void flush() {
+		while (!pending.isEmpty()) {
+			List<PendingUpdate> batch = new ArrayList<>(Math.min(pending.size(), maxBatchSize));
+			for (Long id : pending.keySet()) {
+				if (batch.size() == maxBatchSize) {
+					break;
+				}
+				PendingUpdate update = take(id);
+				if (update != null) {
+					batch.add(update);
+				}
+			}
+			write(batch);
+		}
+	}
+
+	/**
+	 * Writes the buffered updates of just these users, for a batch that is about to change them and
+	 * must not be overwritten by them afterwards. Holds the flush lock, so an update the background
+	 * flush is writing at the time is committed first.
+	 */
+	@Override
+	public synchronized void flush(final Collection<Long> ids) {
+		List<PendingUpdate> batch = new ArrayList<>();
+		for (Long id : ids) {
+			PendingUpdate update = take(id);
+			if (update != null) {
+				batch.add(update);
+			}
+			if (batch.size() == maxBatchSize) {
+				write(batch);
+				batch = new ArrayList<>();
+			}
+		}
+		if (!batch.isEmpty()) {
+			write(batch);
+		}
+	}
+
+	/**
+	 * Moves an update from pending to flushing, so a read in between sees it in one or the other.
+	 */
+	private PendingUpdate take(final Long id) {
+		PendingUpdate update;
+		do {
+			update = pending.get(id);
+			if (update == null) {
+				return null;
+			}
+			flushing.put(id, update);
+		} while (!pending.remove(id, update));
+		return update;
+	}
+
+	private void write(final List<PendingUpdate> batch) {
+		try {
+			List<Integer> updated = new TransactionTemplate(transactionManager).execute(status -> {
+				List<Integer> rows = new ArrayList<>(batch.size());
+				for (PendingUpdate update : batch) {
+					rows.add(userRepository.updateById(update.id, update.email, update.name, update.password,
+							update.username));
+				}
+				return rows;
+			});
+			for (int i = 0; i < batch.size(); i++) {
+				PendingUpdate update = batch.get(i);
+				release(update);
+				if (updated.get(i) == 0) {
+					update.fail(new UserNotFoundException("No user found with id: " + update.id));
+				} else {
+					update.complete();
+				}
+			}
+		} catch (RuntimeException e) {
+			if (batch.size() == 1) {
+				release(batch.get(0));
+				batch.get(0).fail(e);
+				return;
+			}
+			// One failing update rolls back the whole batch, so write them one by one to isolate it
+			for (PendingUpdate update : batch) {
+				write(Collections.singletonList(update));
+			}
+		}
+	}
+
+	/**
+	 * Once written, reads go back to the database. Evicted after the update leaves flushing, so a
+	 * copy cached from the buffer in the meantime does not outlive it.
+	 */
+	private void release(final PendingUpdate update) {
+		flushing.remove(update.id, update);
+		evictCachedUser(update.id);
+	}
+
+	private void evictCachedUser(final Long id) {
+		Cache cache = cacheManager.getCache(CacheConfig.USERS_CACHE);
+		if (cache != null) {
+			cache.evict(id);
+		}
+	}
+
+	private static final class PendingUpdate {
+		private final Long id;
+		private final String email;
+		private final String name;
+		private final String password;
+		private final String username;
+		private final List<CompletableFuture<User>> waiters;
+
+		PendingUpdate(final Long id, final UpdateUserRequest updateUserRequest, final String passwordHash,
+				final PendingUpdate previous, final CompletableFuture<User> waiter) {
+			this.id = id;
+			this.email = updateUserRequest.getEmail();
+			this.name = updateUserRequest.getName();
+			this.password = passwordHash;
+			this.username = updateUserRequest.getUsername();
+			this.waiters = previous == null ? new ArrayList<>(1) : new ArrayList<>(previous.waiters);
+			if (waiter != null) {
+				waiters.add(waiter);
+			}
+		}
+
+		User toUser() {
+			return new User(String.valueOf(id), email, name, username, null);
+		}
+
+		void complete() {
+			// Every waiter gets the state that was written, which is the last update
+			User written = toUser();
+			waiters.forEach(waiter -> waiter.complete(written));
+		}
+
+		void fail(final Exception cause) {
+			CompletionException failure = new CompletionException(cause);
+			waiters.forEach(waiter -> waiter.completeExceptionally(failure));
+		}
+	}
+}
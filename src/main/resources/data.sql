@@ -1,5 +1,7 @@
 drop table user if exists;
-create table user (id bigint not null, email varchar(255), name varchar(255), password varchar(255), username varchar(255), primary key (id));
+create table user (id bigint not null, email varchar(255), name varchar(255), password varchar(255), username varchar(255), version bigint default 0 not null, primary key (id));
+create index idx_user_username on user (username);
+create index idx_user_email on user (email);
 insert into user (id, email, name, password, username) values (10001, 'a@test.com', 'User1', 'password', 'username1');
 insert into user (id, email, name, password, username) values (10002, 'b@test.com', 'User2', 'password', 'username2');
 insert into user (id, email, name, password, username) values (10003, 'c@test.com', 'User3', 'password', 'username3');
@@ -0,0 +1,105 @@
+package com.nilotpal.api.userapi.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AdaptiveConcurrencyLimitTest {
+	private final AdaptiveConcurrencyLimit concurrencyLimit = new AdaptiveConcurrencyLimit(true, 10, 4, 100, 2.0d);
+
+	private void acquire(int permits) {
+		for (int i = 0; i < permits; i++) {
+			assertTrue(concurrencyLimit.tryAcquire());
+		}
+	}
+
+	@Test
+	public void testTryAcquire_RejectsOverLimit() {
+		acquire(10);
+		assertFalse(concurrencyLimit.tryAcquire());
+
+		concurrencyLimit.release();
+		assertTrue(concurrencyLimit.tryAcquire());
+	}
+
+	@Test
+	public void testRecordLatency_GrowsWhileLatencyHoldsAndLimitIsUsed() {
+		acquire(10);
+		for (int i = 0; i < 20; i++) {
+			concurrencyLimit.recordLatency("findById", 1_000_000L);
+		}
+
+		assertTrue(concurrencyLimit.getLimit() > 10);
+		assertTrue(concurrencyLimit.tryAcquire());
+	}
+
+	@Test
+	public void testRecordLatency_NoGrowthWhileMostlyIdle() {
+		for (int i = 0; i < 20; i++) {
+			concurrencyLimit.recordLatency("findById", 1_000_000L);
+		}
+
+		assertEquals(10, concurrencyLimit.getLimit());
+	}
+
+	@Test
+	public void testRecordLatency_ShrinksWhenLatencyRisesButNotBelowMin() {
+		for (int i = 0; i < 20; i++) {
+			concurrencyLimit.recordLatency("findById", 1_000_000L);
+		}
+		for (int i = 0; i < 10; i++) {
+			concurrencyLimit.recordLatency("findById", 50_000_000L);
+		}
+		int shrunk = concurrencyLimit.getLimit();
+		assertTrue(shrunk < 10);
+
+		for (int i = 0; i < 100; i++) {
+			concurrencyLimit.recordLatency("findById", 50_000_000L);
+		}
+		assertEquals(4, concurrencyLimit.getLimit());
+	}
+
+	@Test
+	public void testRecordLatency_BulkOperationsLeftOut() {
+		for (int i = 0; i < 20; i++) {
+			concurrencyLimit.recordLatency("findById", 1_000_000L);
+		}
+		for (int i = 0; i < 100; i++) {
+			concurrencyLimit.recordLatency("findAll", 500_000_000L);
+			concurrencyLimit.recordLatency("streamAllByOrderByIdAsc", 5_000_000_000L);
+		}
+
+		assertEquals(10, concurrencyLimit.getLimit());
+	}
+
+	@Test
+	public void testRecordLatency_ConcurrentSamplesKeepLimitInBounds() throws Exception {
+		acquire(10);
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			long latency = (t + 1) * 1_000_000L;
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 10_000; i++) {
+					concurrencyLimit.recordLatency("findById", latency);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertTrue(concurrencyLimit.getLimit() >= 4);
+		assertTrue(concurrencyLimit.getLimit() <= 100);
+	}
+
+	@Test
+	public void testTryAcquire_DisabledNeverRejects() {
+		AdaptiveConcurrencyLimit disabled = new AdaptiveConcurrencyLimit(false, 10, 4, 100, 2.0d);
+		for (int i = 0; i < 50; i++) {
+			assertTrue(disabled.tryAcquire());
+		}
+	}
+}
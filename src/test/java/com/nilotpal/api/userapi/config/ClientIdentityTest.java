@@ -0,0 +1,34 @@
+package com.nilotpal.api.userapi.config;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+public class ClientIdentityTest {
+	private static MockHttpServletRequest request(String apiKey) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users");
+		request.setRemoteAddr("10.0.0.7");
+		if (apiKey != null) {
+			request.addHeader("X-API-Key", apiKey);
+		}
+		return request;
+	}
+
+	@Test
+	public void testOf_AddressUnlessKeyIsKnown() {
+		ClientIdentity clientIdentity = new ClientIdentity("X-API-Key", false, new String[] { "known" });
+
+		assertEquals("key:known", clientIdentity.of(request("known")));
+		assertEquals("address:10.0.0.7", clientIdentity.of(request("made-up")));
+		assertEquals("address:10.0.0.7", clientIdentity.of(request(null)));
+	}
+
+	@Test
+	public void testOf_AnyKeyWhenHeaderTrusted() {
+		ClientIdentity clientIdentity = new ClientIdentity("X-API-Key", true, new String[0]);
+
+		assertEquals("key:set-by-gateway", clientIdentity.of(request("set-by-gateway")));
+		assertEquals("address:10.0.0.7", clientIdentity.of(request(" ")));
+	}
+}
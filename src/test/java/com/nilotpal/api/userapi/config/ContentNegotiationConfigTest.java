@@ -0,0 +1,55 @@
+package com.nilotpal.api.userapi.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import com.nilotpal.api.userapi.model.User;
+
+public class ContentNegotiationConfigTest {
+	private final WebApplicationContextRunner contextRunner = new WebApplicationContextRunner()
+		.withConfiguration(AutoConfigurations.of(JacksonAutoConfiguration.class,
+			HttpMessageConvertersAutoConfiguration.class, WebMvcAutoConfiguration.class))
+		.withUserConfiguration(ContentNegotiationConfig.class);
+
+	@Test
+	public void testConverters_BinaryFormatsWrittenWithBootCustomizedMappers() {
+		contextRunner.run(context -> {
+			List<HttpMessageConverter<?>> converters = context.getBean(RequestMappingHandlerAdapter.class)
+				.getMessageConverters();
+			assertBinaryConverter(converters, MappingJackson2SmileHttpMessageConverter.class);
+			assertBinaryConverter(converters, MappingJackson2CborHttpMessageConverter.class);
+		});
+	}
+
+	private static void assertBinaryConverter(List<HttpMessageConverter<?>> converters,
+		Class<? extends AbstractJackson2HttpMessageConverter> type) {
+		List<HttpMessageConverter<?>> ofType = converters.stream().filter(type::isInstance)
+			.collect(Collectors.toList());
+		assertEquals(1, ofType.size());
+		AbstractJackson2HttpMessageConverter converter = (AbstractJackson2HttpMessageConverter) ofType.get(0);
+		// The first converter able to write the media type is the one used
+		HttpMessageConverter<?> writer = converters.stream()
+			.filter(candidate -> candidate.canWrite(User.class, converter.getSupportedMediaTypes().get(0)))
+			.findFirst().get();
+		assertEquals(converter, writer);
+		// Spring's default Smile and CBOR mappers keep dates as timestamps; Boot's customizer turns it off
+		assertFalse(converter.getObjectMapper().isEnabled(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS));
+	}
+}
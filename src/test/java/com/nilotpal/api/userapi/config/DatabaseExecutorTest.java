@@ -0,0 +1,65 @@
+package com.nilotpal.api.userapi.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.springframework.core.task.TaskRejectedException;
+
+import com.nilotpal.api.userapi.exceptions.UserNotFoundException;
+
+public class DatabaseExecutorTest {
+
+	@Test
+	public void testSupply_RunsOnDatabaseThread() {
+		DatabaseExecutor databaseExecutor = new DatabaseExecutor(true, 1, 1);
+		try {
+			assertTrue(databaseExecutor.supply(() -> Thread.currentThread().getName()).join().startsWith("db-"));
+		} finally {
+			databaseExecutor.shutdown();
+		}
+	}
+
+	@Test
+	public void testSupply_RejectsWhenQueueIsFull() throws Exception {
+		DatabaseExecutor databaseExecutor = new DatabaseExecutor(true, 1, 1);
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			CompletableFuture<Boolean> running = databaseExecutor.supply(() -> {
+				release.await();
+				return true;
+			});
+			CompletableFuture<Boolean> queued = databaseExecutor.supply(() -> true);
+			try {
+				databaseExecutor.supply(() -> true);
+				throw new AssertionError("Expected the third call to be rejected");
+			} catch (TaskRejectedException e) {
+				// The worker is busy and the queue holds one call
+			}
+			release.countDown();
+			assertTrue(running.join() && queued.join());
+		} finally {
+			release.countDown();
+			databaseExecutor.shutdown();
+		}
+	}
+
+	@Test
+	public void testSupply_WrapsCheckedExceptions() {
+		DatabaseExecutor databaseExecutor = new DatabaseExecutor(false, 1, 1);
+		String caller = Thread.currentThread().getName();
+		assertEquals(caller, databaseExecutor.supply(() -> Thread.currentThread().getName()).join());
+		try {
+			databaseExecutor.supply(() -> {
+				throw new UserNotFoundException("No user found with id: 15");
+			}).join();
+			throw new AssertionError("Expected a CompletionException");
+		} catch (CompletionException e) {
+			assertTrue(e.getCause() instanceof UserNotFoundException);
+		}
+	}
+}
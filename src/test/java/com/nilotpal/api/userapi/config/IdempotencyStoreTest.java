@@ -0,0 +1,123 @@
+package com.nilotpal.api.userapi.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nilotpal.api.userapi.exceptions.IdempotencyKeyReusedException;
+import com.nilotpal.api.userapi.model.CreateUserRequest;
+
+public class IdempotencyStoreTest {
+	private final ClientIdentity clientIdentity = new ClientIdentity("X-API-Key", false, new String[0]);
+	private final IdempotencyStore idempotencyStore = new IdempotencyStore(new ObjectMapper(), clientIdentity, true, 100,
+		60);
+	private final MockHttpServletRequest client = client("10.0.0.1");
+	private final CreateUserRequest request = new CreateUserRequest("test4@testing.com", "TestUser4", "password",
+		"username4");
+	private final AtomicInteger calls = new AtomicInteger();
+
+	private static MockHttpServletRequest client(String address) {
+		MockHttpServletRequest httpRequest = new MockHttpServletRequest("PUT", "/users");
+		httpRequest.setRemoteAddr(address);
+		return httpRequest;
+	}
+
+	private CompletableFuture<ResponseEntity<String>> create() {
+		return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.CREATED)
+			.header("Location", "/users/" + calls.incrementAndGet()).body("created " + calls.get()));
+	}
+
+	@Test
+	public void testExecute_RetryAnsweredWithOriginalResponse() throws Exception {
+		ResponseEntity<String> first = idempotencyStore.execute(client, "key-1", "PUT /users", request, this::create).join();
+		ResponseEntity<String> retry = idempotencyStore.execute(client, "key-1", "PUT /users", request, this::create).join();
+
+		assertEquals(1, calls.get());
+		assertEquals(HttpStatus.CREATED, retry.getStatusCode());
+		assertEquals("created 1", retry.getBody());
+		assertEquals("/users/1", retry.getHeaders().getFirst("Location"));
+		assertEquals("true", retry.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+		assertNull(first.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+	}
+
+	@Test
+	public void testExecute_ConcurrentDuplicatesShareOneExecution() throws Exception {
+		CompletableFuture<ResponseEntity<String>> inFlight = new CompletableFuture<>();
+		CompletableFuture<ResponseEntity<String>> first = idempotencyStore.execute(client, "key-1", "PUT /users", request,
+			() -> inFlight);
+		CompletableFuture<ResponseEntity<String>> duplicate = idempotencyStore.execute(client, "key-1", "PUT /users", request,
+			this::create);
+		assertFalse(duplicate.isDone());
+
+		inFlight.complete(ResponseEntity.ok("created"));
+
+		assertEquals("created", first.join().getBody());
+		assertEquals("created", duplicate.join().getBody());
+		assertEquals(0, calls.get());
+	}
+
+	@Test(expected = IdempotencyKeyReusedException.class)
+	public void testExecute_KeyReusedForDifferentRequest() throws Exception {
+		idempotencyStore.execute(client, "key-1", "PUT /users", request, this::create);
+		idempotencyStore.execute(client, "key-1", "PUT /users",
+			new CreateUserRequest("test4@testing.com", "TestUser4", "other-password", "username4"), this::create);
+	}
+
+	@Test
+	public void testExecute_FailuresAreNotRemembered() throws Exception {
+		CompletableFuture<ResponseEntity<String>> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new IllegalStateException("database down"));
+		assertTrue(idempotencyStore.execute(client, "key-1", "PUT /users", request, () -> failed).isCompletedExceptionally());
+
+		assertEquals("created 1", idempotencyStore.execute(client, "key-1", "PUT /users", request, this::create).join().getBody());
+	}
+
+	@Test
+	public void testExecute_WithoutKeyOrDisabledAlwaysRuns() throws Exception {
+		idempotencyStore.execute(client, null, "PUT /users", request, this::create);
+		idempotencyStore.execute(client, null, "PUT /users", request, this::create);
+		IdempotencyStore disabled = new IdempotencyStore(new ObjectMapper(), clientIdentity, false, 100, 60);
+		disabled.execute(client, "key-1", "PUT /users", request, this::create);
+		disabled.execute(client, "key-1", "PUT /users", request, this::create);
+
+		assertEquals(4, calls.get());
+	}
+
+	@Test
+	public void testExecute_KeysBelongToTheirClient() throws Exception {
+		idempotencyStore.execute(client, "key-1", "PUT /users", request, this::create).join();
+		ResponseEntity<String> other = idempotencyStore.execute(client("10.0.0.2"), "key-1", "PUT /users",
+			new CreateUserRequest("test5@testing.com", "TestUser5", "password", "username5"), this::create).join();
+
+		assertEquals(2, calls.get());
+		assertEquals("created 2", other.getBody());
+		assertNull(other.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+	}
+
+	@Test
+	public void testExecute_RunningExecutionsOutliveEviction() throws Exception {
+		IdempotencyStore oneKey = new IdempotencyStore(new ObjectMapper(), clientIdentity, true, 1, 60);
+		CompletableFuture<ResponseEntity<String>> inFlight = new CompletableFuture<>();
+		oneKey.execute(client, "key-1", "PUT /users", request, () -> inFlight);
+		for (int i = 0; i < 20; i++) {
+			oneKey.execute(client, "other-" + i, "PUT /users", request, this::create).join();
+		}
+
+		CompletableFuture<ResponseEntity<String>> duplicate = oneKey.execute(client, "key-1", "PUT /users", request,
+			this::create);
+		assertFalse(duplicate.isDone());
+		inFlight.complete(ResponseEntity.ok("created"));
+		assertEquals("created", duplicate.join().getBody());
+		assertEquals(20, calls.get());
+	}
+}
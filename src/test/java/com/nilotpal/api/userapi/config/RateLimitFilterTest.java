@@ -0,0 +1,138 @@
+package com.nilotpal.api.userapi.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class RateLimitFilterTest {
+	private final AdaptiveConcurrencyLimit concurrencyLimit = new AdaptiveConcurrencyLimit(true, 10, 1, 100, 2.0d);
+	private final ClientIdentity clientIdentity = new ClientIdentity("X-API-Key", false,
+		new String[] { "list-client", "first", "second" });
+	// 10 tokens a second, 5 at most; lists cost 3, cursor pages 1 per 10 rows
+	private final RateLimitFilter filter = new RateLimitFilter(Jackson2ObjectMapperBuilder.json().build(),
+		concurrencyLimit, clientIdentity, true, 10.0d, 5, 3, 1, 10, 1000L);
+
+	private MockHttpServletResponse perform(String method, String path, String apiKey) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+		if (apiKey != null) {
+			request.addHeader("X-API-Key", apiKey);
+		}
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, new MockFilterChain());
+		return response;
+	}
+
+	@Test
+	public void testTryAcquire_RefillsOverTime() {
+		long now = 0L;
+		assertEquals(0L, filter.tryAcquire("client", 5, now));
+		long waitNanos = filter.tryAcquire("client", 1, now);
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(100L), waitNanos);
+
+		assertEquals(0L, filter.tryAcquire("client", 1, now + waitNanos));
+		assertTrue(filter.tryAcquire("client", 1, now + waitNanos) > 0L);
+		assertEquals(0L, filter.tryAcquire("client", 5, now + TimeUnit.SECONDS.toNanos(1L)));
+	}
+
+	@Test
+	public void testFilter_ListsCostMoreThanPointReads() throws Exception {
+		assertEquals(200, perform("GET", "/users", "list-client").getStatus());
+		MockHttpServletResponse rejected = perform("GET", "/users", "list-client");
+		assertEquals(429, rejected.getStatus());
+		assertEquals("1", rejected.getHeader("Retry-After"));
+		assertTrue(rejected.getContentAsString().contains("Rate limit exceeded"));
+
+		assertEquals(200, perform("GET", "/users/10001", "list-client").getStatus());
+		assertEquals(200, perform("GET", "/users/10001", "list-client").getStatus());
+		assertEquals(429, perform("GET", "/users/10001", "list-client").getStatus());
+	}
+
+	@Test
+	public void testFilter_CreatingUsersTakesPointCost() throws Exception {
+		for (int i = 0; i < 5; i++) {
+			assertEquals(200, perform("PUT", "/users", "first").getStatus());
+		}
+		assertEquals(429, perform("PUT", "/users", "first").getStatus());
+	}
+
+	@Test
+	public void testCostOf_CursorPagesTakePointCostPerPageRows() {
+		assertEquals(3, filter.costOf(new MockHttpServletRequest("GET", "/users")));
+		assertEquals(3, filter.costOf(new MockHttpServletRequest("GET", "/reactive/users")));
+		assertEquals(3, filter.costOf(new MockHttpServletRequest("POST", "/users/batch/delete")));
+		assertEquals(1, filter.costOf(new MockHttpServletRequest("PUT", "/users")));
+		assertEquals(1, filter.costOf(new MockHttpServletRequest("POST", "/users/10001")));
+
+		MockHttpServletRequest firstPage = new MockHttpServletRequest("GET", "/users");
+		firstPage.setParameter("after", "cursor");
+		assertEquals(1, filter.costOf(firstPage));
+		MockHttpServletRequest smallPage = new MockHttpServletRequest("GET", "/users");
+		smallPage.setParameter("limit", "10");
+		assertEquals(1, filter.costOf(smallPage));
+		MockHttpServletRequest largerPage = new MockHttpServletRequest("GET", "/reactive/users");
+		largerPage.setParameter("limit", "11");
+		assertEquals(2, filter.costOf(largerPage));
+		MockHttpServletRequest hugePage = new MockHttpServletRequest("GET", "/users");
+		hugePage.setParameter("limit", "1000000");
+		assertEquals(3, filter.costOf(hugePage));
+	}
+
+	@Test
+	public void testFilter_ClientsHaveTheirOwnBuckets() throws Exception {
+		for (int i = 0; i < 5; i++) {
+			assertEquals(200, perform("GET", "/users/10001", "first").getStatus());
+		}
+		assertEquals(429, perform("GET", "/users/10001", "first").getStatus());
+		assertEquals(200, perform("GET", "/users/10001", "second").getStatus());
+		assertEquals(200, perform("GET", "/users/10001", null).getStatus());
+	}
+
+	@Test
+	public void testFilter_UnknownKeysShareTheirAddressBucket() throws Exception {
+		for (int i = 0; i < 5; i++) {
+			assertEquals(200, perform("GET", "/users/10001", "made-up-" + i).getStatus());
+		}
+		assertEquals(429, perform("GET", "/users/10001", "made-up-5").getStatus());
+		assertEquals(429, perform("GET", "/users/10001", null).getStatus());
+		assertEquals(200, perform("GET", "/users/10001", "first").getStatus());
+	}
+
+	@Test
+	public void testFilter_OtherPathsNotLimited() throws Exception {
+		for (int i = 0; i < 10; i++) {
+			assertEquals(200, perform("GET", "/actuator/health", "client").getStatus());
+		}
+	}
+
+	@Test
+	public void testFilter_ShedsOverConcurrencyLimitAndReturnsPermits() throws Exception {
+		RateLimitFilter unlimitedRate = new RateLimitFilter(Jackson2ObjectMapperBuilder.json().build(),
+			concurrencyLimit, clientIdentity, false, 10.0d, 5, 3, 1, 10, 1000L);
+		for (int i = 0; i < 10; i++) {
+			assertTrue(concurrencyLimit.tryAcquire());
+		}
+		MockHttpServletResponse shed = new MockHttpServletResponse();
+		unlimitedRate.doFilter(new MockHttpServletRequest("GET", "/users/10001"), shed, new MockFilterChain());
+		assertEquals(503, shed.getStatus());
+		assertNotNull(shed.getHeader("Retry-After"));
+
+		concurrencyLimit.release();
+		MockHttpServletResponse served = new MockHttpServletResponse();
+		unlimitedRate.doFilter(new MockHttpServletRequest("GET", "/users/10001"), served, new MockFilterChain());
+		assertEquals(200, served.getStatus());
+		assertNull(served.getHeader("Retry-After"));
+		// The permit of the finished request is back
+		assertTrue(concurrencyLimit.tryAcquire());
+		assertFalse(concurrencyLimit.tryAcquire());
+	}
+}
@@ -0,0 +1,101 @@
+package com.nilotpal.api.userapi.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.nilotpal.api.userapi.exceptions.UserNotFoundException;
+import com.nilotpal.api.userapi.model.CreateUserRequest;
+import com.nilotpal.api.userapi.service.UserService;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Two H2 databases: the primary is initialised as usual, the replica by replica.sql with a user of
+ * its own and a replica_lag table standing in for the replication status.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = { "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+		ReplicaRoutingConfig.REPLICA_URLS + "=" + ReplicaRoutingDataSourceTest.REPLICA_URL,
+		"user-api.datasource.replica-lag-query=select seconds from replica_lag",
+		"user-api.datasource.replica-lag-check-interval-ms=60000" })
+public class ReplicaRoutingDataSourceTest {
+	static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;INIT=RUNSCRIPT FROM 'classpath:replica.sql'";
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private ReplicaRoutingDataSource replicaRoutingDataSource;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+	@After
+	public void tearDown() {
+		replica.update("update replica_lag set seconds = 0");
+		replicaRoutingDataSource.checkLag();
+	}
+
+	@Test
+	public void testReadOnlyTransactions_ReadFromReplica() throws Exception {
+		assertEquals("Replica1", userService.getUserByUsername("replica1").getName());
+		assertEquals(1, userService.getAllUsers(null, null).size());
+
+		assertTrue(meterRegistry.get(ReplicaRoutingDataSource.ROUTED).tag("target", "replica-0")
+			.tag("transaction", "read-only").counter().count() >= 2.0);
+		assertEquals(0.0, meterRegistry.get(ReplicaRoutingDataSource.REPLICA_LAG).tag("target", "replica-0").gauge()
+			.value(), 0.0);
+	}
+
+	@Test
+	public void testWrites_GoToPrimary() throws Exception {
+		userService.createUser(new CreateUserRequest("written@test.com", "Written", "password", "written")).join();
+
+		JdbcTemplate primary = new JdbcTemplate(replicaRoutingDataSource.unwrap(HikariDataSource.class));
+		assertEquals(Integer.valueOf(1),
+			primary.queryForObject("select count(*) from user where username = 'written'", Integer.class));
+		assertEquals(Integer.valueOf(0),
+			replica.queryForObject("select count(*) from user where username = 'written'", Integer.class));
+	}
+
+	@Test
+	public void testReadsById_StayOnPrimary() throws Exception {
+		// 20001 only exists on the replica
+		try {
+			userService.getUserById("20001");
+			fail("Read by id from the replica");
+		} catch (UserNotFoundException e) {
+			// expected
+		}
+		try {
+			userService.getUserVersion("20001");
+			fail("Read the version from the replica");
+		} catch (UserNotFoundException e) {
+			// expected
+		}
+		assertEquals("User1", userService.getUserById("10001").getName());
+	}
+
+	@Test
+	public void testLaggingReplica_ReadsFallBackToPrimary() throws Exception {
+		replica.update("update replica_lag set seconds = 60");
+		replicaRoutingDataSource.checkLag();
+
+		assertEquals("User1", userService.getUserByUsername("username1").getName());
+		assertTrue(meterRegistry.get(ReplicaRoutingDataSource.ROUTED).tag("target", "primary")
+			.tag("transaction", "read-only").counter().count() >= 1.0);
+	}
+}
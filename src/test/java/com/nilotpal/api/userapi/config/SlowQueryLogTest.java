@@ -0,0 +1,50 @@
+package com.nilotpal.api.userapi.config;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class SlowQueryLogTest {
+
+	@Test
+	public void testRedact_MasksInlineLiterals() {
+		assertEquals("select * from user where password='?' and id=? limit ?",
+			SlowQueryLog.redact("select * from user\n    where password='it''s secret' and id=42 limit 10"));
+	}
+
+	@Test
+	public void testRedact_KeepsPlaceholdersAndAliases() {
+		assertEquals("select userentity0_.id as id1_0_ from user userentity0_ where userentity0_.email=?",
+			SlowQueryLog.redact("select userentity0_.id as id1_0_ from user userentity0_ where userentity0_.email=?"));
+	}
+
+	@Test
+	public void testRecord_SkipsFastStatementsAndDisabledLog() throws Exception {
+		SlowQueryLog slowQueryLog = new SlowQueryLog(false, 100, 1.0);
+		slowQueryLog.record("select 1", TimeUnit.SECONDS.toNanos(1));
+		slowQueryLog.configure(true, null, null);
+		slowQueryLog.record("select 1", TimeUnit.MILLISECONDS.toNanos(5));
+		slowQueryLog.record("select 1", TimeUnit.SECONDS.toNanos(1));
+		slowQueryLog.shutdown();
+
+		awaitLogged(slowQueryLog, 1L);
+		assertEquals(1L, slowQueryLog.settings().get("logged"));
+	}
+
+	@Test
+	public void testConfigure_ClampsSampleRate() {
+		SlowQueryLog slowQueryLog = new SlowQueryLog(false, 200, 1.0);
+		assertEquals(0.0d, slowQueryLog.configure(null, 50L, -1.0d).get("sampleRate"));
+		assertEquals(50L, slowQueryLog.settings().get("thresholdMs"));
+		assertEquals(false, slowQueryLog.settings().get("enabled"));
+		slowQueryLog.shutdown();
+	}
+
+	private void awaitLogged(SlowQueryLog slowQueryLog, long expected) throws InterruptedException {
+		for (int i = 0; i < 100 && !Long.valueOf(expected).equals(slowQueryLog.settings().get("logged")); i++) {
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package com.nilotpal.api.userapi.config;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import springfox.documentation.spring.web.plugins.Docket;
+
+public class SwaggerDocumentationConfigTest {
+	private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+		.withUserConfiguration(SwaggerDocumentationConfig.class);
+
+	@Test
+	public void testSwaggerDisabled_NoDocketBuilt() {
+		contextRunner.withPropertyValues(SwaggerDocumentationConfig.SWAGGER_ENABLED + "=false")
+			.run(context -> assertTrue(context.getBeansOfType(Docket.class).isEmpty()));
+	}
+}
@@ -0,0 +1,63 @@
+package com.nilotpal.api.userapi.controller;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("reactive")
+public class ReactiveUsersApiControllerIntegrationTest {
+	private ObjectMapper objectMapper = new ObjectMapper();
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Test
+	public void testGetUserById() throws Exception {
+		ResponseEntity<String> response = restTemplate.getForEntity(createURLWithPort("/reactive/users/10001"),
+			String.class);
+		assertEquals("10001", objectMapper.readTree(response.getBody()).get("id").asText());
+
+		response = restTemplate.getForEntity(createURLWithPort("/reactive/users/100012"), String.class);
+		assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+	}
+
+	@Test
+	public void testListUsers() throws Exception {
+		ResponseEntity<String> response = restTemplate.getForEntity(createURLWithPort("/reactive/users?limit=3"),
+			String.class);
+		JsonNode jsonNode = objectMapper.readTree(response.getBody());
+		assertEquals(3, jsonNode.size());
+		assertEquals("10001", jsonNode.get(0).get("id").asText());
+	}
+
+	@Test
+	public void testStreamUsers() throws Exception {
+		ResponseEntity<String> response = restTemplate.getForEntity(createURLWithPort("/reactive/users/stream"),
+			String.class);
+		String[] lines = response.getBody().trim().split("\n");
+		assertEquals(8, lines.length);
+		assertEquals("10008", objectMapper.readTree(lines[7]).get("id").asText());
+	}
+
+	private String createURLWithPort(String uri) {
+		return "http://localhost:" + port + uri;
+	}
+}
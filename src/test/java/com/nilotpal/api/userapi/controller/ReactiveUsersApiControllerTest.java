@@ -0,0 +1,87 @@
+package com.nilotpal.api.userapi.controller;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import com.nilotpal.api.userapi.config.AdaptiveConcurrencyLimit;
+import com.nilotpal.api.userapi.config.ClientIdentity;
+import com.nilotpal.api.userapi.exceptions.UserNotFoundException;
+import com.nilotpal.api.userapi.model.User;
+import com.nilotpal.api.userapi.service.ReactiveUserService;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(ReactiveUsersApiController.class)
+@Import({ AdaptiveConcurrencyLimit.class, ClientIdentity.class })
+@ActiveProfiles("reactive")
+public class ReactiveUsersApiControllerTest {
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@MockBean
+	private ReactiveUserService reactiveUserService;
+
+	@Test
+	public void testListUsingGET2_WithPaginationDetails() throws Exception {
+		when(reactiveUserService.getAllUsers(0, 2)).thenReturn(Flux.just(
+			new User("1", "test1@testing.com", "TestUser1", "username1"),
+			new User("2", "test2@testing.com", "TestUser2", "username2")));
+
+		RequestBuilder request = MockMvcRequestBuilders.get("/reactive/users?page=0&size=2")
+			.accept(MediaType.APPLICATION_JSON_UTF8);
+
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(2)))
+			.andExpect(jsonPath("$.[1].username", equalTo("username2")));
+	}
+
+	@Test
+	public void testGetUsingGET1_ExistingUser() throws Exception {
+		when(reactiveUserService.getUserById("1"))
+			.thenReturn(Mono.just(new User("1", "test1@testing.com", "TestUser1", "username1")));
+
+		RequestBuilder request = MockMvcRequestBuilders.get("/reactive/users/1")
+			.accept(MediaType.APPLICATION_JSON_UTF8);
+
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+			.andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+			.andExpect(jsonPath("$.email", equalTo("test1@testing.com")));
+	}
+
+	@Test
+	public void testGetUsingGET1_NonExistentUser() throws Exception {
+		when(reactiveUserService.getUserById("15")).thenReturn(Mono.error(new UserNotFoundException()));
+
+		RequestBuilder request = MockMvcRequestBuilders.get("/reactive/users/15")
+			.accept(MediaType.APPLICATION_JSON_UTF8);
+
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isNotFound())
+			.andExpect(jsonPath("$.message", equalTo("User Not Found")));
+	}
+}
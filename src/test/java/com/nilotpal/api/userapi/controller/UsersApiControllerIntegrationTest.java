@@ -2,6 +2,13 @@ package com.nilotpal.api.userapi.controller;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -13,14 +20,20 @@ import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nilotpal.api.userapi.config.DataSourcePoolConfig;
+import com.nilotpal.api.userapi.model.BatchUpdateUserRequest;
 import com.nilotpal.api.userapi.model.CreateUserRequest;
 import com.nilotpal.api.userapi.model.UpdateUserRequest;
+import com.nilotpal.api.userapi.model.VerifyPasswordRequest;
+import com.nilotpal.api.userapi.repository.UserRepository;
+import com.nilotpal.api.userapi.service.UserSearchIndex;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
@@ -32,6 +45,12 @@ public class UsersApiControllerIntegrationTest {
 
 	@Autowired
 	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private UserSearchIndex userSearchIndex;
 	HttpHeaders headers = new HttpHeaders();
 
 	@Test
@@ -47,6 +66,64 @@ public class UsersApiControllerIntegrationTest {
 		assertEquals(8, jsonNode.size());
 	}
 
+	@Test
+	public void testLookupUsers_RequestOrderAndMissingIds() throws Exception {
+		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		HttpEntity<List<String>> entity = new HttpEntity<>(Arrays.asList("10008", "100012", "10001"), headers);
+
+		ResponseEntity<String> response = restTemplate.exchange(createURLWithPort("/users/lookup"),
+			HttpMethod.POST, entity, String.class);
+		JsonNode jsonNode = objectMapper.readTree(response.getBody());
+		assertEquals(3, jsonNode.size());
+		assertEquals("10008", jsonNode.get(0).get("user").get("id").asText());
+		assertEquals("NOT_FOUND", jsonNode.get(1).get("status").asText());
+		assertEquals("100012", jsonNode.get(1).get("id").asText());
+		assertEquals("10001", jsonNode.get(2).get("user").get("id").asText());
+	}
+
+	@Test
+	public void testSearchUsers_IndexBuiltOnStartup() throws Exception {
+		// Built in the background
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!userSearchIndex.isReady() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		HttpEntity<String> entity = new HttpEntity<String>(null, headers);
+
+		ResponseEntity<String> response = restTemplate.exchange(createURLWithPort("/users/search?q=H@TEST"),
+			HttpMethod.GET, entity, String.class);
+		JsonNode jsonNode = objectMapper.readTree(response.getBody());
+		assertEquals(1, jsonNode.size());
+		assertEquals("10008", jsonNode.get(0).get("id").asText());
+
+		response = restTemplate.exchange(createURLWithPort("/users/search?q=nobody"), HttpMethod.GET, entity,
+			String.class);
+		assertEquals(0, objectMapper.readTree(response.getBody()).size());
+	}
+
+	@Test
+	public void testCreateUser_RetriedWithIdempotencyKey() throws Exception {
+		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		headers.set("Idempotency-Key", "integration-create");
+		HttpEntity<CreateUserRequest> entity = new HttpEntity<CreateUserRequest>(
+			new CreateUserRequest("idempotent@testing.com", "Idempotent User", "password", "idempotentuser"), headers);
+
+		ResponseEntity<String> created = restTemplate.exchange(createURLWithPort("/users"), HttpMethod.PUT, entity,
+			String.class);
+		ResponseEntity<String> retried = restTemplate.exchange(createURLWithPort("/users"), HttpMethod.PUT, entity,
+			String.class);
+
+		assertEquals(HttpStatus.CREATED, retried.getStatusCode());
+		assertEquals("true", retried.getHeaders().getFirst("Idempotent-Replayed"));
+		assertEquals(objectMapper.readTree(created.getBody()).get("id"), objectMapper.readTree(retried.getBody()).get("id"));
+		assertEquals(1, userRepository.findAll().stream()
+			.filter(user -> "idempotent@testing.com".equals(user.getEmail())).count());
+
+		restTemplate.exchange(createURLWithPort("/users/" + objectMapper.readTree(created.getBody()).get("id").asText()),
+			HttpMethod.DELETE, new HttpEntity<String>(null, headers), String.class);
+	}
+
 	private String createURLWithPort(String uri) {
 		return "http://localhost:" + port + uri;
 	}
@@ -64,6 +141,56 @@ public class UsersApiControllerIntegrationTest {
 		assertEquals(3, jsonNode.size());
 	}
 
+	@Test
+	public void testGetAllUsers_WithCursorDetails() throws Exception {
+		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		HttpEntity<String> entity = new HttpEntity<String>(null, headers);
+
+		int seen = 0;
+		int calls = 0;
+		String cursor = null;
+		do {
+			String uri = "/users?limit=3" + (cursor == null ? "" : "&after=" + cursor);
+			ResponseEntity<String> response = restTemplate.exchange(createURLWithPort(uri),
+				HttpMethod.GET, entity, String.class);
+			seen += objectMapper.readTree(response.getBody()).size();
+			cursor = response.getHeaders().getFirst("X-Next-Cursor");
+			calls++;
+		} while (cursor != null);
+
+		assertEquals(8, seen);
+		assertEquals(3, calls);
+	}
+
+	@Test
+	public void testGetAllUsers_WithFields() throws Exception {
+		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		HttpEntity<String> entity = new HttpEntity<String>(null, headers);
+
+		ResponseEntity<String> response = restTemplate.exchange(
+			createURLWithPort("/users?limit=3&fields=id,username"), HttpMethod.GET, entity, String.class);
+		JsonNode jsonNode = objectMapper.readTree(response.getBody());
+		assertEquals(3, jsonNode.size());
+		assertEquals("10001", jsonNode.get(0).get("id").asText());
+		assertNotNull(jsonNode.get(0).get("username"));
+		assertEquals(2, jsonNode.get(0).size());
+		assertNotNull(response.getHeaders().getFirst("X-Next-Cursor"));
+	}
+
+	@Test
+	public void testExportUsers() throws Exception {
+		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		HttpEntity<String> entity = new HttpEntity<String>(null, headers);
+
+		ResponseEntity<String> response = restTemplate.exchange(createURLWithPort("/users/export"),
+			HttpMethod.GET, entity, String.class);
+		String[] lines = response.getBody().split("\n");
+
+		assertEquals(8, lines.length);
+		assertEquals("10001", objectMapper.readTree(lines[0]).get("id").asText());
+		assertEquals("10008", objectMapper.readTree(lines[7]).get("id").asText());
+	}
+
 	@Test
 	public void testGetUserById_ExistingUser() throws Exception {
 		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
@@ -80,6 +207,25 @@ public class UsersApiControllerIntegrationTest {
 		assertEquals("User1", jsonNode.get("name").asText());
 	}
 
+	@Test
+	public void testGetUserByUsernameAndEmail() throws Exception {
+		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		HttpEntity<String> entity = new HttpEntity<String>(null, headers);
+
+		ResponseEntity<String> response = restTemplate.exchange(createURLWithPort("/users/by-username/username3"),
+			HttpMethod.GET, entity, String.class);
+		assertEquals("10003", objectMapper.readTree(response.getBody()).get("id").asText());
+
+		response = restTemplate.exchange(createURLWithPort("/users/by-email/d@test.com"),
+			HttpMethod.GET, entity, String.class);
+		assertEquals("10004", objectMapper.readTree(response.getBody()).get("id").asText());
+
+		response = restTemplate.exchange(createURLWithPort("/users/by-email/nobody@test.com"),
+			HttpMethod.GET, entity, String.class);
+		assertEquals("No user found with email: nobody@test.com",
+			objectMapper.readTree(response.getBody()).get("message").asText());
+	}
+
 	@Test
 	public void testGetUserById_NonExistentUser() throws Exception {
 		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
@@ -180,4 +326,186 @@ public class UsersApiControllerIntegrationTest {
 		assertEquals("NOT_FOUND", jsonNode.get("status").asText());
 		assertEquals("No user found with id: 100012", jsonNode.get("message").asText());
 	}
+
+	@Test
+	public void testBatchCreateUpdateAndDelete() throws Exception {
+		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		HttpEntity<Object> entity = new HttpEntity<Object>(Arrays.asList(
+			new CreateUserRequest("batch1@testing.com", "Batch1", "password", "batch1"),
+			new CreateUserRequest("batch2@testing.com", "Batch2", "password", "batch2")), headers);
+
+		ResponseEntity<String> response = restTemplate.exchange(createURLWithPort("/users/batch"),
+			HttpMethod.PUT, entity, String.class);
+		JsonNode jsonNode = objectMapper.readTree(response.getBody());
+		assertEquals("CREATED", jsonNode.get(1).get("status").asText());
+		String firstId = jsonNode.get(0).get("id").asText();
+		String secondId = jsonNode.get(1).get("id").asText();
+
+		entity = new HttpEntity<Object>(Arrays.asList(
+			new BatchUpdateUserRequest(firstId, "batch1@testing.com", "Batch1Updated", "password", "batch1"),
+			new BatchUpdateUserRequest("100012", "missing@testing.com", "Missing", "password", "missing")), headers);
+		response = restTemplate.exchange(createURLWithPort("/users/batch"), HttpMethod.POST, entity, String.class);
+		jsonNode = objectMapper.readTree(response.getBody());
+		assertEquals("Batch1Updated", jsonNode.get(0).get("user").get("name").asText());
+		assertEquals("NOT_FOUND", jsonNode.get(1).get("status").asText());
+
+		entity = new HttpEntity<Object>(Arrays.asList(firstId, secondId), headers);
+		response = restTemplate.exchange(createURLWithPort("/users/batch/delete"), HttpMethod.POST, entity,
+			String.class);
+		jsonNode = objectMapper.readTree(response.getBody());
+		assertEquals("OK", jsonNode.get(0).get("status").asText());
+		assertEquals("OK", jsonNode.get(1).get("status").asText());
+
+		response = restTemplate.exchange(createURLWithPort("/users/" + firstId), HttpMethod.GET,
+			new HttpEntity<String>(null, headers), String.class);
+		assertEquals("NOT_FOUND", objectMapper.readTree(response.getBody()).get("status").asText());
+	}
+
+	@Test
+	public void testPrometheusEndpoint_ExposesLatencyHistograms() throws Exception {
+		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		HttpEntity<String> entity = new HttpEntity<String>(null, headers);
+		restTemplate.exchange(createURLWithPort("/users/by-username/username3"), HttpMethod.GET, entity,
+			String.class);
+
+		ResponseEntity<String> response = restTemplate.getForEntity(createURLWithPort("/actuator/prometheus"),
+			String.class);
+		String metrics = response.getBody();
+		assertTrue(metrics.contains("http_server_requests_seconds_bucket{"));
+		assertTrue(metrics.contains("quantile=\"0.999\""));
+		assertTrue(metrics.contains("method=\"findFirstByUsernameOrderByIdAsc\",repository=\"UserRepository\""));
+		assertTrue(metrics.contains("hikaricp_connections_acquire_seconds_bucket{"));
+		assertTrue(metrics.contains("hikaricp_connections_usage_seconds_bucket{pool=\"user-api\","));
+		assertTrue(metrics.contains("hibernate_statements_per_request_count{method=\"GET\","));
+	}
+
+	@Test
+	public void testConnectionPool_SizedFromCoresAndWarmedUp() throws Exception {
+		String metrics = restTemplate.getForObject(createURLWithPort("/actuator/prometheus"), String.class);
+		assertEquals(DataSourcePoolConfig.poolSize(0), (int) gauge(metrics, "hikaricp_connections_max{pool=\"user-api\",}"));
+		assertTrue(gauge(metrics, "hikaricp_connections{pool=\"user-api\",}") >= 2);
+	}
+
+	private static double gauge(String metrics, String name) {
+		for (String line : metrics.split("\n")) {
+			if (line.startsWith(name + " ")) {
+				return Double.parseDouble(line.substring(name.length() + 1));
+			}
+		}
+		throw new AssertionError(name + " not exported");
+	}
+
+	@Test
+	public void testSlowQueryLog_ToggledThroughActuator() throws Exception {
+		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		ResponseEntity<String> response = restTemplate.exchange(createURLWithPort("/actuator/slowqueries"),
+			HttpMethod.POST, new HttpEntity<String>("{\"enabled\":true,\"thresholdMs\":0}", headers), String.class);
+		assertEquals(true, objectMapper.readTree(response.getBody()).get("enabled").asBoolean());
+		try {
+			restTemplate.exchange(createURLWithPort("/users/by-username/username4"), HttpMethod.GET,
+				new HttpEntity<String>(null, headers), String.class);
+
+			long logged = 0;
+			for (int i = 0; i < 100 && logged == 0; i++) {
+				Thread.sleep(10);
+				logged = objectMapper.readTree(restTemplate.getForObject(
+					createURLWithPort("/actuator/slowqueries"), String.class)).get("logged").asLong();
+			}
+			assertTrue(logged > 0);
+		} finally {
+			restTemplate.exchange(createURLWithPort("/actuator/slowqueries"), HttpMethod.POST,
+				new HttpEntity<String>("{\"enabled\":false,\"thresholdMs\":200}", headers), String.class);
+		}
+	}
+
+	@Test
+	public void testVerifyPassword_UpgradesLegacyPassword() throws Exception {
+		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		ResponseEntity<String> response = restTemplate.exchange(createURLWithPort("/users/10007/password/verify"),
+			HttpMethod.POST, new HttpEntity<Object>(new VerifyPasswordRequest("wrong"), headers), String.class);
+		assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+
+		response = restTemplate.exchange(createURLWithPort("/users/10007/password/verify"), HttpMethod.POST,
+			new HttpEntity<Object>(new VerifyPasswordRequest("password"), headers), String.class);
+		assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
+
+		String storedPassword = null;
+		for (int i = 0; i < 100 && (storedPassword == null || !storedPassword.startsWith("$2a$")); i++) {
+			Thread.sleep(10);
+			storedPassword = userRepository.findById(10007L).get().getPassword();
+		}
+		assertTrue(storedPassword.startsWith("$2a$"));
+
+		response = restTemplate.exchange(createURLWithPort("/users/10007/password/verify"), HttpMethod.POST,
+			new HttpEntity<Object>(new VerifyPasswordRequest("password"), headers), String.class);
+		assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
+	}
+
+	@Test
+	public void testConditionalGetAndUpdate() throws Exception {
+		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		ResponseEntity<String> response = restTemplate.exchange(createURLWithPort("/users/10006"), HttpMethod.GET,
+			new HttpEntity<String>(null, headers), String.class);
+		String etag = response.getHeaders().getETag();
+		assertNotNull(etag);
+
+		HttpHeaders conditionalHeaders = new HttpHeaders();
+		conditionalHeaders.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		conditionalHeaders.setIfNoneMatch(etag);
+		response = restTemplate.exchange(createURLWithPort("/users/10006"), HttpMethod.GET,
+			new HttpEntity<String>(null, conditionalHeaders), String.class);
+		assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+
+		conditionalHeaders = new HttpHeaders();
+		conditionalHeaders.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		conditionalHeaders.setIfMatch(etag);
+		UpdateUserRequest userToUpdate = new UpdateUserRequest("test6@testing.com", "TestUser6", "password",
+			"username6");
+		response = restTemplate.exchange(createURLWithPort("/users/10006"), HttpMethod.POST,
+			new HttpEntity<UpdateUserRequest>(userToUpdate, conditionalHeaders), String.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		String updatedEtag = response.getHeaders().getETag();
+		assertNotNull(updatedEtag);
+		assertTrue(!etag.equals(updatedEtag));
+
+		response = restTemplate.exchange(createURLWithPort("/users/10006"), HttpMethod.POST,
+			new HttpEntity<UpdateUserRequest>(userToUpdate, conditionalHeaders), String.class);
+		assertEquals(HttpStatus.PRECONDITION_FAILED, response.getStatusCode());
+
+		conditionalHeaders = new HttpHeaders();
+		conditionalHeaders.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		conditionalHeaders.setIfNoneMatch(updatedEtag);
+		response = restTemplate.exchange(createURLWithPort("/users/10006"), HttpMethod.GET,
+			new HttpEntity<String>(null, conditionalHeaders), String.class);
+		assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+	}
+
+	@Test
+	public void testConditionalList() throws Exception {
+		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		ResponseEntity<String> response = restTemplate.exchange(createURLWithPort("/users?page=0&size=3"),
+			HttpMethod.GET, new HttpEntity<String>(null, headers), String.class);
+		String etag = response.getHeaders().getETag();
+		assertNotNull(etag);
+
+		HttpHeaders conditionalHeaders = new HttpHeaders();
+		conditionalHeaders.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		conditionalHeaders.setIfNoneMatch(etag);
+		response = restTemplate.exchange(createURLWithPort("/users?page=0&size=3"), HttpMethod.GET,
+			new HttpEntity<String>(null, conditionalHeaders), String.class);
+		assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+	}
+
+	@Test
+	public void testGetAllUsers_Gzipped() throws Exception {
+		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		headers.set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+		ResponseEntity<byte[]> response = restTemplate.exchange(createURLWithPort("/users"), HttpMethod.GET,
+			new HttpEntity<String>(null, headers), byte[].class);
+
+		assertEquals("gzip", response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+		try (InputStream body = new GZIPInputStream(new ByteArrayInputStream(response.getBody()))) {
+			assertEquals(8, objectMapper.readTree(body).size());
+		}
+	}
 }
@@ -1,16 +1,28 @@
 package com.nilotpal.api.userapi.controller;
 
+import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -19,27 +31,52 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.RequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.nilotpal.api.userapi.config.AdaptiveConcurrencyLimit;
+import com.nilotpal.api.userapi.config.ClientIdentity;
+import com.nilotpal.api.userapi.config.ContentNegotiationConfig;
+import com.nilotpal.api.userapi.config.DatabaseExecutor;
+import com.nilotpal.api.userapi.config.IdempotencyStore;
+import com.nilotpal.api.userapi.entity.UserEntity;
+import com.nilotpal.api.userapi.exceptions.InvalidCursorException;
+import com.nilotpal.api.userapi.exceptions.PreconditionFailedException;
+import com.nilotpal.api.userapi.exceptions.SearchUnavailableException;
 import com.nilotpal.api.userapi.exceptions.UserNotFoundException;
+import com.nilotpal.api.userapi.model.BatchItemResult;
 import com.nilotpal.api.userapi.model.CreateUserRequest;
 import com.nilotpal.api.userapi.model.UpdateUserRequest;
 import com.nilotpal.api.userapi.model.User;
+import com.nilotpal.api.userapi.model.UserField;
+import com.nilotpal.api.userapi.model.UserSlice;
+import com.nilotpal.api.userapi.model.VerifyPasswordRequest;
+import com.nilotpal.api.userapi.service.UserBatchService;
 import com.nilotpal.api.userapi.service.UserService;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(UsersApiController.class)
+@Import({ DatabaseExecutor.class, IdempotencyStore.class, AdaptiveConcurrencyLimit.class, ClientIdentity.class })
 public class UsersApiControllerTest {
 	private static ObjectMapper objectMapper;
 	private static User createdUser;
 	private static User updatedUser;
 	private static User deletedUser;
 	private static List<User> dummyUsers;
+	private static List<UserEntity> dummyUserEntities;
 	private static CreateUserRequest userToCreate;
 	private static UpdateUserRequest userToUpdate;
 
@@ -48,49 +85,69 @@ public class UsersApiControllerTest {
 
 	@MockBean
 	private UserService userService;
+
+	@MockBean
+	private UserBatchService userBatchService;
+
+	@Autowired
+	private Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+	@Autowired
+	private ObjectMapper applicationObjectMapper;
 	
 	@BeforeClass
 	public static void setUp() {
 		objectMapper = new ObjectMapper();
 		dummyUsers = new ArrayList<>();
-		dummyUsers.add(new User("1", "test1@testing.com", "TestUser1", "password", "username1"));
-		dummyUsers.add(new User("2", "test2@testing.com", "TestUser2", "password", "username2"));
-		dummyUsers.add(new User("3", "test3@testing.com", "TestUser3", "password", "username3"));
+		dummyUsers.add(new User("1", "test1@testing.com", "TestUser1", "username1"));
+		dummyUsers.add(new User("2", "test2@testing.com", "TestUser2", "username2"));
+		dummyUsers.add(new User("3", "test3@testing.com", "TestUser3", "username3"));
+
+		dummyUserEntities = new ArrayList<>();
+		for (User user : dummyUsers) {
+			UserEntity userEntity = new UserEntity(user.getEmail(), user.getName(), "password", user.getUsername());
+			ReflectionTestUtils.setField(userEntity, "id", Long.valueOf(user.getId()));
+			dummyUserEntities.add(userEntity);
+		}
 		
 		userToCreate = new CreateUserRequest("test4@testing.com", "TestUser4", "password", "username4");
 		userToUpdate = new UpdateUserRequest("test5@testing.com", "TestUser5", "password", "username5");
 
-		createdUser = new User("4", "test4@testing.com", "TestUser4", "password", "username4");
-		updatedUser = new User("5", "test5@testing.com", "TestUser5", "password5", "username5");
-		deletedUser = new User("6", "test6@testing.com", "TestUser6", "password", "username6");
+		createdUser = new User("4", "test4@testing.com", "TestUser4", "username4");
+		updatedUser = new User("5", "test5@testing.com", "TestUser5", "username5");
+		deletedUser = new User("6", "test6@testing.com", "TestUser6", "username6");
 	}
 
 	@Test
 	public void testListUsingGET1_WithoutPaginationDetails() throws Exception {
-		when(userService.getAllUsers(null, null)).thenReturn(dummyUsers);
+		when(userService.getAllUserEntities(null, null)).thenReturn(dummyUserEntities);
 		
 		RequestBuilder request = MockMvcRequestBuilders.get("/users")
 			.contentType(MediaType.APPLICATION_JSON)
 			.accept(MediaType.APPLICATION_JSON_UTF8);
 
-		mockMvc.perform(request).andExpect(status().isOk())
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
 			.andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
 			.andExpect(jsonPath("$", hasSize(3)))
 			.andExpect(jsonPath("$.[0].id", equalTo("1")))
 			.andExpect(jsonPath("$.[1].email", equalTo("test2@testing.com")))
 			.andExpect(jsonPath("$.[2].name", equalTo("TestUser3")))
+			.andExpect(jsonPath("$.[0].password").doesNotExist())
+			.andExpect(jsonPath("$.[0].version").doesNotExist())
 			.andReturn();
 	}
 
 	@Test
 	public void testListUsingGET1_WithPaginationDetails() throws Exception {
-		when(userService.getAllUsers(Mockito.anyInt(), Mockito.anyInt())).thenReturn(dummyUsers);
+		when(userService.getAllUserEntities(Mockito.anyInt(), Mockito.anyInt())).thenReturn(dummyUserEntities);
 		
 		RequestBuilder request = MockMvcRequestBuilders.get("/users?page=3&size=10")
 			.contentType(MediaType.APPLICATION_JSON)
 			.accept(MediaType.APPLICATION_JSON_UTF8);
 
-		mockMvc.perform(request).andExpect(status().isOk())
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
 			.andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
 			.andExpect(jsonPath("$", hasSize(3)))
 			.andExpect(jsonPath("$.[0].id", equalTo("1")))
@@ -99,6 +156,117 @@ public class UsersApiControllerTest {
 			.andReturn();
 	}
 
+	@Test
+	public void testListUsingGET1_WithCursorDetails() throws Exception {
+		when(userService.getUserEntitiesAfter("MTA", 3)).thenReturn(new UserSlice<>(dummyUserEntities, "Mw"));
+
+		RequestBuilder request = MockMvcRequestBuilders.get("/users?after=MTA&limit=3")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(MediaType.APPLICATION_JSON_UTF8);
+
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+			.andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+			.andExpect(header().string("X-Next-Cursor", "Mw"))
+			.andExpect(jsonPath("$", hasSize(3)))
+			.andExpect(jsonPath("$.[0].id", equalTo("1")));
+	}
+
+	@Test
+	public void testListUsingGET1_WithInvalidCursor() throws Exception {
+		when(userService.getUserEntitiesAfter("bogus", null)).thenThrow(new InvalidCursorException("Invalid cursor: bogus"));
+
+		RequestBuilder request = MockMvcRequestBuilders.get("/users?after=bogus")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(MediaType.APPLICATION_JSON_UTF8);
+
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isBadRequest())
+			.andExpect(jsonPath("$.message", equalTo("Invalid cursor: bogus")));
+	}
+
+	@Test
+	public void testListUsingGET1_WithFields() throws Exception {
+		when(userService.getAllUsers(0, 3, EnumSet.of(UserField.USERNAME))).thenReturn(Arrays.asList(
+			new User("1", null, null, "username1"), new User("2", null, null, "username2")));
+
+		RequestBuilder request = MockMvcRequestBuilders.get("/users?page=0&size=3&fields=id,username")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(MediaType.APPLICATION_JSON_UTF8);
+
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(2)))
+			.andExpect(jsonPath("$.[0].id", equalTo("1")))
+			.andExpect(jsonPath("$.[0].username", equalTo("username1")))
+			.andExpect(jsonPath("$.[0].email").doesNotExist())
+			.andExpect(jsonPath("$.[0].name").doesNotExist())
+			.andExpect(header().string("ETag", endsWith("-id.username\"")))
+			.andExpect(header().string("Vary", "Accept"));
+	}
+
+	@Test
+	public void testListUsingGET1_WithInvalidFields() throws Exception {
+		RequestBuilder request = MockMvcRequestBuilders.get("/users?fields=id,password")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(MediaType.APPLICATION_JSON_UTF8);
+
+		mockMvc.perform(request).andExpect(status().isBadRequest())
+			.andExpect(jsonPath("$.message", equalTo("Invalid fields: id,password")));
+	}
+
+	@Test
+	public void testExportUsingGET() throws Exception {
+		doAnswer(invocation -> {
+			Consumer<UserEntity> consumer = invocation.getArgument(0);
+			dummyUserEntities.forEach(consumer);
+			return null;
+		}).when(userService).exportUsers(Mockito.any());
+
+		RequestBuilder request = MockMvcRequestBuilders.get("/users/export")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept("application/x-ndjson");
+
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		String body = mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+			.andExpect(content().contentType("application/x-ndjson"))
+			.andReturn().getResponse().getContentAsString();
+
+		String[] lines = body.split("\n");
+		assertEquals(3, lines.length);
+		assertEquals("1", objectMapper.readTree(lines[0]).get("id").asText());
+		assertEquals("TestUser3", objectMapper.readTree(lines[2]).get("name").asText());
+	}
+
+	@Test
+	public void testSearchUsingGET() throws Exception {
+		when(userService.searchUsers("test us", 2)).thenReturn(dummyUsers.subList(0, 2));
+
+		RequestBuilder request = MockMvcRequestBuilders.get("/users/search?q=test us&limit=2")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(MediaType.APPLICATION_JSON_UTF8);
+
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(2)))
+			.andExpect(jsonPath("$.[1].id", equalTo("2")));
+	}
+
+	@Test
+	public void testSearchUsingGET_IndexNotReady() throws Exception {
+		when(userService.searchUsers("test", null))
+			.thenThrow(new SearchUnavailableException("The search index is still being built"));
+
+		RequestBuilder request = MockMvcRequestBuilders.get("/users/search?q=test")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(MediaType.APPLICATION_JSON_UTF8);
+
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isServiceUnavailable())
+			.andExpect(header().string("Retry-After", "1"))
+			.andExpect(jsonPath("$.message", equalTo("The search index is still being built")));
+	}
+
 	@Test
 	public void testGetUsingGET_ExistingUser() throws Exception {
 		when(userService.getUserById(Mockito.anyString())).thenReturn(dummyUsers.get(0));
@@ -107,15 +275,106 @@ public class UsersApiControllerTest {
 			.contentType(MediaType.APPLICATION_JSON)
 			.accept(MediaType.APPLICATION_JSON_UTF8);
 
-		mockMvc.perform(request).andExpect(status().isOk())
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
 			.andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
 			.andExpect(jsonPath("$.id", equalTo("1")))
 			.andExpect(jsonPath("$.email", equalTo("test1@testing.com")))
 			.andExpect(jsonPath("$.name", equalTo("TestUser1")))
-			.andExpect(jsonPath("$.password", equalTo("password")))
+			.andExpect(jsonPath("$.password").doesNotExist())
 			.andExpect(jsonPath("$.username", equalTo("username1")));
 	}
 
+	@Test
+	public void testGetUsingGET_Smile() throws Exception {
+		when(userService.getUserById("1")).thenReturn(dummyUsers.get(0));
+
+		RequestBuilder request = MockMvcRequestBuilders.get("/users/1")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(ContentNegotiationConfig.APPLICATION_SMILE);
+
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		byte[] body = mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+			.andExpect(content().contentTypeCompatibleWith(ContentNegotiationConfig.APPLICATION_SMILE))
+			.andReturn().getResponse().getContentAsByteArray();
+		assertEquals(dummyUsers.get(0), new ObjectMapper(new SmileFactory()).readValue(body, User.class));
+	}
+
+	@Test
+	public void testBinaryConverters_LeaveSharedBuilderOnJson() throws Exception {
+		assertEquals(JsonFactory.FORMAT_NAME_JSON, objectMapperBuilder.build().getFactory().getFormatName());
+		assertEquals(JsonFactory.FORMAT_NAME_JSON, applicationObjectMapper.getFactory().getFormatName());
+	}
+
+	@Test
+	public void testListUsingGET1_Cbor() throws Exception {
+		when(userService.getAllUserEntities(null, null)).thenReturn(dummyUserEntities);
+
+		RequestBuilder request = MockMvcRequestBuilders.get("/users")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(ContentNegotiationConfig.APPLICATION_CBOR);
+
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		byte[] body = mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+			.andExpect(content().contentTypeCompatibleWith(ContentNegotiationConfig.APPLICATION_CBOR))
+			.andReturn().getResponse().getContentAsByteArray();
+		assertEquals(dummyUsers, Arrays.asList(new ObjectMapper(new CBORFactory()).readValue(body, User[].class)));
+	}
+
+	@Test
+	public void testListUsingGET1_TagNamesEncoding() throws Exception {
+		when(userService.getAllUserEntities(null, null)).thenReturn(dummyUserEntities);
+
+		String jsonTag = mockMvc.perform(asyncDispatch(mockMvc.perform(MockMvcRequestBuilders.get("/users")
+			.contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON_UTF8)).andReturn()))
+			.andExpect(header().string("Vary", "Accept"))
+			.andReturn().getResponse().getHeader("ETag");
+		String cborTag = mockMvc.perform(asyncDispatch(mockMvc.perform(MockMvcRequestBuilders.get("/users")
+			.contentType(MediaType.APPLICATION_JSON).accept(ContentNegotiationConfig.APPLICATION_CBOR)).andReturn()))
+			.andExpect(header().string("Vary", "Accept"))
+			.andReturn().getResponse().getHeader("ETag");
+		assertEquals(jsonTag.substring(0, jsonTag.length() - 1) + "-cbor\"", cborTag);
+	}
+
+	@Test
+	public void testGetUsingGET_NotModifiedPerEncoding() throws Exception {
+		when(userService.getUserVersion("1")).thenReturn(3L);
+		when(userService.getUserById("1")).thenReturn(dummyUsers.get(0));
+
+		RequestBuilder smile = MockMvcRequestBuilders.get("/users/1")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(ContentNegotiationConfig.APPLICATION_SMILE)
+			.header("If-None-Match", "\"3-smile\"");
+		MvcResult result = mockMvc.perform(smile).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isNotModified())
+			.andExpect(header().string("ETag", "\"3-smile\""))
+			.andExpect(header().string("Vary", "Accept"));
+
+		// The JSON tag does not stand for the Smile bytes
+		RequestBuilder json = MockMvcRequestBuilders.get("/users/1")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(ContentNegotiationConfig.APPLICATION_SMILE)
+			.header("If-None-Match", "\"3\"");
+		result = mockMvc.perform(json).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+	}
+
+	@Test
+	public void testGetUsingGET_NotModified() throws Exception {
+		when(userService.getUserVersion("1")).thenReturn(3L);
+
+		RequestBuilder request = MockMvcRequestBuilders.get("/users/1")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(MediaType.APPLICATION_JSON_UTF8)
+			.header("If-None-Match", "\"3\"");
+
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isNotModified())
+			.andExpect(header().string("ETag", "\"3\""))
+			.andExpect(content().string(""));
+		verify(userService, never()).getUserById(Mockito.anyString());
+	}
+
 	@Test
 	public void testGetUsingGET_NonExistentUser() throws Exception {
 		when(userService.getUserById(Mockito.anyString())).thenThrow(UserNotFoundException.class);
@@ -124,14 +383,58 @@ public class UsersApiControllerTest {
 			.contentType(MediaType.APPLICATION_JSON)
 			.accept(MediaType.APPLICATION_JSON_UTF8);
 
-		mockMvc.perform(request).andExpect(status().isNotFound())
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isNotFound())
+			.andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+			.andExpect(jsonPath("$.message", equalTo("User Not Found")));
+	}
+
+	@Test
+	public void testGetUsingGET_DatabaseSaturated() throws Exception {
+		when(userService.getUserById("1")).thenThrow(new TaskRejectedException("Executor did not accept task"));
+
+		RequestBuilder request = MockMvcRequestBuilders.get("/users/1")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(MediaType.APPLICATION_JSON_UTF8);
+
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isServiceUnavailable())
+			.andExpect(header().string("Retry-After", "1"))
+			.andExpect(jsonPath("$.message", equalTo("Server busy, retry later")));
+	}
+
+	@Test
+	public void testGetByEmailUsingGET_ExistingUser() throws Exception {
+		when(userService.getUserByEmail("test2@testing.com")).thenReturn(dummyUsers.get(1));
+
+		RequestBuilder request = MockMvcRequestBuilders.get("/users/by-email/test2@testing.com")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(MediaType.APPLICATION_JSON_UTF8);
+
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
 			.andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+			.andExpect(jsonPath("$.id", equalTo("2")))
+			.andExpect(jsonPath("$.username", equalTo("username2")));
+	}
+
+	@Test
+	public void testGetByUsernameUsingGET_NonExistentUser() throws Exception {
+		when(userService.getUserByUsername("nobody")).thenThrow(UserNotFoundException.class);
+
+		RequestBuilder request = MockMvcRequestBuilders.get("/users/by-username/nobody")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(MediaType.APPLICATION_JSON_UTF8);
+
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isNotFound())
 			.andExpect(jsonPath("$.message", equalTo("User Not Found")));
 	}
 
 	@Test
 	public void testCreateUsingPUT() throws Exception {
-		when(userService.createUser(Mockito.any(CreateUserRequest.class))).thenReturn(createdUser);
+		when(userService.createUser(Mockito.any(CreateUserRequest.class)))
+			.thenReturn(CompletableFuture.completedFuture(createdUser));
 		
 		String userToCreateString = objectMapper.writeValueAsString(userToCreate);
 		RequestBuilder request = MockMvcRequestBuilders.put("/users")
@@ -139,19 +442,49 @@ public class UsersApiControllerTest {
 			.accept(MediaType.APPLICATION_JSON_UTF8)
 			.content(userToCreateString);
 
-		mockMvc.perform(request).andExpect(status().isCreated())
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isCreated())
 			.andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
 			.andExpect(header().string("location", "http://localhost/users/4"))
 			.andExpect(jsonPath("$.id", equalTo("4")))
 			.andExpect(jsonPath("$.email", equalTo("test4@testing.com")))
 			.andExpect(jsonPath("$.name", equalTo("TestUser4")))
-			.andExpect(jsonPath("$.password", equalTo("password")))
 			.andExpect(jsonPath("$.username", equalTo("username4")));
 	}
 
+	@Test
+	public void testCreateUsingPUT_RetryWithIdempotencyKey() throws Exception {
+		when(userService.createUser(Mockito.any(CreateUserRequest.class)))
+			.thenReturn(CompletableFuture.completedFuture(createdUser));
+
+		for (int attempt = 0; attempt < 2; attempt++) {
+			RequestBuilder request = MockMvcRequestBuilders.put("/users")
+				.header("Idempotency-Key", "create-retry")
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_JSON_UTF8)
+				.content(objectMapper.writeValueAsString(userToCreate));
+
+			MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+			mockMvc.perform(asyncDispatch(result)).andExpect(status().isCreated())
+				.andExpect(header().string("location", "http://localhost/users/4"))
+				.andExpect(jsonPath("$.id", equalTo("4")));
+		}
+		verify(userService, Mockito.times(1)).createUser(Mockito.any(CreateUserRequest.class));
+
+		RequestBuilder reused = MockMvcRequestBuilders.put("/users")
+			.header("Idempotency-Key", "create-retry")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(MediaType.APPLICATION_JSON_UTF8)
+			.content(objectMapper.writeValueAsString(
+				new CreateUserRequest("other@testing.com", "Other", "password", "other")));
+		mockMvc.perform(reused).andExpect(status().isUnprocessableEntity())
+			.andExpect(jsonPath("$.message", equalTo("Idempotency-Key create-retry was already used for a different request")));
+	}
+
 	@Test
 	public void testUpdateUsingPOST1_ExistingUser() throws Exception {
-		when(userService.updateUser(Mockito.anyString(), Mockito.any(UpdateUserRequest.class))).thenReturn(updatedUser);
+		when(userService.updateUser(Mockito.anyString(), Mockito.any(UpdateUserRequest.class), Mockito.isNull()))
+			.thenReturn(CompletableFuture.completedFuture(updatedUser));
 		
 		String userToUpdateString = objectMapper.writeValueAsString(userToUpdate);
 		RequestBuilder request = MockMvcRequestBuilders.post("/users/5")
@@ -159,19 +492,20 @@ public class UsersApiControllerTest {
 			.accept(MediaType.APPLICATION_JSON_UTF8)
 			.content(userToUpdateString);
 
-		mockMvc.perform(request).andExpect(status().isOk())
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
 			.andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
 			.andExpect(jsonPath("$.id", equalTo("5")))
 			.andExpect(jsonPath("$.email", equalTo("test5@testing.com")))
 			.andExpect(jsonPath("$.name", equalTo("TestUser5")))
-			.andExpect(jsonPath("$.password", equalTo("password5")))
 			.andExpect(jsonPath("$.username", equalTo("username5")));
 	}
 
 	@Test
 	public void testUpdateUsingPOST1_NonExistentUser() throws Exception {
-		when(userService.updateUser(Mockito.anyString(), Mockito.any(UpdateUserRequest.class)))
-			.thenThrow(UserNotFoundException.class);
+		CompletableFuture<User> notFound = new CompletableFuture<>();
+		notFound.completeExceptionally(new CompletionException(new UserNotFoundException()));
+		when(userService.updateUser(Mockito.anyString(), Mockito.any(UpdateUserRequest.class), Mockito.isNull())).thenReturn(notFound);
 		
 		String userToUpdateString = objectMapper.writeValueAsString(userToUpdate);
 		RequestBuilder request = MockMvcRequestBuilders.post("/users/15")
@@ -179,11 +513,104 @@ public class UsersApiControllerTest {
 			.accept(MediaType.APPLICATION_JSON_UTF8)
 			.content(userToUpdateString);
 
-		mockMvc.perform(request).andExpect(status().isNotFound())
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isNotFound())
 			.andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
 			.andExpect(jsonPath("$.message", equalTo("User Not Found")));
 	}
 
+	@Test
+	public void testUpdateUsingPOST1_StaleIfMatch() throws Exception {
+		CompletableFuture<User> stale = new CompletableFuture<>();
+		stale.completeExceptionally(new CompletionException(new PreconditionFailedException()));
+		when(userService.updateUser(Mockito.eq("5"), Mockito.any(UpdateUserRequest.class), Mockito.eq(2L)))
+			.thenReturn(stale);
+
+		RequestBuilder request = MockMvcRequestBuilders.post("/users/5")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(MediaType.APPLICATION_JSON_UTF8)
+			.header("If-Match", "\"2\"")
+			.content(objectMapper.writeValueAsString(userToUpdate));
+
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isPreconditionFailed())
+			.andExpect(jsonPath("$.message", equalTo("Precondition Failed")));
+	}
+
+	@Test
+	public void testUpdateUsingPOST1_IfMatchOfBinaryRepresentation() throws Exception {
+		CompletableFuture<User> updated = CompletableFuture.completedFuture(dummyUsers.get(0));
+		when(userService.updateUser(Mockito.eq("5"), Mockito.any(UpdateUserRequest.class), Mockito.eq(2L)))
+			.thenReturn(updated);
+
+		RequestBuilder request = MockMvcRequestBuilders.post("/users/5")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(MediaType.APPLICATION_JSON_UTF8)
+			.header("If-Match", "\"2-cbor\"")
+			.content(objectMapper.writeValueAsString(userToUpdate));
+
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+	}
+
+	@Test
+	public void testUpdateUsingPOST1_WeakIfMatch() throws Exception {
+		RequestBuilder request = MockMvcRequestBuilders.post("/users/5")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(MediaType.APPLICATION_JSON_UTF8)
+			.header("If-Match", "W/\"2\"")
+			.content(objectMapper.writeValueAsString(userToUpdate));
+
+		mockMvc.perform(request).andExpect(status().isPreconditionFailed());
+		verify(userService, never()).updateUser(Mockito.anyString(), Mockito.any(UpdateUserRequest.class),
+			Mockito.any());
+	}
+
+	@Test
+	public void testCreateUsingPUT_HashingSaturated() throws Exception {
+		when(userService.createUser(Mockito.any(CreateUserRequest.class)))
+			.thenThrow(new TaskRejectedException("Executor did not accept task"));
+
+		RequestBuilder request = MockMvcRequestBuilders.put("/users")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(MediaType.APPLICATION_JSON_UTF8)
+			.content(objectMapper.writeValueAsString(userToCreate));
+
+		mockMvc.perform(request).andExpect(status().isServiceUnavailable())
+			.andExpect(jsonPath("$.message", equalTo("Server busy, retry later")));
+	}
+
+	@Test
+	public void testVerifyPasswordUsingPOST() throws Exception {
+		when(userService.verifyPassword("5", "password")).thenReturn(CompletableFuture.completedFuture(true));
+		when(userService.verifyPassword("5", "wrong")).thenReturn(CompletableFuture.completedFuture(false));
+
+		for (String password : Arrays.asList("password", "wrong")) {
+			RequestBuilder request = MockMvcRequestBuilders.post("/users/5/password/verify")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsString(new VerifyPasswordRequest(password)));
+
+			MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+			mockMvc.perform(asyncDispatch(result)).andExpect("password".equals(password)
+				? status().isNoContent() : status().isUnauthorized());
+		}
+	}
+
+	@Test
+	public void testVerifyPasswordUsingPOST_NonExistentUser() throws Exception {
+		when(userService.verifyPassword("15", "password")).thenThrow(UserNotFoundException.class);
+
+		RequestBuilder request = MockMvcRequestBuilders.post("/users/15/password/verify")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(MediaType.APPLICATION_JSON_UTF8)
+			.content(objectMapper.writeValueAsString(new VerifyPasswordRequest("password")));
+
+		// Read on the database executor, so the missing user fails the future
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isNotFound())
+			.andExpect(jsonPath("$.message", equalTo("User Not Found")));
+	}
+
 	@Test
 	public void testDeleteUsingDELETE_ExistingUser() throws Exception {
 		when(userService.getUserById(Mockito.anyString())).thenReturn(deletedUser);
@@ -193,15 +620,29 @@ public class UsersApiControllerTest {
 			.contentType(MediaType.APPLICATION_JSON)
 			.accept(MediaType.APPLICATION_JSON_UTF8);
 
-		mockMvc.perform(request).andExpect(status().isOk())
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
 			.andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
 			.andExpect(jsonPath("$.id", equalTo("6")))
 			.andExpect(jsonPath("$.email", equalTo("test6@testing.com")))
 			.andExpect(jsonPath("$.name", equalTo("TestUser6")))
-			.andExpect(jsonPath("$.password", equalTo("password")))
 			.andExpect(jsonPath("$.username", equalTo("username6")));
 	}
 
+	@Test
+	public void testDeleteUsingDELETE_PreferMinimal() throws Exception {
+		RequestBuilder request = MockMvcRequestBuilders.delete("/users/6")
+			.header("Prefer", "return=minimal")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(MediaType.APPLICATION_JSON_UTF8);
+
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isNoContent())
+			.andExpect(content().string(""));
+		verify(userService).deleteUserById("6");
+		verify(userService, never()).deleteUser(Mockito.anyString());
+	}
+
 	@Test
 	public void testDeleteUsingDELETE_NonExistentUser() throws Exception {
 		doThrow(UserNotFoundException.class).when(userService).deleteUser(Mockito.anyString());
@@ -210,8 +651,66 @@ public class UsersApiControllerTest {
 			.contentType(MediaType.APPLICATION_JSON)
 			.accept(MediaType.APPLICATION_JSON_UTF8);
 
-		mockMvc.perform(request).andExpect(status().isNotFound())
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isNotFound())
 			.andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
 			.andExpect(jsonPath("$.message", equalTo("User Not Found")));
 	}
+
+	@Test
+	public void testCreateBatchUsingPUT() throws Exception {
+		when(userBatchService.createUsers(Mockito.anyList())).thenReturn(Arrays.asList(
+			BatchItemResult.success(0, HttpStatus.CREATED, createdUser),
+			BatchItemResult.failure(1, null, HttpStatus.CONFLICT, "duplicate")));
+
+		String usersToCreateString = objectMapper.writeValueAsString(Arrays.asList(userToCreate, userToCreate));
+		RequestBuilder request = MockMvcRequestBuilders.put("/users/batch")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(MediaType.APPLICATION_JSON_UTF8)
+			.content(usersToCreateString);
+
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(2)))
+			.andExpect(jsonPath("$.[0].status", equalTo("CREATED")))
+			.andExpect(jsonPath("$.[0].user.id", equalTo("4")))
+			.andExpect(jsonPath("$.[1].index", equalTo(1)))
+			.andExpect(jsonPath("$.[1].status", equalTo("CONFLICT")));
+	}
+
+	@Test
+	public void testDeleteBatchUsingPOST() throws Exception {
+		when(userBatchService.deleteUsers(Arrays.asList("6", "15"))).thenReturn(Arrays.asList(
+			BatchItemResult.success(0, HttpStatus.OK, deletedUser),
+			BatchItemResult.failure(1, "15", HttpStatus.NOT_FOUND, "No user found with id: 15")));
+
+		RequestBuilder request = MockMvcRequestBuilders.post("/users/batch/delete")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(MediaType.APPLICATION_JSON_UTF8)
+			.content("[\"6\", \"15\"]");
+
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+			.andExpect(jsonPath("$.[0].user.name", equalTo("TestUser6")))
+			.andExpect(jsonPath("$.[1].id", equalTo("15")))
+			.andExpect(jsonPath("$.[1].status", equalTo("NOT_FOUND")));
+	}
+
+	@Test
+	public void testLookupUsingPOST() throws Exception {
+		when(userBatchService.getUsers(Arrays.asList("6", "15"))).thenReturn(Arrays.asList(
+			BatchItemResult.success(0, HttpStatus.OK, deletedUser),
+			BatchItemResult.failure(1, "15", HttpStatus.NOT_FOUND, "No user found with id: 15")));
+
+		RequestBuilder request = MockMvcRequestBuilders.post("/users/lookup")
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(MediaType.APPLICATION_JSON_UTF8)
+			.content("[\"6\", \"15\"]");
+
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+			.andExpect(jsonPath("$.[0].user.name", equalTo("TestUser6")))
+			.andExpect(jsonPath("$.[1].id", equalTo("15")))
+			.andExpect(jsonPath("$.[1].status", equalTo("NOT_FOUND")));
+	}
 }
@@ -0,0 +1,59 @@
+package com.nilotpal.api.userapi.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.nilotpal.api.userapi.entity.UserEntity;
+
+public class UserEntitySerializerTest {
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private static UserEntity userEntity(long id, String email, String name, String username) {
+		UserEntity userEntity = new UserEntity(email, name, "password", username);
+		ReflectionTestUtils.setField(userEntity, "id", id);
+		ReflectionTestUtils.setField(userEntity, "version", 7L);
+		return userEntity;
+	}
+
+	private static User toUser(UserEntity userEntity) {
+		return new User(String.valueOf(userEntity.getId()), userEntity.getEmail(), userEntity.getName(),
+				userEntity.getUsername(), userEntity.getVersion());
+	}
+
+	@Test
+	public void testSerialize_SameDocumentAsUser() throws Exception {
+		UserEntity userEntity = userEntity(1234567890123L, "test1@testing.com", "Test \"User\" 1", "testusername1");
+
+		assertEquals(objectMapper.writeValueAsString(toUser(userEntity)),
+			objectMapper.writeValueAsString(userEntity));
+		assertEquals("{\"id\":\"1234567890123\",\"email\":\"test1@testing.com\",\"name\":\"Test \\\"User\\\" 1\",\"username\":\"testusername1\"}",
+			objectMapper.writeValueAsString(userEntity));
+	}
+
+	@Test
+	public void testSerialize_NullAttributesOmittedAndExtremeIds() throws Exception {
+		List<UserEntity> userEntities = Arrays.asList(userEntity(0L, null, "Zero", null),
+			userEntity(Long.MIN_VALUE, "min@testing.com", null, "min"), userEntity(Long.MAX_VALUE, null, null, "max"));
+
+		assertEquals("[{\"id\":\"0\",\"name\":\"Zero\"},"
+			+ "{\"id\":\"-9223372036854775808\",\"email\":\"min@testing.com\",\"username\":\"min\"},"
+			+ "{\"id\":\"9223372036854775807\",\"username\":\"max\"}]", objectMapper.writeValueAsString(userEntities));
+	}
+
+	@Test
+	public void testSerialize_Smile() throws Exception {
+		ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+		UserEntity userEntity = userEntity(42L, "test42@testing.com", "TestUser42", "testusername42");
+
+		assertArrayEquals(smileMapper.writeValueAsBytes(toUser(userEntity)),
+			smileMapper.writeValueAsBytes(userEntity));
+	}
+}
@@ -10,9 +10,13 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.persistence.Tuple;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -21,6 +25,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.annotation.DirtiesContext.ClassMode;
@@ -29,6 +34,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import com.nilotpal.api.userapi.entity.UserEntity;
 import com.nilotpal.api.userapi.model.UpdateUserRequest;
+import com.nilotpal.api.userapi.model.UserField;
 
 @RunWith(SpringRunner.class)
 @DataJpaTest
@@ -77,6 +83,30 @@ public class UserRepositoryTest {
 		assertThat(userIds, hasItems(4L, 5L, 6L));
 	}
 
+	@Test
+	public void testFindByIdGreaterThan() {
+		Slice<UserEntity> slice = userRepository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 3));
+		List<Long> userIds = slice.getContent().stream().map(e -> e.getId()).collect(Collectors.toList());
+		assertThat(userIds, hasSize(3));
+		assertThat(userIds, hasItems(1L, 2L, 3L));
+		assertThat(slice.hasNext(), is(true));
+
+		slice = userRepository.findByIdGreaterThanOrderByIdAsc(10006L, PageRequest.of(0, 3));
+		userIds = slice.getContent().stream().map(e -> e.getId()).collect(Collectors.toList());
+		assertThat(userIds, hasItems(10007L, 10008L));
+		assertThat(slice.hasNext(), is(false));
+	}
+
+	@Test
+	public void testStreamAll() {
+		try (Stream<UserEntity> users = userRepository.streamAllByOrderByIdAsc()) {
+			List<Long> userIds = users.map(e -> e.getId()).collect(Collectors.toList());
+			assertThat(userIds, hasSize(16));
+			assertEquals(Long.valueOf(1L), userIds.get(0));
+			assertEquals(Long.valueOf(10008L), userIds.get(15));
+		}
+	}
+
 	@Test
 	public void testFindById() {
 		Optional<UserEntity> userOptional = userRepository.findById(1L);
@@ -88,6 +118,16 @@ public class UserRepositoryTest {
 		assertEquals("testusername1", user.getUsername());
 	}
 
+	@Test
+	public void testFindFirstByUsernameAndEmail() {
+		UserEntity byUsername = userRepository.findFirstByUsernameOrderByIdAsc("testusername3").get();
+		assertThat(byUsername.getId(), is(3L));
+
+		UserEntity byEmail = userRepository.findFirstByEmailOrderByIdAsc("b@test.com").get();
+		assertThat(byEmail.getId(), is(10002L));
+		assertEquals(Optional.empty(), userRepository.findFirstByEmailOrderByIdAsc("nobody@test.com"));
+	}
+
 	@Test
 	public void testFindById_UserNonExistent() {
 		Optional<UserEntity> userOptional = userRepository.findById(15L);
@@ -113,7 +153,7 @@ public class UserRepositoryTest {
 		UserEntity userToBeUpdated = optionalUser.get();
 		userToBeUpdated = userToBeUpdated
 			.merge(new UpdateUserRequest("updateduser@testing.com", "Updated User", 
-			"password", "updateduser"));
+			"password", "updateduser"), "password");
 
 		optionalUser = userRepository.findById(1L);
 		UserEntity userUpdated = optionalUser.get();
@@ -137,4 +177,74 @@ public class UserRepositoryTest {
 		List<Long> userIds = users.stream().map(e -> e.getId()).collect(Collectors.toList());
 		assertThat(userIds, everyItem(greaterThan(1L)));
 	}
+
+	@Test
+	@Transactional
+	public void testUpdateById() {
+		int updated = userRepository.updateById(1L, "updateduser@testing.com", "Updated User", "password",
+			"updateduser");
+		assertEquals(1, updated);
+
+		UserEntity userUpdated = userRepository.findById(1L).get();
+		assertEquals("updateduser@testing.com", userUpdated.getEmail());
+		assertEquals("Updated User", userUpdated.getName());
+		assertEquals(0, userRepository.updateById(15L, "x@testing.com", "X", "password", "x"));
+	}
+
+	@Test
+	@Transactional
+	public void testUpdateByIdAndVersion() {
+		assertEquals(Optional.of(0L), userRepository.findVersionById(1L));
+		assertEquals(1, userRepository.updateById(1L, "updateduser@testing.com", "Updated User", "password",
+			"updateduser"));
+		assertEquals(Optional.of(1L), userRepository.findVersionById(1L));
+
+		assertEquals(0, userRepository.updateByIdAndVersion(1L, 0L, "stale@testing.com", "Stale", "password",
+			"stale"));
+		assertEquals(1, userRepository.updateByIdAndVersion(1L, 1L, "current@testing.com", "Current", "password",
+			"current"));
+		UserEntity userUpdated = userRepository.findById(1L).get();
+		assertEquals("current@testing.com", userUpdated.getEmail());
+		assertThat(userUpdated.getVersion(), is(2L));
+	}
+
+	@Test
+	public void testFindVersionsBy() {
+		List<UserVersion> versions = userRepository.findVersionsBy(PageRequest.of(0, 3, Sort.by("id")));
+		assertThat(versions, hasSize(3));
+		assertEquals(Long.valueOf(1L), versions.get(0).getId());
+		assertEquals(Long.valueOf(0L), versions.get(0).getVersion());
+	}
+
+	@Test
+	public void testFindFieldsBy() {
+		List<Tuple> rows = userRepository.findFieldsBy(EnumSet.of(UserField.USERNAME),
+			PageRequest.of(1, 3, Sort.by("id")));
+		assertThat(rows, hasSize(3));
+		assertEquals(Long.valueOf(4L), rows.get(0).get("id", Long.class));
+		assertEquals("testusername4", rows.get(0).get("username", String.class));
+		assertEquals(3, rows.get(0).getElements().size());
+	}
+
+	@Test
+	public void testFindFieldsByIdGreaterThan() {
+		Slice<Tuple> slice = userRepository.findFieldsByIdGreaterThanOrderByIdAsc(EnumSet.of(UserField.EMAIL), 2L,
+			PageRequest.of(0, 3));
+		assertThat(slice.getContent(), hasSize(3));
+		assertEquals("test3@testing.com", slice.getContent().get(0).get("email", String.class));
+		assertThat(slice.hasNext(), is(true));
+
+		slice = userRepository.findFieldsByIdGreaterThanOrderByIdAsc(EnumSet.noneOf(UserField.class), 10005L,
+			PageRequest.of(0, 5));
+		assertThat(slice.getContent(), hasSize(3));
+		assertThat(slice.hasNext(), is(false));
+	}
+
+	@Test
+	@Transactional
+	public void testRemoveById() {
+		assertEquals(1, userRepository.removeById(1L));
+		assertEquals(Optional.empty(), userRepository.findById(1L));
+		assertEquals(0, userRepository.removeById(1L));
+	}
 }
@@ -0,0 +1,78 @@
+package com.nilotpal.api.userapi.service;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doThrow;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+public class PasswordServiceTest {
+	private PasswordServiceImpl passwordService;
+	private ThreadPoolTaskExecutor executor;
+
+	@Before
+	public void setUp() {
+		executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(2);
+		executor.initialize();
+
+		passwordService = new PasswordServiceImpl();
+		passwordService.passwordEncoder = new BCryptPasswordEncoder(5);
+		passwordService.passwordHashingExecutor = executor;
+		passwordService.strength = 5;
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	@Test
+	public void testHash_RunsOnHashingPool() throws Exception {
+		String[] hashingThread = new String[1];
+		String hash = passwordService.hash("password").thenApply(value -> {
+			hashingThread[0] = Thread.currentThread().getName();
+			return value;
+		}).join();
+
+		assertTrue(hash.startsWith("$2a$05$"));
+		assertTrue(passwordService.matches("password", hash).join());
+		assertFalse(passwordService.matches("wrong", hash).join());
+		assertFalse(passwordService.needsRehash(hash));
+		assertTrue(hashingThread[0].startsWith(executor.getThreadNamePrefix()));
+	}
+
+	@Test
+	public void testHash_NullPassword() {
+		assertNull(passwordService.hash(null).join());
+	}
+
+	@Test
+	public void testNeedsRehash_LegacyPlainTextPassword() {
+		assertTrue(passwordService.matches("password", "password").join());
+		assertFalse(passwordService.matches("wrong", "password").join());
+		assertTrue(passwordService.needsRehash("password"));
+	}
+
+	@Test
+	public void testNeedsRehash_WeakerWorkFactor() {
+		assertTrue(passwordService.needsRehash(new BCryptPasswordEncoder(4).encode("password")));
+	}
+
+	@Test(expected = TaskRejectedException.class)
+	public void testHash_SaturatedPool() {
+		AsyncTaskExecutor saturated = Mockito.mock(AsyncTaskExecutor.class);
+		doThrow(new TaskRejectedException("saturated")).when(saturated).execute(Mockito.any(Runnable.class));
+		passwordService.passwordHashingExecutor = saturated;
+
+		passwordService.hash("password");
+	}
+}
@@ -0,0 +1,71 @@
+package com.nilotpal.api.userapi.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.nilotpal.api.userapi.config.DatabaseExecutor;
+import com.nilotpal.api.userapi.exceptions.UserNotFoundException;
+import com.nilotpal.api.userapi.model.User;
+import com.nilotpal.api.userapi.model.UserSlice;
+
+import reactor.core.publisher.Flux;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReactiveUserServiceTest {
+	@InjectMocks
+	private ReactiveUserServiceImpl reactiveUserService;
+
+	@Mock
+	private UserService userService;
+
+	@Before
+	public void setUp() {
+		reactiveUserService.databaseExecutor = new DatabaseExecutor(false, 1, 1);
+	}
+
+	@Test
+	public void testStreamUsers_PagesThroughSlices() throws Exception {
+		when(userService.getUsersAfter(null, ReactiveUserServiceImpl.STREAM_SLICE_SIZE)).thenReturn(new UserSlice<>(
+			Arrays.asList(new User("1", "test1@testing.com", "TestUser1", "username1")), "MQ"));
+		when(userService.getUsersAfter("MQ", ReactiveUserServiceImpl.STREAM_SLICE_SIZE)).thenReturn(new UserSlice<>(
+			Arrays.asList(new User("2", "test2@testing.com", "TestUser2", "username2")), null));
+
+		List<User> users = reactiveUserService.streamUsers().collectList().block();
+		assertEquals(2, users.size());
+		assertEquals("username2", users.get(1).getUsername());
+	}
+
+	@Test
+	public void testStreamUsers_ReadsNothingUntilSubscribed() throws Exception {
+		Flux<User> users = reactiveUserService.streamUsers();
+		verify(userService, never()).getUsersAfter(Mockito.any(), Mockito.anyInt());
+
+		when(userService.getUsersAfter(null, ReactiveUserServiceImpl.STREAM_SLICE_SIZE)).thenReturn(new UserSlice<>(
+			Arrays.asList(new User("1", "test1@testing.com", "TestUser1", "username1")), "MQ"));
+		assertEquals("username1", users.take(1).blockFirst().getUsername());
+		verify(userService, never()).getUsersAfter("MQ", ReactiveUserServiceImpl.STREAM_SLICE_SIZE);
+	}
+
+	@Test(expected = UserNotFoundException.class)
+	public void testGetUserById_NonExistentUser() throws Throwable {
+		when(userService.getUserById("15")).thenThrow(new UserNotFoundException());
+		try {
+			reactiveUserService.getUserById("15").block();
+		} catch (RuntimeException e) {
+			throw e.getCause();
+		}
+	}
+}
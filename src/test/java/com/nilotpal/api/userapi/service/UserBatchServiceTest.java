@@ -0,0 +1,306 @@
+package com.nilotpal.api.userapi.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.nilotpal.api.userapi.entity.UserEntity;
+import com.nilotpal.api.userapi.model.BatchItemResult;
+import com.nilotpal.api.userapi.model.BatchUpdateUserRequest;
+import com.nilotpal.api.userapi.model.CreateUserRequest;
+import com.nilotpal.api.userapi.model.UpdateUserRequest;
+import com.nilotpal.api.userapi.model.User;
+import com.nilotpal.api.userapi.repository.UserRepository;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UserBatchServiceTest {
+	@InjectMocks
+	private UserBatchServiceImpl userBatchService;
+
+	@Mock
+	private UserRepository userRepository;
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	@Mock
+	private CacheManager cacheManager;
+
+	@Mock
+	private PasswordService passwordService;
+
+	@Mock
+	private UserSearchIndex userSearchIndex;
+
+	@Mock
+	private UserUpdateBuffer userUpdateBuffer;
+
+	@Before
+	public void setUp() {
+		userBatchService.chunkSize = 2;
+		userBatchService.hashingConcurrency = 2;
+		userBatchService.hashingWaitMillis = 1000L;
+		userBatchService.init();
+	}
+
+	private static UserEntity userEntity(long id) {
+		UserEntity userEntity = new UserEntity("test" + id + "@testing.com", "TestUser" + id, "password",
+			"testusername" + id);
+		ReflectionTestUtils.setField(userEntity, "id", id);
+		return userEntity;
+	}
+
+	private void hashPasswords() {
+		when(passwordService.hash(Mockito.anyString()))
+			.thenAnswer(invocation -> CompletableFuture.completedFuture("hashed-" + invocation.getArgument(0)));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testCreateUsers_ChunkedTransactions() {
+		hashPasswords();
+		when(userRepository.saveAll(Mockito.anyList())).thenAnswer(invocation -> {
+			List<UserEntity> saved = new ArrayList<>();
+			for (UserEntity userEntity : (List<UserEntity>) invocation.getArgument(0)) {
+				ReflectionTestUtils.setField(userEntity, "id", (long) saved.size() + 1);
+				saved.add(userEntity);
+			}
+			return saved;
+		});
+
+		List<BatchItemResult> results = userBatchService.createUsers(Arrays.asList(
+			new CreateUserRequest("a@testing.com", "A", "password", "a"),
+			new CreateUserRequest("b@testing.com", "B", "password", "b"),
+			new CreateUserRequest("c@testing.com", "C", "password", "c")));
+
+		verify(userRepository, times(2)).saveAll(Mockito.anyList());
+		assertEquals(3, results.size());
+		assertEquals(HttpStatus.CREATED, results.get(2).getStatus());
+		assertEquals(2, results.get(2).getIndex());
+		assertEquals("c", results.get(2).getUser().getUsername());
+		verify(passwordService, times(3)).hash("password");
+	}
+
+	@Test
+	public void testCreateUsers_HashingSaturated() {
+		when(passwordService.hash(Mockito.anyString())).thenThrow(new TaskRejectedException("saturated"));
+
+		List<BatchItemResult> results = userBatchService.createUsers(Collections.singletonList(
+			new CreateUserRequest("a@testing.com", "A", "password", "a")));
+
+		verify(userRepository, Mockito.never()).saveAll(Mockito.anyList());
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, results.get(0).getStatus());
+	}
+
+	@Test
+	public void testCreateUsers_NoHashingPermitWithinWait() {
+		// Every permit held by other batches
+		userBatchService.hashingConcurrency = 0;
+		userBatchService.hashingWaitMillis = 10L;
+		userBatchService.init();
+
+		List<BatchItemResult> results = userBatchService.createUsers(Arrays.asList(
+			new CreateUserRequest("a@testing.com", "A", "password", "a"),
+			new CreateUserRequest("b@testing.com", "B", "password", "b")));
+
+		verify(passwordService, Mockito.never()).hash(Mockito.anyString());
+		verify(userRepository, Mockito.never()).saveAll(Mockito.anyList());
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, results.get(0).getStatus());
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, results.get(1).getStatus());
+	}
+
+	@Test
+	public void testCreateUsers_HashingFailureReportedForItsItemOnly() {
+		CompletableFuture<String> rejected = new CompletableFuture<>();
+		rejected.completeExceptionally(new TaskRejectedException("saturated"));
+		when(passwordService.hash("first")).thenReturn(rejected);
+		when(passwordService.hash("second")).thenReturn(CompletableFuture.completedFuture("hashed-second"));
+		when(userRepository.saveAll(Mockito.anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+		List<BatchItemResult> results = userBatchService.createUsers(Arrays.asList(
+			new CreateUserRequest("a@testing.com", "A", "first", "a"),
+			new CreateUserRequest("b@testing.com", "B", "second", "b")));
+
+		assertEquals(2, results.size());
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, results.get(0).getStatus());
+		assertEquals("saturated", results.get(0).getMessage());
+		assertEquals(HttpStatus.CREATED, results.get(1).getStatus());
+		assertEquals(1, results.get(1).getIndex());
+	}
+
+	@Test
+	public void testCreateUsers_HashingConcurrencyCapped() {
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicInteger maxInFlight = new AtomicInteger();
+		when(passwordService.hash(Mockito.anyString())).thenAnswer(invocation -> {
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			return CompletableFuture.supplyAsync(() -> {
+				try {
+					Thread.sleep(5L);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				inFlight.decrementAndGet();
+				return "hashed";
+			});
+		});
+		when(userRepository.saveAll(Mockito.anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+		userBatchService.chunkSize = 6;
+
+		List<CreateUserRequest> requests = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			requests.add(new CreateUserRequest(i + "@testing.com", "User" + i, "password", "user" + i));
+		}
+		userBatchService.createUsers(requests);
+
+		assertTrue(maxInFlight.get() <= 2);
+		verify(passwordService, times(6)).hash("password");
+	}
+
+	@Test
+	public void testCreateUsers_FailedChunkReportedPerItem() {
+		hashPasswords();
+		when(userRepository.saveAll(Mockito.anyList())).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+		List<BatchItemResult> results = userBatchService.createUsers(Collections.singletonList(
+			new CreateUserRequest("a@testing.com", "A", "password", "a")));
+
+		assertEquals(1, results.size());
+		assertEquals(HttpStatus.CONFLICT, results.get(0).getStatus());
+		assertNull(results.get(0).getUser());
+	}
+
+	@Test
+	public void testUpdateUsers_MixedResults() {
+		hashPasswords();
+		when(userRepository.findAllById(Mockito.anyList())).thenReturn(Collections.singletonList(userEntity(1L)));
+
+		List<BatchItemResult> results = userBatchService.updateUsers(Arrays.asList(
+			new BatchUpdateUserRequest("1", "updated@testing.com", "Updated", "password", "updated"),
+			new BatchUpdateUserRequest("15", "missing@testing.com", "Missing", "password", "missing")));
+
+		assertEquals(HttpStatus.OK, results.get(0).getStatus());
+		assertEquals("updated@testing.com", results.get(0).getUser().getEmail());
+		assertEquals(HttpStatus.NOT_FOUND, results.get(1).getStatus());
+		assertEquals("15", results.get(1).getId());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testDeleteUsers_MixedResults() {
+		when(userRepository.findAllById(Mockito.anyList())).thenReturn(Collections.singletonList(userEntity(1L)));
+
+		List<BatchItemResult> results = userBatchService.deleteUsers(Arrays.asList("1", "abc"));
+
+		verify(userRepository).deleteInBatch(Mockito.anyCollection());
+		assertEquals(HttpStatus.OK, results.get(0).getStatus());
+		assertEquals("TestUser1", results.get(0).getUser().getName());
+		assertEquals(HttpStatus.NOT_FOUND, results.get(1).getStatus());
+	}
+
+	private UserUpdateBufferImpl writeBehind() {
+		UserUpdateBufferImpl writeBehind = new UserUpdateBufferImpl();
+		writeBehind.userRepository = userRepository;
+		writeBehind.cacheManager = cacheManager;
+		writeBehind.transactionManager = transactionManager;
+		writeBehind.maxBatchSize = 100;
+		writeBehind.waitForFlush = true;
+		userBatchService.userUpdateBuffer = writeBehind;
+		return writeBehind;
+	}
+
+	@Test
+	public void testUpdateUsers_BufferedUpdateWrittenBeforeTheBatch() {
+		UserUpdateBufferImpl writeBehind = writeBehind();
+		hashPasswords();
+		when(userRepository.updateById(1L, "buffered@testing.com", "Buffered", "hash", "buffered")).thenReturn(1);
+		when(userRepository.findAllById(Collections.singletonList(1L)))
+			.thenReturn(Collections.singletonList(userEntity(1L)));
+		CompletableFuture<User> buffered = writeBehind.update(1L,
+			new UpdateUserRequest("buffered@testing.com", "Buffered", "password", "buffered"), "hash");
+
+		List<BatchItemResult> results = userBatchService.updateUsers(Collections.singletonList(
+			new BatchUpdateUserRequest("1", "batch@testing.com", "Batch", "password", "batch")));
+		writeBehind.flush();
+
+		InOrder inOrder = Mockito.inOrder(userRepository);
+		inOrder.verify(userRepository).updateById(1L, "buffered@testing.com", "Buffered", "hash", "buffered");
+		inOrder.verify(userRepository).findAllById(Collections.singletonList(1L));
+		verify(userRepository, times(1)).updateById(Mockito.anyLong(), Mockito.anyString(), Mockito.anyString(),
+			Mockito.anyString(), Mockito.anyString());
+		assertEquals("Buffered", buffered.join().getName());
+		assertEquals("Batch", results.get(0).getUser().getName());
+		assertFalse(writeBehind.pending(1L).isPresent());
+	}
+
+	@Test
+	public void testDeleteUsers_DropsBufferedUpdates() {
+		UserUpdateBufferImpl writeBehind = writeBehind();
+		when(userRepository.findAllById(Mockito.anyList())).thenReturn(Collections.singletonList(userEntity(1L)));
+		CompletableFuture<User> buffered = writeBehind.update(1L,
+			new UpdateUserRequest("buffered@testing.com", "Buffered", "password", "buffered"), "hash");
+
+		userBatchService.deleteUsers(Collections.singletonList("1"));
+		writeBehind.flush();
+
+		verify(userRepository, never()).updateById(Mockito.anyLong(), Mockito.anyString(), Mockito.anyString(),
+			Mockito.anyString(), Mockito.anyString());
+		assertTrue(buffered.isCompletedExceptionally());
+		assertFalse(writeBehind.pending(1L).isPresent());
+	}
+
+	@Test
+	public void testGetUsers_CacheFirstThenChunkedInQueries() {
+		Cache cache = Mockito.mock(Cache.class);
+		when(cacheManager.getCache("users")).thenReturn(cache);
+		when(cache.get(2L, User.class)).thenReturn(new User("2", "test2@testing.com", "Cached", "testusername2", 1L));
+		when(userUpdateBuffer.pending(3L))
+			.thenReturn(Optional.of(new User("3", "test3@testing.com", "Buffered", "testusername3", null)));
+		when(userRepository.findAllById(Arrays.asList(5L, 1L))).thenReturn(Collections.singletonList(userEntity(5L)));
+		when(userRepository.findAllById(Collections.singletonList(4L)))
+			.thenReturn(Collections.singletonList(userEntity(4L)));
+
+		List<BatchItemResult> results = userBatchService.getUsers(Arrays.asList("5", "2", "1", "abc", "3", "4", "5"));
+
+		verify(userRepository, times(2)).findAllById(Mockito.anyList());
+		assertEquals(7, results.size());
+		assertEquals("TestUser5", results.get(0).getUser().getName());
+		assertEquals("Cached", results.get(1).getUser().getName());
+		assertEquals(HttpStatus.NOT_FOUND, results.get(2).getStatus());
+		assertEquals("1", results.get(2).getId());
+		assertEquals(HttpStatus.NOT_FOUND, results.get(3).getStatus());
+		assertEquals("Buffered", results.get(4).getUser().getName());
+		assertEquals("TestUser4", results.get(5).getUser().getName());
+		assertEquals("TestUser5", results.get(6).getUser().getName());
+		assertEquals(6, results.get(6).getIndex());
+	}
+}
@@ -0,0 +1,152 @@
+package com.nilotpal.api.userapi.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.nilotpal.api.userapi.entity.UserEntity;
+import com.nilotpal.api.userapi.repository.UserRepository;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UserLoaderTest {
+	@InjectMocks
+	private UserLoaderImpl userLoader;
+
+	@Mock
+	private UserRepository userRepository;
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	@Before
+	public void setUp() {
+		userLoader.enabled = true;
+		userLoader.maxBatchSize = 100;
+	}
+
+	@After
+	public void tearDown() {
+		userLoader.stop();
+	}
+
+	private static UserEntity user(long id) {
+		UserEntity userEntity = new UserEntity("test" + id + "@testing.com", "TestUser" + id, "password",
+				"testusername" + id);
+		ReflectionTestUtils.setField(userEntity, "id", id);
+		return userEntity;
+	}
+
+	@Test
+	public void testLoad_ConcurrentMissesShareOneQuery() throws Exception {
+		userLoader.start();
+		CountDownLatch queryStarted = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		when(userRepository.findById(5L)).thenAnswer(invocation -> {
+			queryStarted.countDown();
+			release.await();
+			return Optional.of(user(5L));
+		});
+
+		CompletableFuture<Optional<UserEntity>> leader = CompletableFuture.supplyAsync(() -> userLoader.load(5L));
+		assertTrue(queryStarted.await(5, TimeUnit.SECONDS));
+		List<Thread> joiners = new ArrayList<>();
+		List<Optional<UserEntity>> joined = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			Thread joiner = new Thread(() -> {
+				Optional<UserEntity> userEntity = userLoader.load(5L);
+				synchronized (joined) {
+					joined.add(userEntity);
+				}
+			});
+			joiners.add(joiner);
+			joiner.start();
+		}
+		for (Thread joiner : joiners) {
+			while (joiner.getState() != Thread.State.WAITING) {
+				Thread.sleep(1L);
+			}
+		}
+		release.countDown();
+		for (Thread joiner : joiners) {
+			joiner.join(5000L);
+		}
+
+		assertEquals(Long.valueOf(5L), leader.get(5, TimeUnit.SECONDS).get().getId());
+		assertEquals(4, joined.size());
+		joined.forEach(userEntity -> assertEquals(Long.valueOf(5L), userEntity.get().getId()));
+		verify(userRepository, times(1)).findById(5L);
+	}
+
+	@Test
+	public void testLoad_NextMissQueriesAgain() throws Exception {
+		userLoader.start();
+		when(userRepository.findById(5L)).thenReturn(Optional.of(user(5L)));
+
+		userLoader.load(5L);
+		userLoader.load(5L);
+
+		verify(userRepository, times(2)).findById(5L);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testLoad_FailurePropagates() throws Exception {
+		userLoader.start();
+		when(userRepository.findById(5L)).thenThrow(new IllegalStateException("connection lost"));
+
+		userLoader.load(5L);
+	}
+
+	@Test
+	public void testLoad_BatchedIntoOneInQuery() throws Exception {
+		userLoader.batchWindowMillis = 10000L;
+		userLoader.maxBatchSize = 3;
+		userLoader.start();
+		when(userRepository.findAllById(Mockito.anyIterable())).thenReturn(Arrays.asList(user(1L), user(2L)));
+
+		List<CompletableFuture<Optional<UserEntity>>> loads = new ArrayList<>();
+		for (long id = 1; id <= 3; id++) {
+			long userId = id;
+			loads.add(CompletableFuture.supplyAsync(() -> userLoader.load(userId)));
+		}
+
+		assertEquals(Long.valueOf(1L), loads.get(0).get(5, TimeUnit.SECONDS).get().getId());
+		assertEquals(Long.valueOf(2L), loads.get(1).get(5, TimeUnit.SECONDS).get().getId());
+		assertFalse(loads.get(2).get(5, TimeUnit.SECONDS).isPresent());
+		verify(userRepository, times(1)).findAllById(Mockito.anyIterable());
+		verify(userRepository, Mockito.never()).findById(Mockito.anyLong());
+	}
+
+	@Test
+	public void testLoad_DisabledQueriesEachCall() throws Exception {
+		userLoader.enabled = false;
+		userLoader.start();
+		when(userRepository.findById(5L)).thenReturn(Optional.of(user(5L)));
+
+		userLoader.load(5L);
+		userLoader.load(5L);
+
+		verify(userRepository, times(2)).findById(5L);
+	}
+}
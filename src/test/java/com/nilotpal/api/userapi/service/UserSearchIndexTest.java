@@ -0,0 +1,137 @@
+package com.nilotpal.api.userapi.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.nilotpal.api.userapi.entity.UserEntity;
+import com.nilotpal.api.userapi.model.User;
+import com.nilotpal.api.userapi.repository.UserRepository;
+
+public class UserSearchIndexTest {
+	private UserSearchIndexImpl userSearchIndex;
+
+	@Before
+	public void setUp() {
+		userSearchIndex = new UserSearchIndexImpl();
+		userSearchIndex.index(new User("3", "anna.smith@testing.com", "Anna Smith", "annas", 0L));
+		userSearchIndex.index(new User("1", "ann@testing.com", "Ann Jones", "ann", 0L));
+		userSearchIndex.index(new User("2", "bob@testing.com", "Bob Annandale", "bobby", 0L));
+	}
+
+	@Test
+	public void testSearch_PrefixMatchesInTokenThenIdOrder() {
+		// "ann" (1) sorts before "anna" (3) and "annandale" (2)
+		assertEquals(Arrays.asList(1L, 3L, 2L), userSearchIndex.search("Ann", 10));
+		assertEquals(Arrays.asList(3L), userSearchIndex.search("SMI", 10));
+		assertEquals(Arrays.asList(2L), userSearchIndex.search("bob@test", 10));
+	}
+
+	@Test
+	public void testSearch_EveryWordHasToMatch() {
+		assertEquals(Arrays.asList(3L), userSearchIndex.search("ann smith", 10));
+		assertEquals(Arrays.asList(2L), userSearchIndex.search("  bo   anna ", 10));
+		assertTrue(userSearchIndex.search("ann nobody", 10).isEmpty());
+	}
+
+	@Test
+	public void testSearch_StopsAtLimit() {
+		assertEquals(Arrays.asList(1L, 3L), userSearchIndex.search("an", 2));
+		assertEquals(Collections.emptyList(), userSearchIndex.search("   ", 10));
+	}
+
+	@Test
+	public void testIndex_UpdateReplacesOldTokens() {
+		userSearchIndex.index(new User("2", "robert@testing.com", "Robert Annandale", "rob", 1L));
+
+		assertTrue(userSearchIndex.search("bob", 10).isEmpty());
+		assertEquals(Arrays.asList(2L), userSearchIndex.search("rob", 10));
+		assertEquals(Arrays.asList(2L), userSearchIndex.search("annan", 10));
+		assertEquals(3, userSearchIndex.size());
+	}
+
+	@Test
+	public void testRemove_UserNoLongerFound() {
+		userSearchIndex.remove(1L);
+		userSearchIndex.remove(42L);
+
+		assertEquals(Arrays.asList(3L, 2L), userSearchIndex.search("ann", 10));
+		assertEquals(2, userSearchIndex.size());
+	}
+
+	@Test
+	public void testIndex_OlderVersionIgnored() {
+		userSearchIndex.index(new User("2", "robert@testing.com", "Robert Annandale", "rob", 2L));
+		userSearchIndex.index(new User("2", "bobby@testing.com", "Bobby Annandale", "bobby", 1L));
+
+		assertEquals(Arrays.asList(2L), userSearchIndex.search("rob", 10));
+		assertTrue(userSearchIndex.search("bobby", 10).isEmpty());
+	}
+
+	@Test
+	public void testRemove_LaterWriteDoesNotBringUserBack() {
+		userSearchIndex.remove(1L);
+		userSearchIndex.index(new User("1", "ann@testing.com", "Ann Jones", "ann", 5L));
+
+		assertEquals(Arrays.asList(3L, 2L), userSearchIndex.search("ann", 10));
+	}
+
+	@Test
+	public void testIndex_WithoutVersionReadsTheRow() {
+		useDatabase();
+		when(userSearchIndex.userRepository.findById(2L)).thenReturn(Optional.of(userEntity(2L, "Robert", 3L)));
+
+		userSearchIndex.index(new User("2", "bob@testing.com", "Overtaken", "bobby"));
+
+		assertEquals(Arrays.asList(2L), userSearchIndex.search("robert", 10));
+		assertTrue(userSearchIndex.search("overtaken", 10).isEmpty());
+	}
+
+	@Test
+	public void testRebuild_KeepsWritesMadeWhileReading() {
+		useDatabase();
+		when(userSearchIndex.userRepository.streamAllByOrderByIdAsc()).thenAnswer(invocation -> {
+			// Committed after the rows were read
+			userSearchIndex.index(new User("9", "zoe@testing.com", "Zoe", "zoe", 0L));
+			userSearchIndex.remove(4L);
+			return Stream.of(userEntity(4L, "Yves", 0L), userEntity(5L, "Xavier", 0L));
+		});
+		assertFalse(userSearchIndex.isReady());
+
+		userSearchIndex.rebuild();
+
+		assertTrue(userSearchIndex.isReady());
+		assertEquals(Arrays.asList(9L), userSearchIndex.search("zoe", 10));
+		assertTrue(userSearchIndex.search("yves", 10).isEmpty());
+		assertEquals(Arrays.asList(5L), userSearchIndex.search("xavier", 10));
+		assertTrue(userSearchIndex.search("ann", 10).isEmpty());
+	}
+
+	private void useDatabase() {
+		userSearchIndex.userRepository = Mockito.mock(UserRepository.class);
+		userSearchIndex.transactionManager = Mockito.mock(PlatformTransactionManager.class);
+		userSearchIndex.entityManager = Mockito.mock(EntityManager.class);
+	}
+
+	private static UserEntity userEntity(long id, String name, long version) {
+		UserEntity userEntity = new UserEntity(name.toLowerCase() + "@testing.com", name, "password",
+			name.toLowerCase());
+		ReflectionTestUtils.setField(userEntity, "id", id);
+		ReflectionTestUtils.setField(userEntity, "version", version);
+		return userEntity;
+	}
+}
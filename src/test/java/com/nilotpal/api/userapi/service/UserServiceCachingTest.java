@@ -0,0 +1,89 @@
+package com.nilotpal.api.userapi.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.nilotpal.api.userapi.config.CacheConfig;
+import com.nilotpal.api.userapi.entity.UserEntity;
+import com.nilotpal.api.userapi.model.UpdateUserRequest;
+import com.nilotpal.api.userapi.repository.UserRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class UserServiceCachingTest {
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@MockBean
+	private UserRepository userRepository;
+
+	@Before
+	public void setUp() {
+		cacheManager.getCache(CacheConfig.USERS_CACHE).clear();
+		UserEntity userEntity = new UserEntity("test7@testing.com", "TestUser7", "password", "testusername7");
+		ReflectionTestUtils.setField(userEntity, "id", 7L);
+		ReflectionTestUtils.setField(userEntity, "version", 0L);
+		when(userRepository.findById(7L)).thenReturn(Optional.of(userEntity));
+	}
+
+	@Test
+	public void testGetUserById_SecondReadServedFromCache() throws Exception {
+		userService.getUserById("7");
+		assertEquals("TestUser7", userService.getUserById("7").getName());
+
+		verify(userRepository, times(1)).findById(7L);
+		assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", CacheConfig.USERS_CACHE)
+			.tag("result", "hit").functionCounter().count(), 0.0);
+		assertTrue(meterRegistry.get("cache.load").tag("cache", CacheConfig.USERS_CACHE)
+			.tag("result", "success").functionCounter().count() >= 1.0);
+		assertNotNull(meterRegistry.get("cache.load.duration").timeGauge());
+	}
+
+	@Test
+	public void testUpdateUser_EvictsCachedUser() throws Exception {
+		when(userRepository.updateById(Mockito.eq(7L), Mockito.eq("test7@testing.com"), Mockito.eq("Renamed"),
+			Mockito.startsWith("$2a$"), Mockito.eq("testusername7"))).thenReturn(1);
+		userService.getUserById("7");
+		userService.updateUser("7", new UpdateUserRequest("test7@testing.com", "Renamed", "password", "testusername7"))
+			.join();
+		userService.getUserById("7");
+
+		// The search index reads the updated row for its version as well
+		verify(userRepository, times(3)).findById(7L);
+	}
+
+	@Test
+	public void testDeleteUser_EvictsCachedUser() throws Exception {
+		when(userRepository.removeById(7L)).thenReturn(1);
+		userService.getUserById("7");
+		userService.deleteUser("7");
+		userService.getUserById("7");
+
+		verify(userRepository, times(3)).findById(7L);
+	}
+}
@@ -1,35 +1,58 @@
 package com.nilotpal.api.userapi.service;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertNotNull;
-import static org.mockito.Mockito.doNothing;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import javax.persistence.Tuple;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import com.nilotpal.api.userapi.entity.UserEntity;
+import com.nilotpal.api.userapi.exceptions.InvalidCursorException;
+import com.nilotpal.api.userapi.exceptions.PreconditionFailedException;
+import com.nilotpal.api.userapi.exceptions.SearchUnavailableException;
 import com.nilotpal.api.userapi.exceptions.UserNotFoundException;
 import com.nilotpal.api.userapi.model.CreateUserRequest;
 import com.nilotpal.api.userapi.model.UpdateUserRequest;
 import com.nilotpal.api.userapi.model.User;
+import com.nilotpal.api.userapi.model.UserField;
+import com.nilotpal.api.userapi.model.UserSlice;
+import com.nilotpal.api.userapi.model.VersionTag;
 import com.nilotpal.api.userapi.repository.UserRepository;
+import com.nilotpal.api.userapi.repository.UserVersion;
 
 @RunWith(MockitoJUnitRunner.class)
 public class UserServiceTest {
 	private static UserEntity createdUser;
-	private static UserEntity updatedUser;
 	private static UserEntity deletedUser;
 	private static List<UserEntity> dummyUsers;
 	private static CreateUserRequest userToCreate;
@@ -41,6 +64,21 @@ public class UserServiceTest {
 	@Mock
 	private UserRepository userRepository;
 
+	@Mock
+	private PasswordService passwordService;
+
+	@Mock
+	private CacheManager cacheManager;
+
+	@Mock
+	private UserUpdateBuffer userUpdateBuffer;
+
+	@Mock
+	private UserSearchIndex userSearchIndex;
+
+	@Mock
+	private UserLoader userLoader;
+
 	@BeforeClass
 	public static void setUp() {
 		dummyUsers = new ArrayList<>();
@@ -52,13 +90,12 @@ public class UserServiceTest {
 		userToUpdate = new UpdateUserRequest("test5@testing.com", "TestUser5", "password", "testusername5");
 
 		createdUser = new UserEntity("test4@testing.com", "TestUser4", "password", "testusername4");
-		updatedUser = new UserEntity("test5@testing.com", "TestUser5", "password5", "testusername5");
 		deletedUser = new UserEntity("test6@testing.com", "TestUser6", "password", "testusername6");
 	}
 
 	@Test
 	public void testGetAllUsers_WithoutPaginationDetails() throws Exception {
-		when(userRepository.findAll()).thenReturn(dummyUsers);
+		when(userRepository.findAll(Mockito.any(Sort.class))).thenReturn(dummyUsers);
 		List<User> allUsers = userService.getAllUsers(null, null);
 
 		assertEquals(3, allUsers.size());
@@ -78,71 +115,322 @@ public class UserServiceTest {
 		assertEquals("TestUser3", allUsers.get(2).getName());
 	}
 
+	@Test
+	public void testGetUsersAfter_FirstSlice() throws Exception {
+		List<UserEntity> firstSlice = new ArrayList<>();
+		for (long id = 1; id <= 3; id++) {
+			UserEntity userEntity = new UserEntity("test" + id + "@testing.com", "TestUser" + id, "password",
+				"testusername" + id);
+			ReflectionTestUtils.setField(userEntity, "id", id);
+			firstSlice.add(userEntity);
+		}
+		when(userRepository.findByIdGreaterThanOrderByIdAsc(Mockito.eq(0L), Mockito.any(Pageable.class)))
+			.thenReturn(new SliceImpl<UserEntity>(firstSlice, PageRequest.of(0, 3), true));
+		UserSlice<User> slice = userService.getUsersAfter(null, 3);
+
+		assertEquals(3, slice.getUsers().size());
+		assertEquals("testusername1", slice.getUsers().get(0).getUsername());
+		assertEquals(3L, UserServiceImpl.decodeCursor(slice.getNextCursor()));
+	}
+
+	@Test
+	public void testGetUsersAfter_LastSlice() throws Exception {
+		when(userRepository.findByIdGreaterThanOrderByIdAsc(Mockito.eq(42L), Mockito.any(Pageable.class)))
+			.thenReturn(new SliceImpl<UserEntity>(dummyUsers, PageRequest.of(0, 3), false));
+		UserSlice<User> slice = userService.getUsersAfter(UserServiceImpl.encodeCursor(42L), 3);
+
+		assertEquals(3, slice.getUsers().size());
+		assertFalse(slice.hasNext());
+		assertNull(slice.getNextCursor());
+	}
+
+	@Test
+	public void testGetAllUsers_WithFields() throws Exception {
+		Tuple row = Mockito.mock(Tuple.class);
+		when(row.get("id", Long.class)).thenReturn(1L);
+		when(row.get("version", Long.class)).thenReturn(2L);
+		when(row.get("username", String.class)).thenReturn("testusername1");
+		List<Tuple> rows = new ArrayList<>();
+		rows.add(row);
+		when(userRepository.findFieldsBy(Mockito.eq(EnumSet.of(UserField.USERNAME)), Mockito.any(Pageable.class)))
+			.thenReturn(rows);
+		List<User> users = userService.getAllUsers(0, 3, EnumSet.of(UserField.USERNAME));
+
+		verify(userRepository, never()).findAll(Mockito.any(Pageable.class));
+		assertEquals(1, users.size());
+		assertEquals("1", users.get(0).getId());
+		assertEquals("testusername1", users.get(0).getUsername());
+		assertEquals(Long.valueOf(2L), users.get(0).getVersion());
+		assertNull(users.get(0).getEmail());
+		assertNull(users.get(0).getName());
+	}
+
+	@Test(expected = InvalidCursorException.class)
+	public void testGetUsersAfter_InvalidCursor() throws Exception {
+		userService.getUsersAfter("not-a-cursor", 3);
+	}
+
 	@Test
 	public void testGetUserById_UserExists() throws Exception {
-		when(userRepository.findById(Mockito.anyLong())).thenReturn(Optional.of(dummyUsers.get(0)));
+		when(userLoader.load(Mockito.anyLong())).thenReturn(Optional.of(dummyUsers.get(0)));
 		User user = userService.getUserById("1");
 
 		assertNotNull(user);
 		assertEquals("test1@testing.com", user.getEmail());
 		assertEquals("TestUser1", user.getName());
-		assertEquals("password", user.getPassword());
 		assertEquals("testusername1", user.getUsername());
 	}
 
 	@Test(expected = UserNotFoundException.class)
 	public void testGetUserById_UserNotExists() throws Exception {
-		when(userRepository.findById(Mockito.anyLong())).thenReturn(Optional.ofNullable(null));
+		when(userLoader.load(Mockito.anyLong())).thenReturn(Optional.ofNullable(null));
 		userService.getUserById("10");
 	}
 
+	@Test
+	public void testGetUserVersion_FromCache() throws Exception {
+		Cache cache = Mockito.mock(Cache.class);
+		when(cacheManager.getCache("users")).thenReturn(cache);
+		when(cache.get(1L, User.class)).thenReturn(new User("1", "test1@testing.com", "TestUser1", "testusername1", 4L));
+
+		assertEquals(Long.valueOf(4L), userService.getUserVersion("1"));
+		verify(userRepository, never()).findVersionById(Mockito.anyLong());
+	}
+
+	@Test
+	public void testGetUserVersion_FromRepository() throws Exception {
+		when(userRepository.findVersionById(1L)).thenReturn(Optional.of(7L));
+
+		assertEquals(Long.valueOf(7L), userService.getUserVersion("1"));
+		verify(userRepository, never()).findById(Mockito.anyLong());
+	}
+
+	@Test(expected = UserNotFoundException.class)
+	public void testGetUserVersion_UserNotExists() throws Exception {
+		when(userRepository.findVersionById(15L)).thenReturn(Optional.empty());
+		userService.getUserVersion("15");
+	}
+
+	@Test
+	public void testGetUsersVersionTag_MatchesListTag() throws Exception {
+		List<UserEntity> users = new ArrayList<>();
+		List<UserVersion> versions = new ArrayList<>();
+		for (long id = 1; id <= 3; id++) {
+			UserEntity userEntity = new UserEntity("test" + id + "@testing.com", "TestUser" + id, "password",
+				"testusername" + id);
+			ReflectionTestUtils.setField(userEntity, "id", id);
+			ReflectionTestUtils.setField(userEntity, "version", id * 2);
+			users.add(userEntity);
+			versions.add(userVersion(id, id * 2));
+		}
+		when(userRepository.findAll(Mockito.any(Sort.class))).thenReturn(users);
+		when(userRepository.findVersionsBy(Mockito.any(Sort.class))).thenReturn(versions);
+
+		assertEquals(VersionTag.of(userService.getAllUsers(null, null), false),
+			userService.getUsersVersionTag(null, null));
+	}
+
+	@Test
+	public void testGetUserByUsername_UserExists() throws Exception {
+		when(userRepository.findFirstByUsernameOrderByIdAsc("testusername2")).thenReturn(Optional.of(dummyUsers.get(1)));
+		User user = userService.getUserByUsername("testusername2");
+
+		assertEquals("test2@testing.com", user.getEmail());
+		assertEquals("TestUser2", user.getName());
+	}
+
+	@Test(expected = UserNotFoundException.class)
+	public void testGetUserByEmail_UserNotExists() throws Exception {
+		when(userRepository.findFirstByEmailOrderByIdAsc("nobody@testing.com")).thenReturn(Optional.empty());
+		userService.getUserByEmail("nobody@testing.com");
+	}
+
 	@Test
 	public void testCreateUser() throws Exception {
+		when(passwordService.hash("password")).thenReturn(CompletableFuture.completedFuture("hashed-password"));
 		when(userRepository.save(Mockito.any(UserEntity.class))).thenReturn(createdUser);
-		User user = userService.createUser(userToCreate);
+		User user = userService.createUser(userToCreate).join();
 
+		ArgumentCaptor<UserEntity> saved = ArgumentCaptor.forClass(UserEntity.class);
+		verify(userRepository).save(saved.capture());
+		assertEquals("hashed-password", saved.getValue().getPassword());
 		assertNotNull(user);
 		assertEquals("test4@testing.com", user.getEmail());
 		assertEquals("TestUser4", user.getName());
-		assertEquals("password", user.getPassword());
 		assertEquals("testusername4", user.getUsername());
 	}
 
 	@Test
 	public void testUpdateUser_ExistingUser() throws Exception {
-		when(userRepository.findById(Mockito.anyLong())).thenReturn(Optional.of(updatedUser));
-		when(userRepository.save(Mockito.any(UserEntity.class))).thenReturn(updatedUser);
-		User user = userService.updateUser("5", userToUpdate);
+		when(passwordService.hash("password")).thenReturn(CompletableFuture.completedFuture("hashed-password"));
+		when(userRepository.updateById(5L, "test5@testing.com", "TestUser5", "hashed-password", "testusername5"))
+			.thenReturn(1);
+		User user = userService.updateUser("5", userToUpdate).join();
 
+		verify(userRepository, never()).findById(Mockito.anyLong());
+		verify(cacheManager).getCache("users");
 		assertNotNull(user);
+		assertEquals("5", user.getId());
 		assertEquals("test5@testing.com", user.getEmail());
 		assertEquals("TestUser5", user.getName());
-		assertEquals("password", user.getPassword());
 		assertEquals("testusername5", user.getUsername());
 	}
 
+	@Test
+	public void testSearchUsers_InIndexOrder() throws Exception {
+		UserEntity first = new UserEntity("test9@testing.com", "TestUser9", "password", "testusername9");
+		UserEntity second = new UserEntity("test4@testing.com", "TestUser4", "password", "testusername4");
+		ReflectionTestUtils.setField(first, "id", 9L);
+		ReflectionTestUtils.setField(second, "id", 4L);
+		when(userSearchIndex.isReady()).thenReturn(true);
+		when(userSearchIndex.search("test", UserServiceImpl.DEFAULT_SEARCH_LIMIT)).thenReturn(Arrays.asList(9L, 5L, 4L));
+		when(userRepository.findAllById(Arrays.asList(9L, 5L, 4L))).thenReturn(Arrays.asList(second, first));
+
+		List<User> users = userService.searchUsers("test", null);
+
+		// 5 was deleted after the index was searched
+		assertEquals(2, users.size());
+		assertEquals("9", users.get(0).getId());
+		assertEquals("4", users.get(1).getId());
+	}
+
+	@Test(expected = SearchUnavailableException.class)
+	public void testSearchUsers_UnavailableUntilIndexBuilt() throws Exception {
+		userService.searchUsers("test", null);
+	}
+
+	@Test
+	public void testDeleteUserById_RemovedFromSearchIndex() throws Exception {
+		when(userRepository.removeById(5L)).thenReturn(1);
+
+		userService.deleteUserById("5");
+
+		verify(userSearchIndex).remove(5L);
+	}
+
+	@Test
+	public void testUpdateUser_WriteBehindBuffersUpdate() throws Exception {
+		User buffered = new User("5", "test5@testing.com", "TestUser5", "testusername5", null);
+		when(userUpdateBuffer.isEnabled()).thenReturn(true);
+		when(passwordService.hash("password")).thenReturn(CompletableFuture.completedFuture("hashed-password"));
+		when(userUpdateBuffer.update(5L, userToUpdate, "hashed-password"))
+			.thenReturn(CompletableFuture.completedFuture(buffered));
+
+		assertEquals(buffered, userService.updateUser("5", userToUpdate).join());
+		verify(userRepository, never()).updateById(Mockito.anyLong(), Mockito.anyString(), Mockito.anyString(),
+			Mockito.anyString(), Mockito.anyString());
+	}
+
+	@Test
+	public void testGetUserById_ReadsBufferedUpdate() throws Exception {
+		when(userUpdateBuffer.pending(5L))
+			.thenReturn(Optional.of(new User("5", "test5@testing.com", "Buffered", "testusername5", null)));
+
+		assertEquals("Buffered", userService.getUserById("5").getName());
+		assertNull(userService.getUserVersion("5"));
+		verify(userLoader, never()).load(Mockito.anyLong());
+	}
+
 	@Test(expected = UserNotFoundException.class)
 	public void testUpdateUser_NonExistentUser() throws Exception {
-		when(userRepository.findById(Mockito.anyLong())).thenReturn(Optional.ofNullable(null));
-		userService.updateUser("15", userToUpdate);
+		when(passwordService.hash("password")).thenReturn(CompletableFuture.completedFuture("hashed-password"));
+		when(userRepository.updateById(Mockito.anyLong(), Mockito.anyString(), Mockito.anyString(),
+			Mockito.anyString(), Mockito.anyString())).thenReturn(0);
+		try {
+			userService.updateUser("15", userToUpdate).join();
+		} catch (CompletionException e) {
+			throw (Exception) e.getCause();
+		}
+	}
+
+	@Test
+	public void testUpdateUser_MatchingVersion() throws Exception {
+		when(passwordService.hash("password")).thenReturn(CompletableFuture.completedFuture("hashed-password"));
+		when(userRepository.updateByIdAndVersion(5L, 2L, "test5@testing.com", "TestUser5", "hashed-password",
+			"testusername5")).thenReturn(1);
+		User user = userService.updateUser("5", userToUpdate, 2L).join();
+
+		verify(userRepository, never()).updateById(Mockito.anyLong(), Mockito.anyString(), Mockito.anyString(),
+			Mockito.anyString(), Mockito.anyString());
+		assertEquals(Long.valueOf(3L), user.getVersion());
+	}
+
+	@Test(expected = PreconditionFailedException.class)
+	public void testUpdateUser_StaleVersion() throws Exception {
+		when(passwordService.hash("password")).thenReturn(CompletableFuture.completedFuture("hashed-password"));
+		when(userRepository.updateByIdAndVersion(Mockito.anyLong(), Mockito.anyLong(), Mockito.anyString(),
+			Mockito.anyString(), Mockito.anyString(), Mockito.anyString())).thenReturn(0);
+		when(userRepository.existsById(5L)).thenReturn(true);
+		try {
+			userService.updateUser("5", userToUpdate, 1L).join();
+		} catch (CompletionException e) {
+			throw (Exception) e.getCause();
+		}
+	}
+
+	@Test
+	public void testVerifyPassword_RehashesLegacyPassword() throws Exception {
+		when(userRepository.findById(6L)).thenReturn(Optional.of(deletedUser));
+		when(passwordService.matches("password", "password")).thenReturn(CompletableFuture.completedFuture(true));
+		when(passwordService.needsRehash("password")).thenReturn(true);
+		when(passwordService.hash("password")).thenReturn(CompletableFuture.completedFuture("hashed-password"));
+
+		assertTrue(userService.verifyPassword("6", "password").join());
+		verify(userRepository).updatePasswordById(6L, "password", "hashed-password");
+	}
+
+	@Test
+	public void testVerifyPassword_WrongPassword() throws Exception {
+		when(userRepository.findById(6L)).thenReturn(Optional.of(deletedUser));
+		when(passwordService.matches("wrong", "password")).thenReturn(CompletableFuture.completedFuture(false));
+
+		assertFalse(userService.verifyPassword("6", "wrong").join());
+		verify(passwordService, never()).hash(Mockito.anyString());
 	}
 
 	@Test
 	public void testDeleteUser_ExistingUser() throws Exception {
 		when(userRepository.findById(Mockito.anyLong())).thenReturn(Optional.of(deletedUser));
-		doNothing().when(userRepository).delete(Mockito.any(UserEntity.class));
+		when(userRepository.removeById(Mockito.any())).thenReturn(1);
 
 		User user = userService.deleteUser("6");
 		assertNotNull(user);
 		assertEquals("test6@testing.com", user.getEmail());
 		assertEquals("TestUser6", user.getName());
-		assertEquals("password", user.getPassword());
 		assertEquals("testusername6", user.getUsername());
 	}
 
+	@Test
+	public void testDeleteUserById_ExistingUser() throws Exception {
+		when(userRepository.removeById(6L)).thenReturn(1);
+		userService.deleteUserById("6");
+
+		verify(userRepository, never()).findById(Mockito.anyLong());
+	}
+
+	@Test(expected = UserNotFoundException.class)
+	public void testDeleteUserById_NonExistentUser() throws Exception {
+		when(userRepository.removeById(15L)).thenReturn(0);
+		userService.deleteUserById("15");
+	}
+
 	@Test(expected = UserNotFoundException.class)
 	public void testDeleteUser_NonExistentUser() throws Exception {
 		when(userRepository.findById(Mockito.anyLong())).thenReturn(Optional.ofNullable(null));
 		userService.deleteUser("15");
 	}
+
+	private static UserVersion userVersion(final Long id, final Long version) {
+		return new UserVersion() {
+			@Override
+			public Long getId() {
+				return id;
+			}
+
+			@Override
+			public Long getVersion() {
+				return version;
+			}
+		};
+	}
 }
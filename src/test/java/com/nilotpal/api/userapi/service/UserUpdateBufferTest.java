@@ -0,0 +1,157 @@
+package com.nilotpal.api.userapi.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.nilotpal.api.userapi.exceptions.UserNotFoundException;
+import com.nilotpal.api.userapi.model.UpdateUserRequest;
+import com.nilotpal.api.userapi.model.User;
+import com.nilotpal.api.userapi.repository.UserRepository;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UserUpdateBufferTest {
+	@InjectMocks
+	private UserUpdateBufferImpl userUpdateBuffer;
+
+	@Mock
+	private UserRepository userRepository;
+
+	@Mock
+	private CacheManager cacheManager;
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	@Before
+	public void setUp() {
+		// Flushed by the tests themselves, no background flusher is started
+		userUpdateBuffer.maxBatchSize = 100;
+		userUpdateBuffer.waitForFlush = true;
+	}
+
+	private static UpdateUserRequest update(String name) {
+		return new UpdateUserRequest("test5@testing.com", name, "password", "testusername5");
+	}
+
+	@Test
+	public void testUpdates_CoalescedIntoOneWrite() throws Exception {
+		when(userRepository.updateById(5L, "test5@testing.com", "Third", "hash3", "testusername5")).thenReturn(1);
+		CompletableFuture<User> first = userUpdateBuffer.update(5L, update("First"), "hash1");
+		CompletableFuture<User> second = userUpdateBuffer.update(5L, update("Second"), "hash2");
+		CompletableFuture<User> third = userUpdateBuffer.update(5L, update("Third"), "hash3");
+		assertFalse(first.isDone());
+
+		userUpdateBuffer.flush();
+
+		verify(userRepository, times(1)).updateById(Mockito.anyLong(), Mockito.anyString(), Mockito.anyString(),
+			Mockito.anyString(), Mockito.anyString());
+		assertEquals("Third", first.join().getName());
+		assertEquals("Third", second.join().getName());
+		assertEquals("Third", third.join().getName());
+	}
+
+	@Test
+	public void testPending_ReadsBufferedUpdateUntilWritten() throws Exception {
+		when(userRepository.updateById(5L, "test5@testing.com", "Renamed", "hash", "testusername5")).thenReturn(1);
+		userUpdateBuffer.update(5L, update("Renamed"), "hash");
+
+		assertEquals("Renamed", userUpdateBuffer.pending(5L).get().getName());
+		userUpdateBuffer.flush();
+		assertFalse(userUpdateBuffer.pending(5L).isPresent());
+	}
+
+	@Test(expected = UserNotFoundException.class)
+	public void testFlush_MissingUserFailsItsWaiters() throws Exception {
+		when(userRepository.updateById(15L, "test5@testing.com", "Renamed", "hash", "testusername5")).thenReturn(0);
+		CompletableFuture<User> written = userUpdateBuffer.update(15L, update("Renamed"), "hash");
+		userUpdateBuffer.flush();
+		try {
+			written.join();
+		} catch (CompletionException e) {
+			throw (Exception) e.getCause();
+		}
+	}
+
+	@Test
+	public void testFlush_FailingUpdateDoesNotFailTheBatch() throws Exception {
+		when(userRepository.updateById(6L, "test5@testing.com", "Broken", "hash", "testusername5"))
+			.thenThrow(new DataIntegrityViolationException("too long"));
+		when(userRepository.updateById(5L, "test5@testing.com", "Renamed", "hash", "testusername5")).thenReturn(1);
+		CompletableFuture<User> broken = userUpdateBuffer.update(6L, update("Broken"), "hash");
+		CompletableFuture<User> renamed = userUpdateBuffer.update(5L, update("Renamed"), "hash");
+
+		userUpdateBuffer.flush();
+
+		assertEquals("Renamed", renamed.join().getName());
+		assertTrue(broken.isCompletedExceptionally());
+		assertFalse(userUpdateBuffer.pending(6L).isPresent());
+	}
+
+	@Test
+	public void testUpdate_AcknowledgedOnAcceptanceWithoutWaitForFlush() throws Exception {
+		userUpdateBuffer.waitForFlush = false;
+		CompletableFuture<User> accepted = userUpdateBuffer.update(5L, update("Renamed"), "hash");
+
+		assertEquals("Renamed", accepted.join().getName());
+		verify(userRepository, never()).updateById(Mockito.anyLong(), Mockito.anyString(), Mockito.anyString(),
+			Mockito.anyString(), Mockito.anyString());
+	}
+
+	@Test
+	public void testStop_FlushesBufferedUpdates() throws Exception {
+		when(userRepository.updateById(5L, "test5@testing.com", "Renamed", "hash", "testusername5")).thenReturn(1);
+		CompletableFuture<User> written = userUpdateBuffer.update(5L, update("Renamed"), "hash");
+
+		userUpdateBuffer.stop();
+
+		assertEquals("Renamed", written.join().getName());
+	}
+
+	@Test
+	public void testFlushIds_WritesOnlyThoseUsers() throws Exception {
+		when(userRepository.updateById(5L, "test5@testing.com", "Renamed", "hash", "testusername5")).thenReturn(1);
+		CompletableFuture<User> written = userUpdateBuffer.update(5L, update("Renamed"), "hash");
+		CompletableFuture<User> other = userUpdateBuffer.update(6L, update("Other"), "hash");
+
+		userUpdateBuffer.flush(Arrays.asList(5L, 7L));
+
+		assertEquals("Renamed", written.join().getName());
+		assertFalse(other.isDone());
+		assertTrue(userUpdateBuffer.pending(6L).isPresent());
+	}
+
+	@Test(expected = UserNotFoundException.class)
+	public void testDiscard_FailsWaitersAndWritesNothing() throws Exception {
+		CompletableFuture<User> written = userUpdateBuffer.update(5L, update("Renamed"), "hash");
+		userUpdateBuffer.discard(5L);
+		userUpdateBuffer.flush();
+
+		verify(userRepository, never()).updateById(Mockito.anyLong(), Mockito.anyString(), Mockito.anyString(),
+			Mockito.anyString(), Mockito.anyString());
+		try {
+			written.join();
+		} catch (CompletionException e) {
+			throw (Exception) e.getCause();
+		}
+	}
+}
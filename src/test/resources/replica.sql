@@ -0,0 +1,4 @@
+create table if not exists user (id bigint not null, email varchar(255), name varchar(255), password varchar(255), username varchar(255), version bigint default 0 not null, primary key (id));
+create table if not exists replica_lag (id int not null, seconds bigint, primary key (id));
+insert into replica_lag (id, seconds) select 1, 0 from dual where not exists (select id from replica_lag);
+merge into user (id, email, name, password, username) key (id) values (20001, 'replica@test.com', 'Replica1', 'password', 'replica1');